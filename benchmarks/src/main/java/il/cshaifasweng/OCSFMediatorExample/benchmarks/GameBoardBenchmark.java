@@ -0,0 +1,106 @@
+package il.cshaifasweng.OCSFMediatorExample.benchmarks;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Making and checking moves on the board, for the classic board and the
+ * larger k-in-a-row ones.
+ *
+ * makeMove plays one move and takes it back, which is what a search does
+ * at every node; the cell cycles through a fixed random game so that branch
+ * prediction does not learn a single cell. checkGameStatus creates a board
+ * from the cells of both players, which scans the lines through every
+ * stone, as when a board is decoded from the wire.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBoardBenchmark {
+
+    /** size:winLength */
+    @Param({"3:3", "15:5", "19:5"})
+    public String board;
+
+    private GameBoard gameBoard;
+    private int[] cells;
+    private int next;
+    private long[] xBits;
+    private long[] oBits;
+    private int size;
+    private int winLength;
+
+    @Setup
+    public void setup() {
+        String[] dimensions = board.split(":");
+        size = Integer.parseInt(dimensions[0]);
+        winLength = Integer.parseInt(dimensions[1]);
+
+        // A game of random moves up to the last one before it ends
+        Random random = new Random(42);
+        GameBoard game = new GameBoard(size, winLength);
+        int[] order = new int[size * size];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        int played = 0;
+        char player = 'X';
+        GameBoard probe = game.copy();
+        while (played < order.length) {
+            int cell = order[played];
+            probe.makeMove(cell / size, cell % size, player);
+            if (probe.isGameOver()) {
+                break;
+            }
+            game.makeMove(cell / size, cell % size, player);
+            player = player == 'X' ? 'O' : 'X';
+            played++;
+        }
+        xBits = game.getXBits();
+        oBits = game.getOBits();
+
+        // The moves tried are the empty cells of that position
+        gameBoard = game;
+        cells = new int[order.length - played];
+        System.arraycopy(order, played, cells, 0, cells.length);
+        gameBoard.setCurrentPlayer(player);
+    }
+
+    @Benchmark
+    public boolean makeMove() {
+        int cell = cells[next];
+        next = next + 1 == cells.length ? 0 : next + 1;
+        int row = cell / size;
+        int col = cell % size;
+        boolean won = gameBoard.makeMove(row, col, gameBoard.getCurrentPlayer()) && gameBoard.isGameOver();
+        gameBoard.undoMove(row, col);
+        return won;
+    }
+
+    @Benchmark
+    public char checkGameStatus() {
+        return new GameBoard(size, winLength, xBits, oBits).getWinner();
+    }
+}
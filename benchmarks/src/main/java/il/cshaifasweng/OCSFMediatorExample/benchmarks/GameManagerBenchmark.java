@@ -0,0 +1,205 @@
+package il.cshaifasweng.OCSFMediatorExample.benchmarks;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageCodec;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.Level;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.LogManager;
+import il.cshaifasweng.OCSFMediatorExample.server.GameManager;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.AbstractServer;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A move sent by a client, from {@link GameManager#handleMove} to the
+ * messages queued for both players: finding the room, checking the turn,
+ * playing the move and building the delta.
+ *
+ * The two players are stub connections on sockets that never connect. They
+ * read nothing after the codec header and keep what the room sends them
+ * instead of writing it, so that only the dispatch is measured. Each
+ * invocation plays the next move of a tied 3x3 game, and restarts the game
+ * once it is over.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameManagerBenchmark {
+
+    /** A game without a winner, cells as row * 3 + col, X first */
+    private static final int[] TIE = {4, 0, 2, 6, 3, 5, 1, 7, 8};
+
+    private StubServer server;
+    private StubConnection playerX;
+    private StubConnection playerO;
+    private GameMessage[] moves;
+    private GameManager gameManager;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        // The end of every game is logged at INFO, which is not what is measured
+        LogManager.setLevel(Level.WARN);
+
+        gameManager = GameManager.getInstance();
+        server = new StubServer();
+        StubConnection first = new StubConnection(server);
+        StubConnection second = new StubConnection(server);
+        gameManager.handleJoinGame(first);
+        gameManager.handleJoinGame(second);
+        if (first.symbol == 0 || second.symbol == 0) {
+            throw new IllegalStateException("The stub players were not matched");
+        }
+        playerX = first.symbol == 'X' ? first : second;
+        playerO = first.symbol == 'X' ? second : first;
+
+        moves = new GameMessage[TIE.length];
+        for (int i = 0; i < TIE.length; i++) {
+            moves[i] = new GameMessage(GameMessage.MessageType.MOVE);
+            moves[i].setRow(TIE[i] / 3);
+            moves[i].setCol(TIE[i] % 3);
+            moves[i].setPlayerSymbol(i % 2 == 0 ? 'X' : 'O');
+        }
+        next = 0;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        gameManager.handleClientDisconnected(playerX);
+        gameManager.handleClientDisconnected(playerO);
+        playerX.close();
+        playerO.close();
+        LogManager.setLevel(Level.INFO);
+    }
+
+    @Benchmark
+    public void handleMove(Blackhole blackhole) {
+        StubConnection player = next % 2 == 0 ? playerX : playerO;
+        gameManager.handleMove(moves[next], player);
+        if (++next == moves.length) {
+            next = 0;
+            gameManager.handleRestartGame(player);
+        }
+        blackhole.consume(player.sent);
+    }
+
+    /** A server that is never listening, only there for its connections. */
+    private static final class StubServer extends AbstractServer {
+        StubServer() {
+            super(0);
+        }
+
+        @Override
+        protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+        }
+    }
+
+    /** A client that keeps the messages sent to it. */
+    private static final class StubConnection extends ConnectionToClient {
+        private volatile char symbol;
+        private volatile long sent;
+
+        StubConnection(StubServer server) throws IOException {
+            super(Thread.currentThread().getThreadGroup(), new StubSocket(), server);
+        }
+
+        @Override
+        public void sendToClient(Object msg) {
+            sent++;
+            if (msg instanceof GameMessage) {
+                GameMessage message = (GameMessage) msg;
+                if (message.getType() == GameMessage.MessageType.PLAYER_ASSIGNED) {
+                    symbol = message.getPlayerSymbol();
+                }
+            }
+        }
+    }
+
+    /**
+     * A socket that never connects: its input is the header of the binary
+     * codec, then nothing until it is closed, and its output goes nowhere.
+     */
+    private static final class StubSocket extends Socket {
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private final InputStream input = new InputStream() {
+            private final InputStream header = new ByteArrayInputStream(MessageCodec.BINARY.header());
+
+            @Override
+            public int read() throws IOException {
+                int b = header.read();
+                if (b >= 0) {
+                    return b;
+                }
+                try {
+                    closed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                int count = header.read(b, off, len);
+                if (count > 0) {
+                    return count;
+                }
+                int c = read();
+                if (c < 0) {
+                    return -1;
+                }
+                b[off] = (byte) c;
+                return 1;
+            }
+        };
+
+        @Override
+        public InputStream getInputStream() {
+            return input;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public void setSoTimeout(int timeout) {
+        }
+
+        @Override
+        public InetAddress getInetAddress() {
+            return InetAddress.getLoopbackAddress();
+        }
+
+        @Override
+        public void close() {
+            closed.countDown();
+        }
+    }
+}
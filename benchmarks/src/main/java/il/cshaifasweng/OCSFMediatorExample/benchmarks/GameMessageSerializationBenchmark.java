@@ -0,0 +1,104 @@
+package il.cshaifasweng.OCSFMediatorExample.benchmarks;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageCodec;
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageDecoder;
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips of the messages a game sends the most, the full board and
+ * the delta of one move.
+ *
+ * OBJECT_STREAM writes each message with a new ObjectOutputStream and reads
+ * it with a new ObjectInputStream, the way the original OCSF did, stream
+ * header and class descriptors included. The other serializations go
+ * through the encoder and decoder of a connection codec, which live as long
+ * as the connection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameMessageSerializationBenchmark {
+
+    @Param({"BOARD_UPDATE", "BOARD_DELTA"})
+    public GameMessage.MessageType type;
+
+    /** OBJECT_STREAM, or the name of a {@link MessageCodec} */
+    @Param({"OBJECT_STREAM", "JAVA", "JAVA_CACHED", "BINARY"})
+    public String serialization;
+
+    private GameMessage message;
+    private MessageEncoder encoder;
+    private MessageDecoder decoder;
+
+    @Setup
+    public void setup() throws IOException {
+        message = new GameMessage(type);
+        message.setPlayerSymbol('O');
+        message.setSequence(4);
+        if (type == GameMessage.MessageType.BOARD_UPDATE) {
+            GameBoard board = new GameBoard();
+            board.makeMove(1, 1, 'X');
+            board.makeMove(0, 0, 'O');
+            board.makeMove(0, 1, 'X');
+            board.makeMove(2, 1, 'O');
+            board.setCurrentPlayer('X');
+            message.setGameBoard(board);
+            message.setMessage("Your turn");
+        } else {
+            message.setRow(2);
+            message.setCol(1);
+            message.setCellSymbol('O');
+        }
+
+        MessageCodec codec = MessageCodec.forName(serialization);
+        if (codec != null) {
+            encoder = codec.newEncoder();
+            decoder = codec.newDecoder();
+        }
+    }
+
+    @Benchmark
+    public Object roundTrip() throws IOException, ClassNotFoundException {
+        if (encoder == null) {
+            return objectStream();
+        }
+        byte[] frame = encoder.encode(message);
+        if (decoder.decode(frame, 0, frame.length) != frame.length) {
+            throw new IllegalStateException(serialization + " did not decode a whole frame");
+        }
+        return decoder.getMessage();
+    }
+
+    private Object objectStream() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(message);
+        }
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return input.readObject();
+        }
+    }
+}
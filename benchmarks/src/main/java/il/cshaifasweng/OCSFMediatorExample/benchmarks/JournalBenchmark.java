@@ -0,0 +1,66 @@
+package il.cshaifasweng.OCSFMediatorExample.benchmarks;
+
+import il.cshaifasweng.OCSFMediatorExample.server.journal.GameJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * What a room pays to journal a move: the append into the mapped segment,
+ * from one thread and from four rooms at once, with the default commit
+ * interval running behind. The journal is in a temporary directory,
+ * deleted afterwards, and rolls to new segments as they fill up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+    private Path directory;
+    private GameJournal journal;
+    private int sequence;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("journal-benchmark");
+        journal = new GameJournal(directory);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public long moveMade() {
+        return journal.moveMade(1, ++sequence, 1, 2, 'X');
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long moveMadeContended() {
+        return journal.moveMade(1, 5, 1, 2, 'X');
+    }
+}
@@ -0,0 +1,74 @@
+package il.cshaifasweng.OCSFMediatorExample.benchmarks;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.log.AsyncAppender;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.Level;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.LogAppender;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.LogManager;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a move logged at DEBUG costs the thread that plays it: below the
+ * level of its logger, kept and handed to the writer thread of the
+ * appender, and printed the way the server did before it had loggers.
+ * Written to streams that discard them, so the console is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggingBenchmark {
+
+    private final Logger disabled = LogManager.getLogger("LoggingBenchmark.disabled");
+    private final Logger enabled = LogManager.getLogger("LoggingBenchmark.enabled");
+    private final PrintStream console = new PrintStream(OutputStream.nullOutputStream());
+
+    private LogAppender previous;
+    private int room = 1000;
+    private int row = 1;
+    private int col = 2;
+
+    @Setup
+    public void setup() {
+        disabled.setLevel(Level.INFO);
+        enabled.setLevel(Level.DEBUG);
+        previous = LogManager.setAppender(new AsyncAppender(OutputStream.nullOutputStream(),
+                AsyncAppender.DEFAULT_CAPACITY, false));
+    }
+
+    @TearDown
+    public void tearDown() {
+        LogManager.setAppender(previous).close();
+    }
+
+    @Benchmark
+    public void disabled() {
+        disabled.debug("Room {}: valid move [{},{}]", room, row, col);
+    }
+
+    @Benchmark
+    public void enabled() {
+        enabled.debug("Room {}: valid move [{},{}]", room, row, col);
+    }
+
+    @Benchmark
+    public void println() {
+        console.println("Room " + room + ": valid move [" + row + "," + col + "]");
+    }
+}
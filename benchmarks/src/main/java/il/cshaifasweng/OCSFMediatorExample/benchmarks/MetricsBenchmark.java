@@ -0,0 +1,54 @@
+package il.cshaifasweng.OCSFMediatorExample.benchmarks;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.server.metrics.ServerMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the server pays per message to time its handling: the recording in
+ * the histogram of the message type alone, then with the two reads of the
+ * clock around it, from one thread and from four recording the same type
+ * at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final GameMessage move = new GameMessage(GameMessage.MessageType.MOVE);
+
+    private long nanos = 12_345;
+
+    @Benchmark
+    public void record() {
+        metrics.recordHandling(move, nanos);
+    }
+
+    @Benchmark
+    public void timeAndRecord() {
+        long start = System.nanoTime();
+        metrics.recordHandling(move, System.nanoTime() - start);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void timeAndRecordContended() {
+        long start = System.nanoTime();
+        metrics.recordHandling(move, System.nanoTime() - start);
+    }
+}
@@ -6,6 +6,8 @@ import java.util.ResourceBundle;
 
 import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
 import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.LogManager;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.Logger;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -21,6 +23,8 @@ import org.greenrobot.eventbus.Subscribe;
 
 public class GameScreenController implements Initializable {
 
+    private static final Logger log = LogManager.getLogger(GameScreenController.class);
+
     @FXML
     private GridPane gameBoard;
 
@@ -34,10 +38,12 @@ public class GameScreenController implements Initializable {
     private char playerSymbol; // 'X' or 'O'
     private boolean myTurn = false;
     private Button[][] boardButtons = new Button[3][3];
+    private GameBoard board = new GameBoard(); // Local copy, kept up to date by deltas
+    private int boardSequence = -1; // Sequence of the local board, -1 before the first full board
 
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        System.out.println("GameScreenController initialized");
+        log.debug("GameScreenController initialized");
         EventBus.getDefault().register(this);
         client = SimpleClient.getClient();
         
@@ -47,7 +53,7 @@ public class GameScreenController implements Initializable {
         // Initially disable restart button
         restartButton.setDisable(true);
         
-        System.out.println("Game board initialized with " + (3*3) + " buttons");
+        log.debug("Game board initialized with {} buttons", 3 * 3);
     }
 
     private void initializeGameBoard() {
@@ -56,7 +62,7 @@ public class GameScreenController implements Initializable {
                 Button button = createGameButton(row, col);
                 boardButtons[row][col] = button;
                 gameBoard.add(button, col, row);
-                System.out.println("Added button at position [" + row + "," + col + "]");
+                log.trace("Added button at position [{},{}]", row, col);
             }
         }
     }
@@ -78,7 +84,7 @@ public class GameScreenController implements Initializable {
      */
     public void setPlayerSymbol(char symbol) {
         this.playerSymbol = symbol;
-        System.out.println("Player symbol set to: " + playerSymbol);
+        log.info("Player symbol set to: {}", playerSymbol);
         updateStatus("You are playing as " + playerSymbol);
         
         // Check if it's this player's turn to start
@@ -86,12 +92,12 @@ public class GameScreenController implements Initializable {
             // X typically goes first
             myTurn = true;
             updateStatus("Your turn");
-            System.out.println("X goes first, setting myTurn to true");
+            log.debug("X goes first, setting myTurn to true");
         }
     }
 
     public void setGameMessage(GameMessage message) {
-        System.out.println("setGameMessage called with type: " + message.getType());
+        log.debug("setGameMessage called with type: {}", message.getType());
         
         // Handle different message types
         switch (message.getType()) {
@@ -100,7 +106,7 @@ public class GameScreenController implements Initializable {
                 // but we'll handle it here too just in case
                 if (playerSymbol == 0) { // Only set if not already set
                     playerSymbol = message.getPlayerSymbol();
-                    System.out.println("Player assigned symbol: " + playerSymbol);
+                    log.info("Player assigned symbol: {}", playerSymbol);
                     updateStatus("You are playing as " + playerSymbol);
                     
                     // Check if it's this player's turn to start
@@ -108,15 +114,15 @@ public class GameScreenController implements Initializable {
                         // X typically goes first
                         myTurn = true;
                         updateStatus("Your turn");
-                        System.out.println("X goes first, setting myTurn to true");
+                        log.debug("X goes first, setting myTurn to true");
                     }
                 }
                 break;
                 
             case BOARD_UPDATE:
                 if (message.getGameBoard() != null) {
-                    updateBoard(message.getGameBoard());
-                    System.out.println("Board updated from setGameMessage");
+                    applyFullBoard(message);
+                    log.debug("Board updated from setGameMessage");
                     
                     // Update turn state based on the current turn in the message
                     char currentTurn = message.getPlayerSymbol();
@@ -128,9 +134,8 @@ public class GameScreenController implements Initializable {
                         updateStatus(myTurn ? "Your turn" : "Opponent's turn");
                     }
                     
-                    System.out.println("Turn updated - currentTurn: " + currentTurn + 
-                                   ", playerSymbol: " + playerSymbol + 
-                                   ", myTurn: " + myTurn);
+                    log.debug("Turn updated - currentTurn: {}, playerSymbol: {}, myTurn: {}",
+                            currentTurn, playerSymbol, myTurn);
                 }
                 break;
                 
@@ -139,7 +144,7 @@ public class GameScreenController implements Initializable {
                 break;
                 
             default:
-                System.out.println("Unhandled message type in setGameMessage: " + message.getType());
+                log.warn("Unhandled message type in setGameMessage: {}", message.getType());
                 break;
         }
     }
@@ -147,7 +152,7 @@ public class GameScreenController implements Initializable {
     @Subscribe
     public void onGameEvent(GameEvent event) {
         GameMessage message = event.getGameMessage();
-        System.out.println("Received game event: " + message.getType());
+        log.debug("Received game event: {}", message.getType());
         
         Platform.runLater(() -> {
             switch (message.getType()) {
@@ -159,6 +164,10 @@ public class GameScreenController implements Initializable {
                     handleBoardUpdate(message);
                     break;
                     
+                case BOARD_DELTA:
+                    handleBoardDelta(message);
+                    break;
+                    
                 case PLAYER_TURN:
                     handlePlayerTurn(message);
                     break;
@@ -169,27 +178,28 @@ public class GameScreenController implements Initializable {
                     
                 case WAIT_FOR_PLAYER:
                     updateStatus(message.getMessage());
-                    System.out.println("Waiting for player: " + message.getMessage());
+                    log.info("Waiting for player: {}", message.getMessage());
                     break;
                     
                 default:
-                    System.out.println("Unhandled message type: " + message.getType());
+                    log.warn("Unhandled message type: {}", message.getType());
                     break;
             }
         });
     }
     
     private void handlePlayerAssigned(GameMessage message) {
-        if (playerSymbol == 0) { // Only set if not already set
+        // Set if not already set, or changed when matched with a new opponent
+        if (playerSymbol != message.getPlayerSymbol()) {
             playerSymbol = message.getPlayerSymbol();
-            System.out.println("Player assigned symbol: " + playerSymbol);
+            log.info("Player assigned symbol: {}", playerSymbol);
             updateStatus("You are playing as " + playerSymbol);
             
             // Check if it's this player's turn to start
             if (playerSymbol == 'X') {
                 myTurn = true;
                 updateStatus("Your turn");
-                System.out.println("X goes first, setting myTurn to true");
+                log.debug("X goes first, setting myTurn to true");
             }
         }
     }
@@ -197,8 +207,8 @@ public class GameScreenController implements Initializable {
     private void handleBoardUpdate(GameMessage message) {
         // Update the board state
         if (message.getGameBoard() != null) {
-            updateBoard(message.getGameBoard());
-            System.out.println("Board updated");
+            applyFullBoard(message);
+            log.debug("Board updated");
             
             // Update turn state based on the current turn in the message
             if (message.getPlayerSymbol() != 0) {
@@ -212,54 +222,106 @@ public class GameScreenController implements Initializable {
                     updateStatus(myTurn ? "Your turn" : "Opponent's turn");
                 }
                 
-                System.out.println("Turn updated - currentTurn: " + currentTurn + 
-                                ", playerSymbol: " + playerSymbol + 
-                                ", myTurn: " + myTurn);
+                log.debug("Turn updated - currentTurn: {}, playerSymbol: {}, myTurn: {}",
+                        currentTurn, playerSymbol, myTurn);
             }
         }
     }
     
+    /**
+     * Applies one move sent by the server to the local board. A delta that does
+     * not follow the local board means one was missed, so the full board is
+     * requested instead.
+     */
+    private void handleBoardDelta(GameMessage message) {
+        if (message.getSequence() <= boardSequence) {
+            log.debug("Ignoring old delta {}", message.getSequence());
+            return;
+        }
+        if (boardSequence < 0 || message.getSequence() != boardSequence + 1) {
+            log.info("Missed a delta (have {}, got {}), requesting the full board",
+                    boardSequence, message.getSequence());
+            requestBoardSync();
+            return;
+        }
+
+        int row = message.getRow();
+        int col = message.getCol();
+        board.makeMove(row, col, message.getCellSymbol());
+        board.setCurrentPlayer(message.getPlayerSymbol());
+        boardSequence = message.getSequence();
+        boardButtons[row][col].setText(String.valueOf(message.getCellSymbol()));
+
+        char currentTurn = message.getPlayerSymbol();
+        myTurn = (currentTurn == playerSymbol);
+        updateStatus(myTurn ? "Your turn" : "Opponent's turn");
+        if (log.isDebugEnabled()) {
+            log.debug("Applied delta {}: [{},{}] = {}, myTurn: {}",
+                    boardSequence, row, col, message.getCellSymbol(), myTurn);
+        }
+    }
+
+    private void requestBoardSync() {
+        try {
+            client.sendToServer(new GameMessage(GameMessage.MessageType.BOARD_SYNC));
+        } catch (IOException e) {
+            log.warn("Could not request the board", e);
+            updateStatus("Error requesting the board: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the local board with a full board sent by the server.
+     */
+    private void applyFullBoard(GameMessage message) {
+        board = message.getGameBoard().copy();
+        boardSequence = message.getSequence();
+        updateBoard(board);
+    }
+
     private void handleGameOver(GameMessage message) {
         if (message.getGameBoard() != null) {
-            updateBoard(message.getGameBoard());
+            applyFullBoard(message);
         }
         updateStatus(message.getMessage());
         myTurn = false;
         restartButton.setDisable(false);
-        System.out.println("Game over: " + message.getMessage());
+        log.info("Game over: {}", message.getMessage());
     }
 
     private void handlePlayerTurn(GameMessage message) {
         char turnSymbol = message.getPlayerSymbol();
-        System.out.println("Player turn message received for: " + turnSymbol + ", my symbol is: " + playerSymbol);
+        log.debug("Player turn message received for: {}, my symbol is: {}", turnSymbol, playerSymbol);
         
         if (turnSymbol == playerSymbol) {
             myTurn = true;
             updateStatus("Your turn");
-            System.out.println("It's now my turn as player " + playerSymbol);
+            log.debug("It's now my turn as player {}", playerSymbol);
         } else {
             myTurn = false;
             updateStatus("Opponent's turn");
-            System.out.println("It's opponent's turn");
+            log.debug("It's opponent's turn");
         }
     }
 
     private void updateBoard(GameBoard board) {
         if (board == null) {
-            System.out.println("Warning: updateBoard called with null board");
+            log.warn("updateBoard called with null board");
             return;
         }
         
         char[][] boardState = board.getBoard();
-        System.out.println("Updating board UI with current state:");
         
-        // Print current board state for debugging
-        for (int i = 0; i < 3; i++) {
-            StringBuilder row = new StringBuilder();
-            for (int j = 0; j < 3; j++) {
-                row.append(boardState[i][j] == ' ' ? '_' : boardState[i][j]).append(" ");
+        // Log current board state for debugging, only built when traced
+        if (log.isTraceEnabled()) {
+            StringBuilder rows = new StringBuilder();
+            for (int i = 0; i < 3; i++) {
+                rows.append(System.lineSeparator());
+                for (int j = 0; j < 3; j++) {
+                    rows.append(boardState[i][j] == ' ' ? '_' : boardState[i][j]).append(" ");
+                }
             }
-            System.out.println(row.toString());
+            log.trace("Updating board UI with current state:{}", rows);
         }
         
         // Update UI
@@ -271,10 +333,10 @@ public class GameScreenController implements Initializable {
                 Platform.runLater(() -> {
                     if (cell == 'X' || cell == 'O') {
                         button.setText(String.valueOf(cell));
-                        System.out.println("Set button to '" + cell + "'");
+                        log.trace("Set button to '{}'", cell);
                     } else {
                         button.setText("");
-                        System.out.println("Cleared button");
+                        log.trace("Cleared button");
                     }
                 });
             }
@@ -283,12 +345,14 @@ public class GameScreenController implements Initializable {
 
     private void updateStatus(String message) {
         statusLabel.setText(message);
-        System.out.println("Status updated: " + message);
+        log.debug("Status updated: {}", message);
     }
 
     private void handleButtonClick(int row, int col) {
-        System.out.println("Button clicked at [" + row + "," + col + "]");
-        System.out.println("myTurn: " + myTurn + ", isEmpty: " + boardButtons[row][col].getText().isEmpty() + ", playerSymbol: " + playerSymbol);
+        if (log.isDebugEnabled()) {
+            log.debug("Button clicked at [{},{}], myTurn: {}, isEmpty: {}, playerSymbol: {}",
+                    row, col, myTurn, boardButtons[row][col].getText().isEmpty(), playerSymbol);
+        }
         
         if (myTurn && boardButtons[row][col].getText().isEmpty()) {
             try {
@@ -298,7 +362,7 @@ public class GameScreenController implements Initializable {
                 moveMessage.setCol(col);
                 moveMessage.setPlayerSymbol(playerSymbol);
                 client.sendToServer(moveMessage);
-                System.out.println("Sent move to server: [" + row + "," + col + "] as player " + playerSymbol);
+                log.debug("Sent move to server: [{},{}] as player {}", row, col, playerSymbol);
                 
                 // Update UI immediately to show the move
                 boardButtons[row][col].setText(String.valueOf(playerSymbol));
@@ -308,13 +372,13 @@ public class GameScreenController implements Initializable {
                 updateStatus("Waiting for opponent...");
                 
             } catch (IOException e) {
-                e.printStackTrace();
+                log.warn("Could not send the move", e);
                 updateStatus("Error sending move: " + e.getMessage());
             }
         } else {
             if (!myTurn) {
                 updateStatus("Not your turn!");
-                System.out.println("Not player's turn, cannot make move");
+                log.debug("Not player's turn, cannot make move");
             }
         }
     }
@@ -326,9 +390,9 @@ public class GameScreenController implements Initializable {
             client.sendToServer(restartMessage);
             restartButton.setDisable(true);
             updateStatus("Requesting new game...");
-            System.out.println("Restart game requested");
+            log.info("Restart game requested");
         } catch (IOException e) {
-            e.printStackTrace();
+            log.warn("Could not request a new game", e);
             updateStatus("Error restarting game: " + e.getMessage());
         }
     }
@@ -5,42 +5,47 @@ import org.greenrobot.eventbus.EventBus;
 import il.cshaifasweng.OCSFMediatorExample.client.ocsf.AbstractClient;
 import il.cshaifasweng.OCSFMediatorExample.entities.Warning;
 import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageCodec;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.LogManager;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.Logger;
 
 import java.io.IOException;
 
 public class SimpleClient extends AbstractClient {
 	
+	private static final Logger log = LogManager.getLogger(SimpleClient.class);
 	private static SimpleClient client = null;
 	private static String host = "localhost";
 	private static int port = 3000;
 
 	private SimpleClient(String host, int port) {
 		super(host, port);
-		System.out.println("SimpleClient created with host: " + host + ", port: " + port);
+		// The compact codec unless -Docsf.codec=java or java-cached is given
+		MessageCodec codec = MessageCodec.forName(System.getProperty("ocsf.codec", "binary"));
+		setCodec(codec != null ? codec : MessageCodec.BINARY);
+		log.info("SimpleClient created with host: {}, port: {}, codec: {}", host, port, getCodec().name());
 	}
 
 	@Override
 	protected void handleMessageFromServer(Object msg) {
 		if (msg instanceof Warning) {
-			System.out.println("Received Warning message from server");
+			log.info("Received Warning message from server");
 			EventBus.getDefault().post(new WarningEvent((Warning) msg));
 		} else if (msg instanceof GameMessage) {
 			GameMessage gameMsg = (GameMessage) msg;
-			System.out.println("Received GameMessage from server: " + gameMsg.getType());
+			log.debug("Received GameMessage from server: {}", gameMsg.getType());
 			EventBus.getDefault().post(new GameEvent(gameMsg));
 		} else {
-			String message = msg.toString();
-			System.out.println("Received string message from server: " + message);
+			log.debug("Received string message from server: {}", msg);
 		}
 	}
 	
 	@Override
 	public void sendToServer(Object msg) throws IOException {
 		if (msg instanceof GameMessage) {
-			GameMessage gameMsg = (GameMessage) msg;
-			System.out.println("Sending GameMessage to server: " + gameMsg.getType());
+			log.debug("Sending GameMessage to server: {}", ((GameMessage) msg).getType());
 		} else {
-			System.out.println("Sending message to server: " + msg);
+			log.debug("Sending message to server: {}", msg);
 		}
 		super.sendToServer(msg);
 	}
@@ -48,19 +53,19 @@ public class SimpleClient extends AbstractClient {
 	@Override
 	protected void connectionEstablished() {
 		super.connectionEstablished();
-		System.out.println("Connection established with server: " + getHost() + ":" + getPort());
+		log.info("Connection established with server: {}:{}", getHost(), getPort());
 	}
 	
 	@Override
 	protected void connectionClosed() {
 		super.connectionClosed();
-		System.out.println("Connection closed with server");
+		log.info("Connection closed with server");
 	}
 	
 	@Override
 	protected void connectionException(Exception exception) {
 		super.connectionException(exception);
-		System.out.println("Connection exception: " + exception.getMessage());
+		log.warn("Connection exception: {}", exception.getMessage());
 	}
 	
 	/**
@@ -70,7 +75,7 @@ public class SimpleClient extends AbstractClient {
 	public static SimpleClient getClient() {
 		if (client == null) {
 			client = new SimpleClient(host, port);
-			System.out.println("Created new SimpleClient with default settings");
+			log.debug("Created new SimpleClient with default settings");
 		}
 		return client;
 	}
@@ -86,12 +91,12 @@ public class SimpleClient extends AbstractClient {
 		if (client != null && (!host.equals(newHost) || port != newPort)) {
 			try {
 				if (client.isConnected()) {
-					System.out.println("Closing existing connection before creating new client");
+					log.info("Closing existing connection before creating new client");
 					client.closeConnection();
 				}
 			} catch (Exception e) {
 				// Ignore if already closed
-				System.out.println("Error closing connection: " + e.getMessage());
+				log.warn("Error closing connection: {}", e.getMessage());
 			}
 			client = null;
 		}
@@ -99,12 +104,12 @@ public class SimpleClient extends AbstractClient {
 		// Update static host and port
 		host = newHost;
 		port = newPort;
-		System.out.println("Updated client settings to host: " + host + ", port: " + port);
+		log.debug("Updated client settings to host: {}, port: {}", host, port);
 		
 		// Create new client if needed
 		if (client == null) {
 			client = new SimpleClient(host, port);
-			System.out.println("Created new SimpleClient with custom settings");
+			log.debug("Created new SimpleClient with custom settings");
 		}
 		
 		return client;
@@ -4,6 +4,8 @@
 
 package il.cshaifasweng.OCSFMediatorExample.client.ocsf;
 
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.*;
+
 import java.io.*;
 import java.net.*;
 import java.util.*;
@@ -72,12 +74,28 @@ public abstract class AbstractClient implements Runnable
   /**
   * The stream to handle data going to the server.
   */
-  private ObjectOutputStream output;
+  private OutputStream output;
 
   /**
   * The stream to handle data from the server.
   */
-  private ObjectInputStream input;
+  private InputStream input;
+
+  /**
+  * The codec used for the next connections, Java serialization
+  * unless changed with <code>setCodec()</code>.
+  */
+  private MessageCodec codec = MessageCodec.JAVA;
+
+  /**
+  * Encodes the messages sent to the server.
+  */
+  private MessageEncoder encoder;
+
+  /**
+  * Decodes the messages read from the server.
+  */
+  private MessageDecoder decoder;
 
   /**
   * The thread created to read data from the server.
@@ -134,8 +152,19 @@ public abstract class AbstractClient implements Runnable
     try
     {
       clientSocket= new Socket(host, port);
-      output = new ObjectOutputStream(clientSocket.getOutputStream());
-      input = new ObjectInputStream(clientSocket.getInputStream());
+      output = clientSocket.getOutputStream();
+      input = new BufferedInputStream(clientSocket.getInputStream());
+
+      // Announce the codec and wait for the server to accept it
+      output.write(codec.header());
+      output.flush();
+      byte[] header = new byte[MessageCodec.HEADER_LENGTH];
+      new DataInputStream(input).readFully(header);
+      if (MessageCodec.forHeader(header) != codec)
+        throw new StreamCorruptedException("server answered with another codec");
+
+      encoder = codec.newEncoder();
+      decoder = codec.newDecoder();
     }
     catch (IOException ex)
     // All three of the above must be closed when there is a failure
@@ -171,8 +200,7 @@ public abstract class AbstractClient implements Runnable
     if (clientSocket == null || output == null) {
       throw new SocketException("socket does not exist");
     }
-    output.reset();
-    output.writeObject(msg);
+    output.write(encoder.encode(msg));
   }
 
   /**
@@ -217,6 +245,26 @@ public abstract class AbstractClient implements Runnable
     this.port = port;
   }
 
+  /**
+   * @return the codec used to exchange messages with the server.
+   */
+  final public MessageCodec getCodec()
+  {
+    return codec;
+  }
+
+  /**
+   * Sets the codec for the next connection.
+   * The change only takes effect at the time of the
+   * next call to openConnection().
+   *
+   * @param codec the codec.
+   */
+  final public void setCodec(MessageCodec codec)
+  {
+    this.codec = codec;
+  }
+
   /**
    * @return the host name.
    */
@@ -273,7 +321,7 @@ public abstract class AbstractClient implements Runnable
         
         try { // added in version 2.31
         
-          msg = input.readObject();
+          msg = decoder.read(input);
 
           // Concrete subclasses do what they want with the
           // msg by implementing the following method
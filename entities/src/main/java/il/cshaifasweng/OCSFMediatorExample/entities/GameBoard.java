@@ -1,112 +1,352 @@
 package il.cshaifasweng.OCSFMediatorExample.entities;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
+/**
+ * A board of size x size cells where a player wins with winLength stones in
+ * a row, horizontally, vertically or diagonally: 3x3 and 3 in a row for
+ * tic-tac-toe, 15x15 and 5 in a row for Gomoku, up to 19x19. A longer line
+ * than winLength also wins.
+ *
+ * The cells of each player are a bit set, cell (row, col) being bit
+ * row * size + col, so a 3x3 board holds its cells in the low 9 bits of the
+ * first word. After a move the classic board is checked against the masks
+ * of its eight lines; a larger one scans only the four lines through the new
+ * stone, at most winLength - 1 cells each way. The game is a tie once every
+ * cell is taken; making and checking a move never allocates.
+ */
 public class GameBoard implements Serializable {
-    private static final long serialVersionUID = 1L;
-    
-    private char[][] board;
+    private static final long serialVersionUID = 3L;
+
+    /** The size of the classic tic-tac-toe board, also its win length. */
+    public static final int SIZE = 3;
+    public static final int CELLS = SIZE * SIZE;
+    public static final int FULL_MASK = (1 << CELLS) - 1;
+    public static final int MAX_SIZE = 19;
+
+    /** The 3 rows, 3 columns and 2 diagonals of the classic board as cell masks. */
+    public static final int[] WIN_LINES = {
+            0b000_000_111, 0b000_111_000, 0b111_000_000,
+            0b001_001_001, 0b010_010_010, 0b100_100_100,
+            0b100_010_001, 0b001_010_100
+    };
+
+    private final int size;
+    private final int winLength;
+    private final long[] xBits;
+    private final long[] oBits;
+    private int moveCount;
     private char currentPlayer;
     private boolean gameOver;
     private char winner; // 'X', 'O', or 'T' for tie, ' ' for no winner yet
-    
+
+    /**
+     * Creates an empty classic 3x3 board.
+     */
     public GameBoard() {
-        board = new char[3][3];
-        // Initialize the board with empty spaces
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                board[i][j] = ' ';
-            }
+        this(SIZE, SIZE);
+    }
+
+    /**
+     * Creates an empty board.
+     *
+     * @throws IllegalArgumentException if the size is not between 1 and
+     *         {@link #MAX_SIZE} or the win length between 1 and the size
+     */
+    public GameBoard(int size, int winLength) {
+        if (!isValid(size, winLength)) {
+            throw new IllegalArgumentException("invalid board " + size + "x" + size + ", " + winLength + " in a row");
         }
-        gameOver = false;
+        this.size = size;
+        this.winLength = winLength;
+        int words = (size * size + 63) >>> 6;
+        xBits = new long[words];
+        oBits = new long[words];
         winner = ' ';
     }
-    
+
+    /**
+     * Creates a board from the cells of each player, one bit per cell.
+     * A cell set for both players is X's.
+     */
+    public GameBoard(int size, int winLength, long[] xBits, long[] oBits) {
+        this(size, winLength);
+        int cells = size * size;
+        for (int i = 0; i < this.xBits.length; i++) {
+            long valid = i < cells >>> 6 ? -1L : (1L << (cells & 63)) - 1;
+            this.xBits[i] = (i < xBits.length ? xBits[i] : 0) & valid;
+            this.oBits[i] = (i < oBits.length ? oBits[i] : 0) & valid & ~this.xBits[i];
+        }
+        checkGameStatus();
+    }
+
+    /**
+     * Creates a classic board from the cells of each player, e.g. as decoded from the wire.
+     */
+    public static GameBoard fromMasks(int xMask, int oMask) {
+        return new GameBoard(SIZE, SIZE, new long[]{xMask}, new long[]{oMask});
+    }
+
+    /**
+     * @return true if a board of this size and win length can be created
+     */
+    public static boolean isValid(int size, int winLength) {
+        return size >= 1 && size <= MAX_SIZE && winLength >= 1 && winLength <= size;
+    }
+
     public boolean makeMove(int row, int col, char player) {
-        if (row < 0 || row > 2 || col < 0 || col > 2 || board[row][col] != ' ' || gameOver) {
+        if (row < 0 || row >= size || col < 0 || col >= size || gameOver) {
             return false; // Invalid move
         }
-        
-        board[row][col] = player;
-        checkGameStatus();
+
+        int cell = row * size + col;
+        if (isSet(xBits, cell) || isSet(oBits, cell)) {
+            return false; // Cell already taken
+        }
+
+        long[] bits;
+        if (player == 'X') {
+            bits = xBits;
+        } else if (player == 'O') {
+            bits = oBits;
+        } else {
+            return false;
+        }
+        bits[cell >>> 6] |= 1L << cell;
+        moveCount++;
+
+        if (completesLine(bits, row, col)) {
+            gameOver = true;
+            winner = player;
+        } else if (moveCount == size * size) {
+            gameOver = true;
+            winner = 'T'; // Tie
+        }
         return true;
     }
-    
-    private void checkGameStatus() {
-        // Check rows
-        for (int i = 0; i < 3; i++) {
-            if (board[i][0] != ' ' && board[i][0] == board[i][1] && board[i][1] == board[i][2]) {
-                gameOver = true;
-                winner = board[i][0];
-                return;
-            }
+
+    /**
+     * Empties the cell of the last move, so that analysis can explore moves
+     * without copying the board. The game is no longer over afterwards,
+     * which is only right when undoing moves in the reverse order they were
+     * made.
+     */
+    public void undoMove(int row, int col) {
+        int cell = row * size + col;
+        if (isSet(xBits, cell) || isSet(oBits, cell)) {
+            moveCount--;
         }
-        
-        // Check columns
-        for (int i = 0; i < 3; i++) {
-            if (board[0][i] != ' ' && board[0][i] == board[1][i] && board[1][i] == board[2][i]) {
-                gameOver = true;
-                winner = board[0][i];
-                return;
-            }
+        xBits[cell >>> 6] &= ~(1L << cell);
+        oBits[cell >>> 6] &= ~(1L << cell);
+        gameOver = false;
+        winner = ' ';
+    }
+
+    private static boolean isSet(long[] bits, int cell) {
+        return (bits[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * @return true if the stone at (row, col) is part of winLength stones in a row
+     */
+    private boolean completesLine(long[] bits, int row, int col) {
+        if (isClassic()) {
+            return isWin((int) bits[0]); // Eight mask tests, no scan
         }
-        
-        // Check diagonals
-        if (board[0][0] != ' ' && board[0][0] == board[1][1] && board[1][1] == board[2][2]) {
-            gameOver = true;
-            winner = board[0][0];
-            return;
+        return lineLength(bits, row, col, 0, 1) >= winLength
+                || lineLength(bits, row, col, 1, 0) >= winLength
+                || lineLength(bits, row, col, 1, 1) >= winLength
+                || lineLength(bits, row, col, 1, -1) >= winLength;
+    }
+
+    /**
+     * @return the stones in a row through (row, col) in one direction and its opposite
+     */
+    private int lineLength(long[] bits, int row, int col, int rowStep, int colStep) {
+        return 1 + countStones(bits, row, col, rowStep, colStep) + countStones(bits, row, col, -rowStep, -colStep);
+    }
+
+    /**
+     * @return the stones following (row, col) in one direction, at most winLength - 1
+     */
+    private int countStones(long[] bits, int row, int col, int rowStep, int colStep) {
+        int count = 0;
+        int r = row + rowStep;
+        int c = col + colStep;
+        while (count < winLength - 1 && r >= 0 && r < size && c >= 0 && c < size
+                && isSet(bits, r * size + c)) {
+            count++;
+            r += rowStep;
+            c += colStep;
         }
-        
-        if (board[0][2] != ' ' && board[0][2] == board[1][1] && board[1][1] == board[2][0]) {
-            gameOver = true;
-            winner = board[0][2];
-            return;
-        }
-        
-        // Check for tie
-        boolean isFull = true;
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                if (board[i][j] == ' ') {
-                    isFull = false;
-                    break;
-                }
-            }
+        return count;
+    }
+
+    /**
+     * Finds the state of a board given all at once, checking the lines
+     * through every stone.
+     */
+    private void checkGameStatus() {
+        moveCount = 0;
+        for (int i = 0; i < xBits.length; i++) {
+            moveCount += Long.bitCount(xBits[i] | oBits[i]);
         }
-        
-        if (isFull) {
+        gameOver = false;
+        winner = ' ';
+
+        if (hasLine(xBits)) {
+            gameOver = true;
+            winner = 'X';
+        } else if (hasLine(oBits)) {
+            gameOver = true;
+            winner = 'O';
+        } else if (moveCount == size * size) {
             gameOver = true;
             winner = 'T'; // Tie
         }
     }
-    
+
+    private boolean hasLine(long[] bits) {
+        for (int cell = 0; cell < size * size; cell++) {
+            if (isSet(bits, cell) && completesLine(bits, cell / size, cell % size)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the cells of the mask cover a complete line of the classic board
+     */
+    public static boolean isWin(int mask) {
+        for (int line : WIN_LINES) {
+            if ((mask & line) == line) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a copy of the board as a grid of 'X', 'O' and ' ', for code
+     * written against the former array representation. Changing the returned
+     * array does not change the board.
+     */
     public char[][] getBoard() {
+        char[][] board = new char[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                board[i][j] = getCell(i, j);
+            }
+        }
         return board;
     }
-    
+
+    /**
+     * @return 'X', 'O' or ' ' for the given cell
+     */
+    public char getCell(int row, int col) {
+        int cell = row * size + col;
+        if (isSet(xBits, cell)) {
+            return 'X';
+        }
+        return isSet(oBits, cell) ? 'O' : ' ';
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public int getCellCount() {
+        return size * size;
+    }
+
+    /**
+     * @return true for the 3x3, 3 in a row board
+     */
+    public boolean isClassic() {
+        return size == SIZE && winLength == SIZE;
+    }
+
+    /**
+     * @return the cells of X as a mask, for boards of at most 32 cells
+     */
+    public int getXMask() {
+        checkMaskSize();
+        return (int) xBits[0];
+    }
+
+    /**
+     * @return the cells of O as a mask, for boards of at most 32 cells
+     */
+    public int getOMask() {
+        checkMaskSize();
+        return (int) oBits[0];
+    }
+
+    private void checkMaskSize() {
+        if (size * size > Integer.SIZE) {
+            throw new IllegalStateException("a " + size + "x" + size + " board does not fit in a mask");
+        }
+    }
+
+    /**
+     * @return a copy of the cells of X, one bit per cell
+     */
+    public long[] getXBits() {
+        return xBits.clone();
+    }
+
+    /**
+     * @return a copy of the cells of O, one bit per cell
+     */
+    public long[] getOBits() {
+        return oBits.clone();
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return an independent copy of this board
+     */
+    public GameBoard copy() {
+        GameBoard copy = new GameBoard(size, winLength);
+        System.arraycopy(xBits, 0, copy.xBits, 0, xBits.length);
+        System.arraycopy(oBits, 0, copy.oBits, 0, oBits.length);
+        copy.moveCount = moveCount;
+        copy.currentPlayer = currentPlayer;
+        copy.gameOver = gameOver;
+        copy.winner = winner;
+        return copy;
+    }
+
     public char getCurrentPlayer() {
         return currentPlayer;
     }
-    
+
     public void setCurrentPlayer(char currentPlayer) {
         this.currentPlayer = currentPlayer;
     }
-    
+
     public boolean isGameOver() {
         return gameOver;
     }
-    
+
     public char getWinner() {
         return winner;
     }
-    
+
     public void reset() {
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                board[i][j] = ' ';
-            }
-        }
+        Arrays.fill(xBits, 0);
+        Arrays.fill(oBits, 0);
+        moveCount = 0;
         gameOver = false;
         winner = ' ';
     }
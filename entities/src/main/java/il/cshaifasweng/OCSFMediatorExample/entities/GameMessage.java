@@ -14,7 +14,10 @@ public class GameMessage implements Serializable {
         GAME_OVER,       // Game is over
         WAIT_FOR_PLAYER, // Wait for another player to join
         PLAYER_TURN,     // Indicates whose turn it is
-        RESTART_GAME     // Request to restart the game
+        RESTART_GAME,    // Request to restart the game
+        BOARD_DELTA,     // One cell played since the last board, and whose turn it is now
+        BOARD_SYNC,      // Client missed a delta and asks for the full board
+        HINT             // Client asks for a move, the server answers with the row and col
     }
     
     private MessageType type;
@@ -23,6 +26,10 @@ public class GameMessage implements Serializable {
     private int col;
     private char playerSymbol; // 'X' or 'O'
     private String message;
+    private int sequence; // number of moves the board has seen, to detect missed deltas
+    private char cellSymbol; // symbol played in a BOARD_DELTA
+    private int boardSize; // board asked for in JOIN_GAME or played in PLAYER_ASSIGNED, 0 for 3x3
+    private int winLength; // stones in a row needed to win, 0 for 3
     
     public GameMessage(MessageType type) {
         this.type = type;
@@ -75,4 +82,54 @@ public class GameMessage implements Serializable {
     public void setMessage(String message) {
         this.message = message;
     }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(int sequence) {
+        this.sequence = sequence;
+    }
+
+    public char getCellSymbol() {
+        return cellSymbol;
+    }
+
+    public void setCellSymbol(char cellSymbol) {
+        this.cellSymbol = cellSymbol;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public void setBoardSize(int boardSize) {
+        this.boardSize = boardSize;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public void setWinLength(int winLength) {
+        this.winLength = winLength;
+    }
+
+    /**
+     * @return a copy of this message and of its board, unaffected by later
+     *         changes to this message or to the board of a running game
+     */
+    public GameMessage copy() {
+        GameMessage copy = new GameMessage(type);
+        copy.gameBoard = gameBoard != null ? gameBoard.copy() : null;
+        copy.row = row;
+        copy.col = col;
+        copy.playerSymbol = playerSymbol;
+        copy.message = message;
+        copy.sequence = sequence;
+        copy.cellSymbol = cellSymbol;
+        copy.boardSize = boardSize;
+        copy.winLength = winLength;
+        return copy;
+    }
 }
@@ -0,0 +1,448 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.codec;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.entities.Warning;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+/**
+ * A compact binary format for the game messages.
+ *
+ * <pre>
+ * frame       := varint(length) payload
+ * payload     := 0x00                                   null
+ *              | 0x01 utf                               String
+ *              | 0x02 flags [utf] [varlong]             Warning (message, nano of day)
+ *              | (0x10 + type) flags fields             GameMessage
+ *              | 0x7F varint(length) bytes              any other object, Java serialized
+ * fields      := [flags2] [varint(symbol)] [zigzag(row) zigzag(col)] [board | grid] [utf]
+ *                [varint(sequence)] [varint(cell symbol)] [varint(size) varint(win length)]
+ * board       := 3 bytes, little endian: X mask (9 bits), O mask (9 bits), current player (2 bits)
+ * grid        := varint(size) varint(win length) byte(current player) cells
+ * cells       := 2 bits per cell (0 empty, 1 X, 2 O), 4 cells per byte, lowest bits first
+ * utf         := varint(length) UTF-8 bytes
+ * </pre>
+ *
+ * The flags of a GameMessage tell which fields are present: bit 0 board,
+ * bit 1 text, bit 2 row and column, bits 3-4 the player symbol (0 none,
+ * 1 'X', 2 'O', 3 any other character, written as a varint). Bit 7 announces
+ * a second flags byte: bit 0 sequence, bits 1-2 the cell symbol, coded like
+ * the player symbol, bit 3 board dimensions, bit 4 a board other than 3x3,
+ * 3 in a row, written as a grid. A typical board update is about 25 bytes,
+ * a delta 6, a 15x15 board about 65.
+ */
+class BinaryMessageCodec implements MessageCodec {
+
+    private static final byte[] HEADER = {'T', 'T', 'T', 1};
+
+    private static final int TAG_NULL = 0x00;
+    private static final int TAG_STRING = 0x01;
+    private static final int TAG_WARNING = 0x02;
+    private static final int TAG_GAME_MESSAGE = 0x10;
+    private static final int TAG_SERIALIZED = 0x7F;
+
+    private static final int HAS_BOARD = 1;
+    private static final int HAS_TEXT = 1 << 1;
+    private static final int HAS_POSITION = 1 << 2;
+    private static final int SYMBOL_SHIFT = 3;
+    private static final int HAS_FLAGS2 = 1 << 7;
+
+    private static final int HAS_SEQUENCE = 1;
+    private static final int CELL_SYMBOL_SHIFT = 1;
+    private static final int HAS_DIMENSIONS = 1 << 3;
+    private static final int HAS_GRID = 1 << 4;
+
+    private static final GameMessage.MessageType[] TYPES = GameMessage.MessageType.values();
+
+    @Override
+    public String name() {
+        return "binary";
+    }
+
+    @Override
+    public byte[] header() {
+        return HEADER.clone();
+    }
+
+    @Override
+    public MessageEncoder newEncoder() {
+        return new Encoder();
+    }
+
+    @Override
+    public MessageDecoder newDecoder() {
+        return new Decoder();
+    }
+
+    private static int symbolCode(char symbol) {
+        switch (symbol) {
+            case 0:
+                return 0;
+            case 'X':
+                return 1;
+            case 'O':
+                return 2;
+            default:
+                return 3;
+        }
+    }
+
+    private static char symbolOf(int code) {
+        return code == 1 ? 'X' : code == 2 ? 'O' : 0;
+    }
+
+    // ENCODING ---------------------------------------------------------
+
+    private static class Encoder implements MessageEncoder {
+        private byte[] buffer = new byte[64];
+        private int length;
+
+        @Override
+        public byte[] encode(Object msg) throws IOException {
+            length = 0;
+            writePayload(msg);
+
+            return Frames.frame(buffer, length);
+        }
+
+        private void writePayload(Object msg) throws IOException {
+            if (msg == null) {
+                writeByte(TAG_NULL);
+            } else if (msg instanceof GameMessage) {
+                writeGameMessage((GameMessage) msg);
+            } else if (msg instanceof String) {
+                writeByte(TAG_STRING);
+                writeUtf((String) msg);
+            } else if (msg instanceof Warning) {
+                Warning warning = (Warning) msg;
+                writeByte(TAG_WARNING);
+                writeByte((warning.getMessage() != null ? 1 : 0) | (warning.getTime() != null ? 2 : 0));
+                if (warning.getMessage() != null) {
+                    writeUtf(warning.getMessage());
+                }
+                if (warning.getTime() != null) {
+                    writeVarlong(warning.getTime().toNanoOfDay());
+                }
+            } else {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+                    output.writeObject(msg);
+                }
+                writeByte(TAG_SERIALIZED);
+                writeVarint(bytes.size());
+                writeBytes(bytes.toByteArray());
+            }
+        }
+
+        private void writeGameMessage(GameMessage msg) {
+            GameBoard board = msg.getGameBoard();
+            String text = msg.getMessage();
+            boolean hasPosition = msg.getRow() != 0 || msg.getCol() != 0;
+            int symbolCode = symbolCode(msg.getPlayerSymbol());
+            int cellSymbolCode = symbolCode(msg.getCellSymbol());
+            boolean hasDimensions = msg.getBoardSize() != 0 || msg.getWinLength() != 0;
+            int flags2 = (msg.getSequence() != 0 ? HAS_SEQUENCE : 0) | (cellSymbolCode << CELL_SYMBOL_SHIFT)
+                    | (hasDimensions ? HAS_DIMENSIONS : 0) | (board != null && !board.isClassic() ? HAS_GRID : 0);
+
+            writeByte(TAG_GAME_MESSAGE + msg.getType().ordinal());
+            writeByte((board != null ? HAS_BOARD : 0) | (text != null ? HAS_TEXT : 0)
+                    | (hasPosition ? HAS_POSITION : 0) | (symbolCode << SYMBOL_SHIFT)
+                    | (flags2 != 0 ? HAS_FLAGS2 : 0));
+            if (flags2 != 0) {
+                writeByte(flags2);
+            }
+
+            if (symbolCode == 3) {
+                writeVarint(msg.getPlayerSymbol());
+            }
+            if (hasPosition) {
+                writeVarint(zigzag(msg.getRow()));
+                writeVarint(zigzag(msg.getCol()));
+            }
+            if ((flags2 & HAS_GRID) != 0) {
+                writeGrid(board);
+            } else if (board != null) {
+                int bits = board.getXMask() | board.getOMask() << 9
+                        | (symbolCode(board.getCurrentPlayer()) & 3) << 18;
+                writeByte(bits);
+                writeByte(bits >>> 8);
+                writeByte(bits >>> 16);
+            }
+            if (text != null) {
+                writeUtf(text);
+            }
+            if ((flags2 & HAS_SEQUENCE) != 0) {
+                writeVarint(msg.getSequence());
+            }
+            if (cellSymbolCode == 3) {
+                writeVarint(msg.getCellSymbol());
+            }
+            if (hasDimensions) {
+                writeVarint(msg.getBoardSize());
+                writeVarint(msg.getWinLength());
+            }
+        }
+
+        private void writeGrid(GameBoard board) {
+            int size = board.getSize();
+            writeVarint(size);
+            writeVarint(board.getWinLength());
+            writeByte(symbolCode(board.getCurrentPlayer()) & 3);
+
+            int cells = board.getCellCount();
+            long[] xBits = board.getXBits();
+            long[] oBits = board.getOBits();
+            ensure((cells + 3) / 4);
+            for (int start = 0; start < cells; start += 4) {
+                int packed = 0;
+                for (int cell = start; cell < Math.min(start + 4, cells); cell++) {
+                    long bit = 1L << cell;
+                    int code = (xBits[cell >>> 6] & bit) != 0 ? 1 : (oBits[cell >>> 6] & bit) != 0 ? 2 : 0;
+                    packed |= code << ((cell - start) * 2);
+                }
+                buffer[length++] = (byte) packed;
+            }
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(length + extra, buffer.length * 2));
+            }
+        }
+
+        private void writeByte(int value) {
+            ensure(1);
+            buffer[length++] = (byte) value;
+        }
+
+        private void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, length, bytes.length);
+            length += bytes.length;
+        }
+
+        private void writeVarint(int value) {
+            ensure(5);
+            length = Frames.putVarint(buffer, length, value);
+        }
+
+        private void writeVarlong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        private void writeUtf(String text) {
+            byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes);
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // DECODING ---------------------------------------------------------
+
+    private static class Decoder implements MessageDecoder {
+        private byte[] frame = new byte[64];
+        private byte[] buffer;
+        private int position;
+        private int limit;
+        private Object message;
+
+        @Override
+        public Object read(InputStream in) throws IOException, ClassNotFoundException {
+            int frameLength = Frames.readLength(in);
+            if (frame.length < frameLength) {
+                frame = new byte[frameLength];
+            }
+            Frames.readFully(in, frame, frameLength);
+            return readPayload(frame, 0, frameLength);
+        }
+
+        @Override
+        public int decode(byte[] data, int offset, int length) throws IOException {
+            int prefixLength = Frames.prefixLength(data, offset, length);
+            if (prefixLength == 0) {
+                return 0; // Length not complete yet
+            }
+            int frameLength = Frames.payloadLength(data, offset);
+            if (length - prefixLength < frameLength) {
+                return 0; // Payload not complete yet
+            }
+            try {
+                message = readPayload(data, offset + prefixLength, frameLength);
+            } catch (ClassNotFoundException e) {
+                message = e;
+            }
+            return prefixLength + frameLength;
+        }
+
+        @Override
+        public Object getMessage() throws ClassNotFoundException {
+            if (message instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) message;
+            }
+            return message;
+        }
+
+        private Object readPayload(byte[] data, int offset, int length) throws IOException, ClassNotFoundException {
+            buffer = data;
+            position = offset;
+            limit = offset + length;
+
+            Object result;
+            int tag = readByte();
+            if (tag == TAG_NULL) {
+                result = null;
+            } else if (tag == TAG_STRING) {
+                result = readUtf();
+            } else if (tag == TAG_WARNING) {
+                int flags = readByte();
+                String text = (flags & 1) != 0 ? readUtf() : null;
+                LocalTime time = (flags & 2) != 0 ? LocalTime.ofNanoOfDay(readVarlong()) : null;
+                result = new Warning(text, time);
+            } else if (tag == TAG_SERIALIZED) {
+                int size = readVarint();
+                checkAvailable(size);
+                try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(buffer, position, size))) {
+                    result = input.readObject();
+                }
+                position += size;
+            } else if (tag >= TAG_GAME_MESSAGE && tag - TAG_GAME_MESSAGE < TYPES.length) {
+                result = readGameMessage(TYPES[tag - TAG_GAME_MESSAGE]);
+            } else {
+                throw new StreamCorruptedException("unknown tag " + tag);
+            }
+
+            buffer = null;
+            if (position != limit) {
+                throw new StreamCorruptedException("unexpected bytes after message");
+            }
+            return result;
+        }
+
+        private GameMessage readGameMessage(GameMessage.MessageType type) throws IOException {
+            GameMessage msg = new GameMessage(type);
+            int flags = readByte();
+            int flags2 = (flags & HAS_FLAGS2) != 0 ? readByte() : 0;
+
+            int symbolCode = (flags >>> SYMBOL_SHIFT) & 3;
+            msg.setPlayerSymbol(symbolCode == 3 ? (char) readVarint() : symbolOf(symbolCode));
+            if ((flags & HAS_POSITION) != 0) {
+                msg.setRow(unzigzag(readVarint()));
+                msg.setCol(unzigzag(readVarint()));
+            }
+            if ((flags2 & HAS_GRID) != 0) {
+                msg.setGameBoard(readGrid());
+            } else if ((flags & HAS_BOARD) != 0) {
+                int bits = readByte() | readByte() << 8 | readByte() << 16;
+                GameBoard board = GameBoard.fromMasks(bits & GameBoard.FULL_MASK, (bits >>> 9) & GameBoard.FULL_MASK);
+                board.setCurrentPlayer(symbolOf((bits >>> 18) & 3));
+                msg.setGameBoard(board);
+            }
+            if ((flags & HAS_TEXT) != 0) {
+                msg.setMessage(readUtf());
+            }
+            if ((flags2 & HAS_SEQUENCE) != 0) {
+                msg.setSequence(readVarint());
+            }
+            int cellSymbolCode = (flags2 >>> CELL_SYMBOL_SHIFT) & 3;
+            msg.setCellSymbol(cellSymbolCode == 3 ? (char) readVarint() : symbolOf(cellSymbolCode));
+            if ((flags2 & HAS_DIMENSIONS) != 0) {
+                msg.setBoardSize(readVarint());
+                msg.setWinLength(readVarint());
+            }
+            return msg;
+        }
+
+        private GameBoard readGrid() throws IOException {
+            int size = readVarint();
+            int winLength = readVarint();
+            if (!GameBoard.isValid(size, winLength)) {
+                throw new StreamCorruptedException("invalid board " + size + "x" + size + ", " + winLength + " in a row");
+            }
+            char currentPlayer = symbolOf(readByte() & 3);
+
+            int cells = size * size;
+            long[] xBits = new long[(cells + 63) >>> 6];
+            long[] oBits = new long[xBits.length];
+            checkAvailable((cells + 3) / 4);
+            for (int cell = 0; cell < cells; cell++) {
+                int code = (buffer[position + cell / 4] >>> ((cell % 4) * 2)) & 3;
+                if (code == 1) {
+                    xBits[cell >>> 6] |= 1L << cell;
+                } else if (code == 2) {
+                    oBits[cell >>> 6] |= 1L << cell;
+                }
+            }
+            position += (cells + 3) / 4;
+
+            GameBoard board = new GameBoard(size, winLength, xBits, oBits);
+            board.setCurrentPlayer(currentPlayer);
+            return board;
+        }
+
+        private void checkAvailable(int count) throws EOFException {
+            if (count < 0 || limit - position < count) {
+                throw new EOFException("message shorter than announced");
+            }
+        }
+
+        private int readByte() throws EOFException {
+            checkAvailable(1);
+            return buffer[position++] & 0xFF;
+        }
+
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("invalid varint");
+        }
+
+        private long readVarlong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 70; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("invalid varint");
+        }
+
+        private String readUtf() throws IOException {
+            int size = readVarint();
+            checkAvailable(size);
+            String text = new String(buffer, position, size, StandardCharsets.UTF_8);
+            position += size;
+            return text;
+        }
+    }
+}
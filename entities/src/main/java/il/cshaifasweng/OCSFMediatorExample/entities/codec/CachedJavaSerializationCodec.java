@@ -0,0 +1,203 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.codec;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.entities.Warning;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Java serialization over one object stream per connection that is not reset
+ * before every message, so class descriptors and repeated strings are sent once
+ * and then referred to by handle.
+ *
+ * Without a reset, writing an object already sent would only send a reference
+ * to the first copy. Messages are therefore written as fresh snapshots (see
+ * {@link GameMessage#copy()}), so that the receiver always sees the state of
+ * the message when it was sent even if the server keeps changing it. Objects
+ * of other classes are written after a reset, like the plain Java codec does.
+ * The stream is also reset every {@link #RESET_INTERVAL} messages to bound the
+ * handle tables of both ends.
+ *
+ * Since the stream of a connection is continuous, it is cut into
+ * varint length-prefixed frames, so that a non-blocking transport can tell
+ * when a message is complete before reading it.
+ */
+class CachedJavaSerializationCodec implements MessageCodec {
+
+    private static final byte[] HEADER = {'T', 'T', 'T', 2};
+
+    /** Number of messages written between two resets of the stream. */
+    static final int RESET_INTERVAL = 256;
+
+    @Override
+    public String name() {
+        return "java-cached";
+    }
+
+    @Override
+    public byte[] header() {
+        return HEADER.clone();
+    }
+
+    /**
+     * A message may refer to objects written in the previous ones.
+     */
+    @Override
+    public boolean framesIndependent() {
+        return false;
+    }
+
+    @Override
+    public MessageEncoder newEncoder() throws IOException {
+        return new Encoder();
+    }
+
+    @Override
+    public MessageDecoder newDecoder() {
+        return new Decoder();
+    }
+
+    private static class Encoder implements MessageEncoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final ObjectOutputStream output;
+        private int written;
+
+        Encoder() throws IOException {
+            output = new ObjectOutputStream(bytes);
+            output.flush(); // The stream header goes with the first frame
+        }
+
+        @Override
+        public byte[] encode(Object msg) throws IOException {
+            Object snapshot;
+            if (msg instanceof GameMessage) {
+                snapshot = ((GameMessage) msg).copy();
+            } else if (msg instanceof Warning) {
+                Warning warning = (Warning) msg;
+                snapshot = new Warning(warning.getMessage(), warning.getTime());
+            } else if (msg == null || msg instanceof String || msg instanceof Enum) {
+                snapshot = msg;
+            } else {
+                snapshot = null;
+            }
+
+            if (++written > RESET_INTERVAL || (snapshot == null && msg != null)) {
+                output.reset();
+                written = 0;
+            }
+            output.writeObject(snapshot != null ? snapshot : msg);
+            output.flush();
+
+            byte[] frame = Frames.frame(bytes.toByteArray(), bytes.size());
+            bytes.reset();
+            return frame;
+        }
+    }
+
+    private static class Decoder implements MessageDecoder {
+        private final FrameInput frameInput = new FrameInput();
+        private ObjectInputStream input;
+        private byte[] frame = new byte[64];
+        private Object message;
+
+        @Override
+        public Object read(InputStream in) throws IOException, ClassNotFoundException {
+            int frameLength = Frames.readLength(in);
+            if (frame.length < frameLength) {
+                frame = new byte[frameLength];
+            }
+            Frames.readFully(in, frame, frameLength);
+            return readFrame(frame, 0, frameLength);
+        }
+
+        @Override
+        public int decode(byte[] data, int offset, int length) throws IOException {
+            int prefixLength = Frames.prefixLength(data, offset, length);
+            if (prefixLength == 0) {
+                return 0; // Length not complete yet
+            }
+            int frameLength = Frames.payloadLength(data, offset);
+            if (length - prefixLength < frameLength) {
+                return 0; // Payload not complete yet
+            }
+            try {
+                message = readFrame(data, offset + prefixLength, frameLength);
+            } catch (ClassNotFoundException e) {
+                message = e;
+            }
+            return prefixLength + frameLength;
+        }
+
+        @Override
+        public Object getMessage() throws ClassNotFoundException {
+            if (message instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) message;
+            }
+            return message;
+        }
+
+        private Object readFrame(byte[] data, int offset, int length) throws IOException, ClassNotFoundException {
+            frameInput.set(data, offset, length);
+            try {
+                if (input == null) {
+                    input = new ObjectInputStream(frameInput);
+                }
+                return input.readObject();
+            } finally {
+                boolean leftOver = frameInput.remaining() > 0;
+                frameInput.set(null, 0, 0);
+                if (leftOver) {
+                    throw new StreamCorruptedException("frame not consumed by its message");
+                }
+            }
+        }
+    }
+
+    /**
+     * The bytes of the current frame, read by the object stream of a decoder.
+     */
+    private static class FrameInput extends InputStream {
+        private byte[] buffer;
+        private int position;
+        private int limit;
+
+        void set(byte[] buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.position = offset;
+            this.limit = offset + length;
+        }
+
+        int remaining() {
+            return limit - position;
+        }
+
+        @Override
+        public int read() {
+            return position < limit ? buffer[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= limit) {
+                return -1;
+            }
+            int count = Math.min(len, limit - position);
+            System.arraycopy(buffer, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.codec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Length-prefixed frames: a varint giving the payload length, then the payload.
+ */
+final class Frames {
+
+    /** Frames longer than this are considered corrupted. */
+    static final int MAX_FRAME_LENGTH = MessageCodec.MAX_FRAME_LENGTH;
+
+    private Frames() {
+    }
+
+    /**
+     * @return the payload prefixed with its length
+     */
+    static byte[] frame(byte[] payload, int length) {
+        byte[] frame = new byte[varintSize(length) + length];
+        int offset = putVarint(frame, 0, length);
+        System.arraycopy(payload, 0, frame, offset, length);
+        return frame;
+    }
+
+    static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    static int putVarint(byte[] buffer, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * @return the length of the length prefix starting at offset, or 0 if it
+     *         has not been completely received
+     */
+    static int prefixLength(byte[] data, int offset, int length) throws StreamCorruptedException {
+        for (int i = 0; i < length && i < 5; i++) {
+            if ((data[offset + i] & 0x80) == 0) {
+                return i + 1;
+            }
+        }
+        if (length >= 5) {
+            throw new StreamCorruptedException("invalid frame length");
+        }
+        return 0;
+    }
+
+    /**
+     * @return the payload length of a frame whose prefix is complete
+     */
+    static int payloadLength(byte[] data, int offset) throws StreamCorruptedException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = data[offset++] & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return checkLength(value);
+            }
+        }
+    }
+
+    /**
+     * Reads a length prefix, blocking until it is complete.
+     */
+    static int readLength(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return checkLength(value);
+            }
+        }
+        throw new StreamCorruptedException("invalid frame length");
+    }
+
+    /**
+     * Reads exactly length bytes into the buffer, blocking until they are received.
+     */
+    static void readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int read = 0;
+        while (read < length) {
+            int count = in.read(buffer, read, length - read);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            read += count;
+        }
+    }
+
+    private static int checkLength(int length) throws StreamCorruptedException {
+        if (length <= 0 || length > MAX_FRAME_LENGTH) {
+            throw new StreamCorruptedException("invalid frame length " + length);
+        }
+        return length;
+    }
+}
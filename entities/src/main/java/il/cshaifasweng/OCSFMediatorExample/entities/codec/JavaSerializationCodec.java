@@ -0,0 +1,117 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Java serialization, as written by ObjectOutputStream: the header is the
+ * object stream header and every message is an object written after a reset,
+ * so that each one can be read on its own and always carries fresh state.
+ */
+class JavaSerializationCodec implements MessageCodec {
+
+    private static final byte[] HEADER = streamHeader();
+
+    @Override
+    public String name() {
+        return "java";
+    }
+
+    @Override
+    public byte[] header() {
+        return HEADER.clone();
+    }
+
+    @Override
+    public MessageEncoder newEncoder() throws IOException {
+        return new Encoder();
+    }
+
+    @Override
+    public MessageDecoder newDecoder() {
+        return new Decoder();
+    }
+
+    private static byte[] streamHeader() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            new ObjectOutputStream(bytes).flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return an object stream positioned after the header, reading from the given stream
+     */
+    static ObjectInputStream objectInput(InputStream in) throws IOException {
+        return new ObjectInputStream(new SequenceInputStream(new ByteArrayInputStream(HEADER), in));
+    }
+
+    private static class Encoder implements MessageEncoder {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final ObjectOutputStream output;
+
+        Encoder() throws IOException {
+            output = new ObjectOutputStream(bytes);
+            output.flush();
+            bytes.reset(); // The header is sent once by the connection
+        }
+
+        @Override
+        public byte[] encode(Object msg) throws IOException {
+            output.reset();
+            output.writeObject(msg);
+            output.flush();
+            byte[] frame = bytes.toByteArray();
+            bytes.reset();
+            return frame;
+        }
+    }
+
+    private static class Decoder implements MessageDecoder {
+        private ObjectInputStream input;
+        private Object message;
+        private ClassNotFoundException unknownClass;
+
+        @Override
+        public Object read(InputStream in) throws IOException, ClassNotFoundException {
+            if (input == null) {
+                input = objectInput(in);
+            }
+            return input.readObject();
+        }
+
+        @Override
+        public int decode(byte[] buffer, int offset, int length) throws IOException {
+            // Each message follows a reset, so it can be read by a fresh stream
+            ByteArrayInputStream remaining = new ByteArrayInputStream(buffer, offset, length);
+            message = null;
+            unknownClass = null;
+            try {
+                message = objectInput(remaining).readObject();
+            } catch (EOFException e) {
+                return 0; // Not complete yet
+            } catch (ClassNotFoundException e) {
+                unknownClass = e;
+            }
+            return length - remaining.available();
+        }
+
+        @Override
+        public Object getMessage() throws ClassNotFoundException {
+            if (unknownClass != null) {
+                throw unknownClass;
+            }
+            return message;
+        }
+    }
+}
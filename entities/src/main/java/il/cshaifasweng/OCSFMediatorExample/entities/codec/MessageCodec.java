@@ -0,0 +1,96 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.codec;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+
+/**
+ * A wire format for the objects exchanged between client and server.
+ *
+ * Each peer starts a connection by sending the {@link #header()} of its codec.
+ * The client chooses the codec, the server recognizes it with
+ * {@link #forHeader(byte[])} and answers with the same header. Messages are
+ * then encoded by a per-connection {@link MessageEncoder} and decoded by a
+ * per-connection {@link MessageDecoder}, since a codec may keep state for the
+ * lifetime of a connection.
+ */
+public interface MessageCodec {
+
+    /** Every codec header has this length. */
+    int HEADER_LENGTH = 4;
+
+    /** Messages longer than this are considered corrupted. */
+    int MAX_FRAME_LENGTH = 1 << 24;
+
+    /** The Java serialization codec, the format of the original clients. */
+    MessageCodec JAVA = new JavaSerializationCodec();
+
+    /**
+     * Java serialization keeping class descriptors cached across messages,
+     * which are sent as snapshots.
+     */
+    MessageCodec JAVA_CACHED = new CachedJavaSerializationCodec();
+
+    /** The compact binary codec. */
+    MessageCodec BINARY = new BinaryMessageCodec();
+
+    /**
+     * @return a short name for logs and configuration
+     */
+    String name();
+
+    /**
+     * @return the {@link #HEADER_LENGTH} bytes identifying this codec
+     */
+    byte[] header();
+
+    /**
+     * Tells whether encoded messages stand on their own: one can be left out
+     * without affecting how the following ones decode, e.g. when a slow
+     * client is sent too much, and one encoded for a connection can be sent
+     * on another, e.g. to encode a broadcast once.
+     */
+    default boolean framesIndependent() {
+        return true;
+    }
+
+    MessageEncoder newEncoder() throws IOException;
+
+    MessageDecoder newDecoder() throws IOException;
+
+    /**
+     * Finds the codec a peer selected from the header it sent.
+     *
+     * @throws StreamCorruptedException if no codec uses this header
+     */
+    static MessageCodec forHeader(byte[] header) throws StreamCorruptedException {
+        if (Arrays.equals(header, JAVA.header())) {
+            return JAVA;
+        }
+        if (Arrays.equals(header, JAVA_CACHED.header())) {
+            return JAVA_CACHED;
+        }
+        if (Arrays.equals(header, BINARY.header())) {
+            return BINARY;
+        }
+        throw new StreamCorruptedException("unknown codec header " + Arrays.toString(header));
+    }
+
+    /**
+     * Finds a codec by name, as given in configuration.
+     *
+     * @return the codec, or null if no codec has this name
+     */
+    static MessageCodec forName(String name) {
+        if (JAVA.name().equalsIgnoreCase(name)) {
+            return JAVA;
+        }
+        if (JAVA_CACHED.name().equalsIgnoreCase(name)) {
+            return JAVA_CACHED;
+        }
+        if (BINARY.name().equalsIgnoreCase(name)) {
+            return BINARY;
+        }
+        return null;
+    }
+}
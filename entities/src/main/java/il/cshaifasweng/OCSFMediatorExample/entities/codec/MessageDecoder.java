@@ -0,0 +1,33 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decodes the messages received on one connection, either from a blocking
+ * stream or from bytes buffered by a non-blocking transport. The header of
+ * the connection has already been consumed in both cases.
+ */
+public interface MessageDecoder {
+
+    /**
+     * Reads the next message, blocking until it is complete. Successive calls
+     * must be given the same stream.
+     */
+    Object read(InputStream in) throws IOException, ClassNotFoundException;
+
+    /**
+     * Decodes the next message if its bytes have all been received.
+     *
+     * @return the number of bytes of the message, or 0 if it is not complete
+     *         yet; the message is then returned by {@link #getMessage()}
+     */
+    int decode(byte[] buffer, int offset, int length) throws IOException;
+
+    /**
+     * @return the message found by the last successful {@link #decode} call
+     * @throws ClassNotFoundException if the message was of an unknown class;
+     *         its bytes were consumed all the same
+     */
+    Object getMessage() throws ClassNotFoundException;
+}
@@ -0,0 +1,15 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.codec;
+
+import java.io.IOException;
+
+/**
+ * Encodes the messages sent on one connection. Not thread-safe: a connection
+ * must encode its messages one at a time and write them in the same order.
+ */
+public interface MessageEncoder {
+
+    /**
+     * @return the complete frame of the message, ready to be written
+     */
+    byte[] encode(Object msg) throws IOException;
+}
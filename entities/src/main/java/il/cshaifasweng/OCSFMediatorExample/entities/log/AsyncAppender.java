@@ -0,0 +1,191 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.log;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes the events on a thread of its own, so that logging never waits on
+ * the console or a file.
+ *
+ * The threads that log claim a slot of a bounded ring of preallocated events
+ * with one compare-and-set, fill it in and publish it; the writer thread takes
+ * the slots in order, formats them and writes them in batches, flushing its
+ * output when the ring is empty. Each slot has a sequence saying whether it
+ * is free for, or holds, a position of the ring, as in the bounded queue of
+ * Dmitry Vyukov. When the ring is full the event is dropped rather than
+ * waited for, and the writer reports how many were.
+ */
+public final class AsyncAppender implements LogAppender {
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /** How long the writer sleeps at most when there is nothing to write */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final LogEvent[] ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final Writer out;
+    private final boolean json;
+    private final Thread writer;
+
+    /** The next position to write, only used by the writer thread */
+    private long head;
+    /** The positions written and flushed, for flush() */
+    private volatile long written;
+    private volatile boolean sleeping;
+    private volatile boolean closed;
+
+    /**
+     * @param out where to write the events
+     * @param capacity how many events can wait to be written, rounded up to a
+     *                 power of two
+     * @param json whether to write each event as a JSON object instead of a
+     *             line of text
+     */
+    public AsyncAppender(OutputStream out, int capacity, boolean json) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.ring = new LogEvent[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new LogEvent();
+            ring[i].sequence = i;
+        }
+        this.mask = size - 1;
+        this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        this.json = json;
+        this.writer = new Thread(this::run, "Log writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    /**
+     * @return how many events were dropped because the ring was full
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void append(String logger, Level level, String format, int count, Object a, Object b, Object c,
+                       Object[] args, Throwable thrown) {
+        if (closed) {
+            dropped.increment();
+            return;
+        }
+        long position = tail.get();
+        LogEvent event;
+        while (true) {
+            event = ring[(int) position & mask];
+            long difference = event.sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // The slot still holds the event of the previous lap: full.
+                dropped.increment();
+                return;
+            } else {
+                position = tail.get();
+            }
+        }
+        event.set(System.currentTimeMillis(), level, logger, Thread.currentThread().getName(),
+                format, count, a, b, c, args, thrown);
+        event.sequence = position + 1;
+        if (sleeping) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    @Override
+    public void flush() {
+        long target = tail.get();
+        while (written < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        StringBuilder line = new StringBuilder(256);
+        long reported = 0;
+        while (true) {
+            boolean wrote = false;
+            LogEvent event;
+            while ((event = ring[(int) head & mask]).sequence == head + 1) {
+                line.setLength(0);
+                try {
+                    if (json) {
+                        event.formatJson(line);
+                    } else {
+                        event.formatText(line);
+                    }
+                } catch (RuntimeException e) {
+                    line.append("Could not format a log event: ").append(e).append(System.lineSeparator());
+                }
+                event.clear();
+                event.sequence = head + ring.length;
+                head++;
+                write(line);
+                wrote = true;
+            }
+            long lost = dropped.sum();
+            if (lost != reported) {
+                line.setLength(0);
+                line.append(lost - reported).append(" log events were dropped, the ring of ")
+                        .append(ring.length).append(" was full").append(System.lineSeparator());
+                write(line);
+                reported = lost;
+                wrote = true;
+            }
+            if (wrote) {
+                try {
+                    out.flush();
+                } catch (IOException ignored) {
+                }
+                written = head;
+                continue;
+            }
+            if (closed) {
+                return;
+            }
+            sleeping = true;
+            if (ring[(int) head & mask].sequence != head + 1 && !closed) {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    private void write(StringBuilder line) {
+        try {
+            out.append(line);
+        } catch (IOException ignored) {
+            // Nowhere to report it; the game goes on without its log.
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.log;
+
+/**
+ * How important a log event is, from the least to the most. A logger
+ * keeps the events at or above its level; OFF keeps none.
+ */
+public enum Level {
+    TRACE, DEBUG, INFO, WARN, ERROR, OFF;
+
+    /**
+     * Finds a level by name, as given in configuration, ignoring case.
+     *
+     * @return the level, or null if no level has this name
+     */
+    public static Level forName(String name) {
+        for (Level level : values()) {
+            if (level.name().equalsIgnoreCase(name.trim())) {
+                return level;
+            }
+        }
+        return null;
+    }
+}
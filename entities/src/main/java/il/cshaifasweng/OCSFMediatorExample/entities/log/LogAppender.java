@@ -0,0 +1,26 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.log;
+
+/**
+ * Where the events kept by the loggers go. Called on the thread that logs,
+ * so an appender should return quickly and never wait on its output.
+ */
+public interface LogAppender {
+
+    /**
+     * Takes an event. The message is the format filled in with the first
+     * count of a, b and c, or with args when it is not null, as for a format
+     * with more than three placeholders.
+     */
+    void append(String logger, Level level, String format, int count, Object a, Object b, Object c,
+                Object[] args, Throwable thrown);
+
+    /**
+     * Waits until the events appended so far are written.
+     */
+    void flush();
+
+    /**
+     * Writes the pending events and stops.
+     */
+    void close();
+}
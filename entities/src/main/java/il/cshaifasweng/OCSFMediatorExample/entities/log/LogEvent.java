@@ -0,0 +1,156 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.log;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * A slot of the ring of the {@link AsyncAppender}: the fields of one event,
+ * filled in by the thread that logs and formatted by the appender thread,
+ * as a line of text or as a JSON object.
+ */
+final class LogEvent {
+    private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    /** The position in the ring this slot is free or full for, see AsyncAppender */
+    volatile long sequence;
+
+    private long time;
+    private Level level;
+    private String logger;
+    private String thread;
+    private String format;
+    private int count;
+    private Object a;
+    private Object b;
+    private Object c;
+    private Object[] args;
+    private Throwable thrown;
+
+    void set(long time, Level level, String logger, String thread, String format, int count,
+             Object a, Object b, Object c, Object[] args, Throwable thrown) {
+        this.time = time;
+        this.level = level;
+        this.logger = logger;
+        this.thread = thread;
+        this.format = format;
+        this.count = count;
+        this.a = a;
+        this.b = b;
+        this.c = c;
+        this.args = args;
+        this.thrown = thrown;
+    }
+
+    /** Lets go of the arguments once written. */
+    void clear() {
+        set(0, null, null, null, null, 0, null, null, null, null, null);
+    }
+
+    /**
+     * Appends the event as one line: time, level, thread, logger and message.
+     */
+    void formatText(StringBuilder line) {
+        TIME.formatTo(Instant.ofEpochMilli(time), line);
+        line.append(' ').append(level.name());
+        for (int i = level.name().length(); i < 5; i++) {
+            line.append(' ');
+        }
+        line.append(" [").append(thread).append("] ").append(logger).append(" - ");
+        formatMessage(line);
+        line.append(System.lineSeparator());
+        if (thrown != null) {
+            line.append(stackTrace());
+        }
+    }
+
+    /**
+     * Appends the event as a JSON object on one line, with the fields time,
+     * level, thread, logger, message and error if there is one.
+     */
+    void formatJson(StringBuilder line) {
+        line.append("{\"time\":\"").append(Instant.ofEpochMilli(time)).append('"');
+        line.append(",\"level\":\"").append(level.name()).append('"');
+        line.append(",\"thread\":");
+        appendJson(line, thread);
+        line.append(",\"logger\":");
+        appendJson(line, logger);
+        line.append(",\"message\":");
+        StringBuilder message = new StringBuilder();
+        formatMessage(message);
+        appendJson(line, message);
+        if (thrown != null) {
+            line.append(",\"error\":");
+            appendJson(line, stackTrace());
+        }
+        line.append('}').append(System.lineSeparator());
+    }
+
+    /**
+     * Fills in the "{}" placeholders of the format with the arguments, in
+     * order. Placeholders without an argument are left as they are.
+     */
+    void formatMessage(StringBuilder out) {
+        if (format == null) {
+            out.append("null");
+            return;
+        }
+        int count = args != null ? args.length : this.count;
+        int argument = 0;
+        int start = 0;
+        int placeholder;
+        while (argument < count && (placeholder = format.indexOf("{}", start)) >= 0) {
+            out.append(format, start, placeholder);
+            out.append(argument(argument++));
+            start = placeholder + 2;
+        }
+        out.append(format, start, format.length());
+    }
+
+    private Object argument(int index) {
+        if (args != null) {
+            return args[index];
+        }
+        return index == 0 ? a : index == 1 ? b : c;
+    }
+
+    private String stackTrace() {
+        StringWriter trace = new StringWriter();
+        thrown.printStackTrace(new PrintWriter(trace));
+        return trace.toString();
+    }
+
+    private static void appendJson(StringBuilder line, CharSequence text) {
+        line.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            switch (ch) {
+                case '"':
+                    line.append("\\\"");
+                    break;
+                case '\\':
+                    line.append("\\\\");
+                    break;
+                case '\n':
+                    line.append("\\n");
+                    break;
+                case '\r':
+                    line.append("\\r");
+                    break;
+                case '\t':
+                    line.append("\\t");
+                    break;
+                default:
+                    if (ch < 0x20) {
+                        line.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        line.append(ch);
+                    }
+            }
+        }
+        line.append('"');
+    }
+}
@@ -0,0 +1,94 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.log;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out the loggers and owns the appender they log to.
+ *
+ * Configured with system properties:
+ * <ul>
+ *     <li>log.level: the level of every logger, INFO by default</li>
+ *     <li>log.level.&lt;name&gt;: the level of the logger of this name, e.g.
+ *     -Dlog.level.GameRoom=DEBUG to follow the moves</li>
+ *     <li>log.format: text, the default, or json for one object per line</li>
+ *     <li>log.bufferSize: how many events can wait to be written, 8192 by
+ *     default; more are dropped and counted</li>
+ * </ul>
+ * The events are written to standard output as it was when the first logger
+ * was asked for, by an {@link AsyncAppender} that is drained when the
+ * program exits.
+ */
+public final class LogManager {
+    private static final ConcurrentHashMap<String, Logger> loggers = new ConcurrentHashMap<>();
+
+    private static volatile Level defaultLevel = level(System.getProperty("log.level"), Level.INFO);
+    private static volatile LogAppender appender = createAppender();
+
+    private LogManager() {
+    }
+
+    public static Logger getLogger(Class<?> type) {
+        return getLogger(type.getSimpleName());
+    }
+
+    public static Logger getLogger(String name) {
+        return loggers.computeIfAbsent(name,
+                key -> new Logger(key, level(System.getProperty("log.level." + key), defaultLevel)));
+    }
+
+    /**
+     * Sets the level of every logger, those to come included.
+     */
+    public static void setLevel(Level level) {
+        defaultLevel = level;
+        for (Logger logger : loggers.values()) {
+            logger.setLevel(level);
+        }
+    }
+
+    public static LogAppender getAppender() {
+        return appender;
+    }
+
+    /**
+     * Replaces the appender the loggers log to. The previous one is returned
+     * as is, to be closed or put back by the caller.
+     */
+    public static LogAppender setAppender(LogAppender appender) {
+        LogAppender previous = LogManager.appender;
+        LogManager.appender = appender;
+        return previous;
+    }
+
+    /**
+     * Waits until the events logged so far are written.
+     */
+    public static void flush() {
+        appender.flush();
+    }
+
+    static void append(Logger logger, Level level, String format, int count, Object a, Object b, Object c,
+                       Object[] args, Throwable thrown) {
+        appender.append(logger.getName(), level, format, count, a, b, c, args, thrown);
+    }
+
+    private static LogAppender createAppender() {
+        int capacity = Integer.getInteger("log.bufferSize", AsyncAppender.DEFAULT_CAPACITY);
+        boolean json = "json".equalsIgnoreCase(System.getProperty("log.format", "text"));
+        AsyncAppender async = new AsyncAppender(System.out, capacity, json);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> appender.close(), "Log shutdown"));
+        return async;
+    }
+
+    private static Level level(String name, Level otherwise) {
+        if (name == null) {
+            return otherwise;
+        }
+        Level level = Level.forName(name);
+        if (level == null) {
+            System.err.println("Unknown log level " + name + ", using " + otherwise);
+            return otherwise;
+        }
+        return level;
+    }
+}
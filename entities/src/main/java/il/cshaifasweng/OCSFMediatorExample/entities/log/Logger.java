@@ -0,0 +1,216 @@
+package il.cshaifasweng.OCSFMediatorExample.entities.log;
+
+/**
+ * Logs the events of one part of the program, e.g. a class, at or above its
+ * level. Obtained from {@link LogManager#getLogger(Class)}.
+ *
+ * Messages are formats with "{}" placeholders, filled in with the arguments
+ * in order. Nothing is formatted by the calling thread: an event below the
+ * level costs one comparison, and a kept one is handed to the appender of
+ * the {@link LogManager} as is, to be formatted on its own thread. The
+ * arguments should therefore not change once logged, e.g. numbers,
+ * strings and symbols rather than a board still in play. Up to three
+ * arguments are passed without an array. A throwable is logged with its
+ * stack trace, after a message or a format with one argument.
+ */
+public final class Logger {
+    private final String name;
+    private volatile Level level;
+
+    Logger(String name, Level level) {
+        this.name = name;
+        this.level = level;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public void setLevel(Level level) {
+        this.level = level;
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(this.level) >= 0 && level != Level.OFF;
+    }
+
+    public boolean isTraceEnabled() {
+        return level == Level.TRACE;
+    }
+
+    public boolean isDebugEnabled() {
+        return level.compareTo(Level.DEBUG) <= 0;
+    }
+
+    public void log(Level level, String format, Object... args) {
+        if (isEnabled(level)) {
+            LogManager.append(this, level, format, 0, null, null, null, args, null);
+        }
+    }
+
+    public void trace(String message) {
+        if (isTraceEnabled()) {
+            LogManager.append(this, Level.TRACE, message, 0, null, null, null, null, null);
+        }
+    }
+
+    public void trace(String format, Object a) {
+        if (isTraceEnabled()) {
+            LogManager.append(this, Level.TRACE, format, 1, a, null, null, null, null);
+        }
+    }
+
+    public void trace(String format, Object a, Object b) {
+        if (isTraceEnabled()) {
+            LogManager.append(this, Level.TRACE, format, 2, a, b, null, null, null);
+        }
+    }
+
+    public void trace(String format, Object a, Object b, Object c) {
+        if (isTraceEnabled()) {
+            LogManager.append(this, Level.TRACE, format, 3, a, b, c, null, null);
+        }
+    }
+
+    public void trace(String format, Object... args) {
+        if (isTraceEnabled()) {
+            LogManager.append(this, Level.TRACE, format, 0, null, null, null, args, null);
+        }
+    }
+
+    public void debug(String message) {
+        if (isDebugEnabled()) {
+            LogManager.append(this, Level.DEBUG, message, 0, null, null, null, null, null);
+        }
+    }
+
+    public void debug(String format, Object a) {
+        if (isDebugEnabled()) {
+            LogManager.append(this, Level.DEBUG, format, 1, a, null, null, null, null);
+        }
+    }
+
+    public void debug(String format, Object a, Object b) {
+        if (isDebugEnabled()) {
+            LogManager.append(this, Level.DEBUG, format, 2, a, b, null, null, null);
+        }
+    }
+
+    public void debug(String format, Object a, Object b, Object c) {
+        if (isDebugEnabled()) {
+            LogManager.append(this, Level.DEBUG, format, 3, a, b, c, null, null);
+        }
+    }
+
+    public void debug(String format, Object... args) {
+        if (isDebugEnabled()) {
+            LogManager.append(this, Level.DEBUG, format, 0, null, null, null, args, null);
+        }
+    }
+
+    public void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            LogManager.append(this, Level.INFO, message, 0, null, null, null, null, null);
+        }
+    }
+
+    public void info(String format, Object a) {
+        if (isEnabled(Level.INFO)) {
+            LogManager.append(this, Level.INFO, format, 1, a, null, null, null, null);
+        }
+    }
+
+    public void info(String format, Object a, Object b) {
+        if (isEnabled(Level.INFO)) {
+            LogManager.append(this, Level.INFO, format, 2, a, b, null, null, null);
+        }
+    }
+
+    public void info(String format, Object a, Object b, Object c) {
+        if (isEnabled(Level.INFO)) {
+            LogManager.append(this, Level.INFO, format, 3, a, b, c, null, null);
+        }
+    }
+
+    public void info(String format, Object... args) {
+        if (isEnabled(Level.INFO)) {
+            LogManager.append(this, Level.INFO, format, 0, null, null, null, args, null);
+        }
+    }
+
+    public void warn(String message) {
+        if (isEnabled(Level.WARN)) {
+            LogManager.append(this, Level.WARN, message, 0, null, null, null, null, null);
+        }
+    }
+
+    public void warn(String format, Object a) {
+        if (isEnabled(Level.WARN)) {
+            LogManager.append(this, Level.WARN, format, 1, a, null, null, null, null);
+        }
+    }
+
+    public void warn(String format, Object a, Object b) {
+        if (isEnabled(Level.WARN)) {
+            LogManager.append(this, Level.WARN, format, 2, a, b, null, null, null);
+        }
+    }
+
+    public void warn(String format, Object... args) {
+        if (isEnabled(Level.WARN)) {
+            LogManager.append(this, Level.WARN, format, 0, null, null, null, args, null);
+        }
+    }
+
+    public void warn(String message, Throwable thrown) {
+        if (isEnabled(Level.WARN)) {
+            LogManager.append(this, Level.WARN, message, 0, null, null, null, null, thrown);
+        }
+    }
+
+    public void warn(String format, Object a, Throwable thrown) {
+        if (isEnabled(Level.WARN)) {
+            LogManager.append(this, Level.WARN, format, 1, a, null, null, null, thrown);
+        }
+    }
+
+    public void error(String message) {
+        if (isEnabled(Level.ERROR)) {
+            LogManager.append(this, Level.ERROR, message, 0, null, null, null, null, null);
+        }
+    }
+
+    public void error(String format, Object a) {
+        if (isEnabled(Level.ERROR)) {
+            LogManager.append(this, Level.ERROR, format, 1, a, null, null, null, null);
+        }
+    }
+
+    public void error(String format, Object a, Object b) {
+        if (isEnabled(Level.ERROR)) {
+            LogManager.append(this, Level.ERROR, format, 2, a, b, null, null, null);
+        }
+    }
+
+    public void error(String format, Object... args) {
+        if (isEnabled(Level.ERROR)) {
+            LogManager.append(this, Level.ERROR, format, 0, null, null, null, args, null);
+        }
+    }
+
+    public void error(String message, Throwable thrown) {
+        if (isEnabled(Level.ERROR)) {
+            LogManager.append(this, Level.ERROR, message, 0, null, null, null, null, thrown);
+        }
+    }
+
+    public void error(String format, Object a, Throwable thrown) {
+        if (isEnabled(Level.ERROR)) {
+            LogManager.append(this, Level.ERROR, format, 1, a, null, null, null, thrown);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package il.cshaifasweng.OCSFMediatorExample.loadgen;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts latencies in microseconds, recorded from any thread, to report
+ * their percentiles. Values up to 127 us have a bucket each; above, each
+ * power of two is split in 64 buckets, so a percentile is off by less than
+ * 1.6% at worst, whatever the number of values.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Buckets up to Long.MAX_VALUE us */
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(indexOf(micros));
+        count.increment();
+        sum.add(micros);
+        max.accumulate(micros);
+    }
+
+    static int indexOf(long micros) {
+        if (micros < 2 * SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (micros >>> shift);
+    }
+
+    /** The highest value counted in a bucket. */
+    static long highestOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long mantissa = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getMaxMicros() {
+        return max.get();
+    }
+
+    double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return the value below which the given percentage of the values fall, in microseconds
+     */
+    long getPercentileMicros(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+}
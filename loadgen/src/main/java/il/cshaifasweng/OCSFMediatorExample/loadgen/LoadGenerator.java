@@ -0,0 +1,203 @@
+package il.cshaifasweng.OCSFMediatorExample.loadgen;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageCodec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Loads a running server with many players from one process, each on its
+ * own connection, and reports the moves per second and the percentiles of
+ * the round trip of a move.
+ *
+ * Run with: java [options] -jar loadgen/target/loadgen-0.0.1-SNAPSHOT-jar-with-dependencies.jar
+ * where the options are
+ * -Dloadgen.host=HOST -Dloadgen.port=PORT -Dloadgen.clients=N
+ * -Dloadgen.games=N (games each player plays before leaving)
+ * -Dloadgen.thinkMillis=MS (mean wait before each move and restart)
+ * -Dloadgen.boardSize=N -Dloadgen.winLength=N (0 for 3x3)
+ * -Dloadgen.rampMillis=MS (time to open all the connections)
+ * -Dloadgen.timeoutSeconds=S -Docsf.codec=binary|java|java-cached
+ *
+ * An even number of clients pairs them all: with an odd number, the last
+ * one waits for the bot timeout of the server.
+ */
+public class LoadGenerator {
+    private static final long REPORT_SECONDS = 5;
+
+    private final String host;
+    private final int port;
+    private final int clients;
+    private final int games;
+    private final long thinkMillis;
+    private final int boardSize;
+    private final int winLength;
+    private final MessageCodec codec;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder rejectedMoves = new LongAdder();
+    private final LongAdder gamesOver = new LongAdder();
+    private final LongAdder opponentsLeft = new LongAdder();
+    private final AtomicInteger failedPlayers = new AtomicInteger();
+    private final CountDownLatch finished;
+
+    public LoadGenerator(String host, int port, int clients, int games, long thinkMillis,
+                         int boardSize, int winLength, MessageCodec codec) {
+        this.host = host;
+        this.port = port;
+        this.clients = clients;
+        this.games = games;
+        this.thinkMillis = thinkMillis;
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+        this.codec = codec;
+        finished = new CountDownLatch(clients);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        MessageCodec codec = MessageCodec.forName(System.getProperty("ocsf.codec", "binary"));
+        LoadGenerator generator = new LoadGenerator(
+                System.getProperty("loadgen.host", "localhost"),
+                Integer.getInteger("loadgen.port", 3000),
+                Integer.getInteger("loadgen.clients", 100),
+                Integer.getInteger("loadgen.games", 10),
+                Long.getLong("loadgen.thinkMillis", 0),
+                Integer.getInteger("loadgen.boardSize", 0),
+                Integer.getInteger("loadgen.winLength", 0),
+                codec != null ? codec : MessageCodec.BINARY);
+        generator.run(Long.getLong("loadgen.rampMillis", 1000), Long.getLong("loadgen.timeoutSeconds", 300));
+    }
+
+    /**
+     * Connects all the players, lets them play their games and prints the
+     * report, after they are all done or once the timeout is over.
+     */
+    public void run(long rampMillis, long timeoutSeconds) throws InterruptedException {
+        System.out.println("Loading " + host + ":" + port + " with " + clients + " clients, " + games
+                + " games each, " + thinkMillis + " ms think time, " + codec.name() + " codec");
+
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(threads, task -> {
+            Thread thread = new Thread(task, "Load generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<SimulatedPlayer> players = new ArrayList<>(clients);
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            SimulatedPlayer player = new SimulatedPlayer(this, scheduler, i);
+            try {
+                player.openConnection();
+                player.join();
+                players.add(player);
+            } catch (IOException e) {
+                System.out.println("Client " + i + " could not connect: " + e.getMessage());
+                playerFinished(false);
+            }
+            // Spread the connections over the ramp, not to flood the accept queue
+            long due = start + rampMillis * 1_000_000L * (i + 1) / clients;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+        }
+
+        long lastMoves = 0;
+        long lastReport = start;
+        long deadline = start + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        while (!finished.await(REPORT_SECONDS, TimeUnit.SECONDS) && System.nanoTime() < deadline) {
+            long now = System.nanoTime();
+            long moves = latencies.getCount();
+            System.out.printf("%6.1f s: %d moves, %.0f moves/s, %d games, %d clients done%n",
+                    (now - start) / 1e9, moves, (moves - lastMoves) * 1e9 / (now - lastReport),
+                    gamesOver.sum(), clients - finished.getCount());
+            lastMoves = moves;
+            lastReport = now;
+        }
+        report(System.nanoTime() - start);
+
+        for (SimulatedPlayer player : players) {
+            try {
+                player.closeConnection();
+            } catch (IOException e) {
+                // Closed already
+            }
+        }
+        scheduler.shutdownNow();
+    }
+
+    private void report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long moves = latencies.getCount();
+        System.out.println();
+        System.out.printf("Clients:   %d done, %d failed, %d unfinished%n",
+                clients - finished.getCount() - failedPlayers.get(), failedPlayers.get(), finished.getCount());
+        System.out.printf("Games:     %d in %.1f s, %.1f games/s, %d left by an opponent%n",
+                gamesOver.sum(), seconds, gamesOver.sum() / seconds, opponentsLeft.sum());
+        System.out.printf("Moves:     %d, %.1f moves/s, %d rejected%n", moves, moves / seconds, rejectedMoves.sum());
+        System.out.printf("Round trip of a move, ms: mean %.3f  p50 %.3f  p99 %.3f  p99.9 %.3f  max %.3f%n",
+                latencies.getMeanMicros() / 1000,
+                latencies.getPercentileMicros(50) / 1000.0,
+                latencies.getPercentileMicros(99) / 1000.0,
+                latencies.getPercentileMicros(99.9) / 1000.0,
+                latencies.getMaxMicros() / 1000.0);
+    }
+
+    void moveAnswered(long nanos, boolean rejected) {
+        latencies.record(nanos);
+        if (rejected) {
+            rejectedMoves.increment();
+        }
+    }
+
+    void gameOver() {
+        gamesOver.increment();
+    }
+
+    void opponentLeft() {
+        opponentsLeft.increment();
+    }
+
+    void playerFinished(boolean completed) {
+        if (!completed) {
+            failedPlayers.incrementAndGet();
+        }
+        finished.countDown();
+    }
+
+    String getHost() {
+        return host;
+    }
+
+    int getPort() {
+        return port;
+    }
+
+    int getGames() {
+        return games;
+    }
+
+    long getThinkMillis() {
+        return thinkMillis;
+    }
+
+    int getBoardSize() {
+        return boardSize;
+    }
+
+    int getWinLength() {
+        return winLength;
+    }
+
+    MessageCodec getCodec() {
+        return codec;
+    }
+}
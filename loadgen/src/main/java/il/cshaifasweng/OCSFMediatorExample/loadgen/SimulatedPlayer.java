@@ -0,0 +1,209 @@
+package il.cshaifasweng.OCSFMediatorExample.loadgen;
+
+import il.cshaifasweng.OCSFMediatorExample.client.ocsf.AbstractClient;
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One player on its own connection, without a screen. It joins a game,
+ * plays a random empty cell whenever it is its turn and asks for a restart
+ * once a game is over, until it has played its games, then disconnects.
+ * Each action waits for the think time first, on the shared scheduler.
+ *
+ * The round trip of a move is timed from the MOVE sent to the answer of
+ * the server: the delta of the move, the end of the game, or the board
+ * back if the move was rejected.
+ */
+class SimulatedPlayer extends AbstractClient {
+    private final LoadGenerator generator;
+    private final ScheduledExecutorService scheduler;
+    private final SplittableRandom random;
+    private final int games;
+
+    private char symbol;
+    private GameBoard board;
+    private int sequence;
+    private boolean inGame;
+    private int gamesPlayed;
+    private long moveSentAt;
+    private boolean done;
+
+    SimulatedPlayer(LoadGenerator generator, ScheduledExecutorService scheduler, long seed) {
+        super(generator.getHost(), generator.getPort());
+        this.generator = generator;
+        this.scheduler = scheduler;
+        this.random = new SplittableRandom(seed);
+        this.games = generator.getGames();
+        setCodec(generator.getCodec());
+    }
+
+    void join() throws IOException {
+        GameMessage message = new GameMessage(GameMessage.MessageType.JOIN_GAME);
+        message.setBoardSize(generator.getBoardSize());
+        message.setWinLength(generator.getWinLength());
+        sendToServer(message);
+    }
+
+    @Override
+    public synchronized void sendToServer(Object msg) throws IOException {
+        // Sent from the reader thread and the scheduler, never interleaved
+        super.sendToServer(msg);
+    }
+
+    @Override
+    protected synchronized void handleMessageFromServer(Object msg) {
+        if (done || !(msg instanceof GameMessage)) {
+            return;
+        }
+        GameMessage message = (GameMessage) msg;
+        switch (message.getType()) {
+            case PLAYER_ASSIGNED:
+                symbol = message.getPlayerSymbol();
+                break;
+            case BOARD_UPDATE:
+                board = message.getGameBoard();
+                sequence = message.getSequence();
+                inGame = !board.isGameOver();
+                moveAnswered(true);
+                playIfMyTurn(message.getPlayerSymbol());
+                break;
+            case BOARD_DELTA:
+                if (board == null || message.getSequence() != sequence + 1) {
+                    // A delta was dropped on the way, the full board follows
+                    send(new GameMessage(GameMessage.MessageType.BOARD_SYNC));
+                    return;
+                }
+                board.makeMove(message.getRow(), message.getCol(), message.getCellSymbol());
+                sequence++;
+                moveAnswered(false);
+                playIfMyTurn(message.getPlayerSymbol());
+                break;
+            case GAME_OVER:
+                if (message.getGameBoard() == null) {
+                    opponentLeft();
+                    break;
+                }
+                moveAnswered(false);
+                gameOver();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void moveAnswered(boolean rejected) {
+        if (moveSentAt == 0) {
+            return;
+        }
+        generator.moveAnswered(System.nanoTime() - moveSentAt, rejected);
+        moveSentAt = 0;
+    }
+
+    private void playIfMyTurn(char turn) {
+        if (!inGame || turn != symbol) {
+            return;
+        }
+        int boardSequence = sequence;
+        later(() -> play(boardSequence));
+    }
+
+    private synchronized void play(int boardSequence) {
+        // The board may have been sent again meanwhile, with this turn already scheduled
+        if (done || !inGame || sequence != boardSequence || moveSentAt != 0) {
+            return;
+        }
+        int size = board.getSize();
+        int cells = size * size;
+        int start = random.nextInt(cells);
+        for (int i = 0; i < cells; i++) {
+            int cell = (start + i) % cells;
+            if (board.getCell(cell / size, cell % size) == ' ') {
+                GameMessage move = new GameMessage(GameMessage.MessageType.MOVE);
+                move.setRow(cell / size);
+                move.setCol(cell % size);
+                move.setPlayerSymbol(symbol);
+                moveSentAt = System.nanoTime();
+                send(move);
+                return;
+            }
+        }
+    }
+
+    private void gameOver() {
+        inGame = false;
+        gamesPlayed++;
+        // Both players see the end of a game, X is always one of the clients
+        if (symbol == 'X') {
+            generator.gameOver();
+        }
+        if (gamesPlayed >= games) {
+            finish(true);
+            return;
+        }
+        later(this::restart);
+    }
+
+    /**
+     * The game ends without a board when the opponent left, e.g. done with
+     * its games: the server looks for another one, and the game does not
+     * count. A move on its way may still reach the next room.
+     */
+    private void opponentLeft() {
+        inGame = false;
+        board = null;
+        moveSentAt = 0;
+        generator.opponentLeft();
+    }
+
+    private synchronized void restart() {
+        // The other player may have restarted the game first
+        if (!done && !inGame) {
+            send(new GameMessage(GameMessage.MessageType.RESTART_GAME));
+        }
+    }
+
+    private void send(GameMessage message) {
+        try {
+            sendToServer(message);
+        } catch (IOException e) {
+            connectionException(e);
+        }
+    }
+
+    private void later(Runnable action) {
+        long think = generator.getThinkMillis();
+        long delay = think == 0 ? 0 : think / 2 + random.nextLong(think + 1);
+        scheduler.schedule(action, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void finish(boolean completed) {
+        if (done) {
+            return;
+        }
+        done = true;
+        generator.playerFinished(completed);
+        try {
+            closeConnection();
+        } catch (IOException e) {
+            // Closed already
+        }
+    }
+
+    @Override
+    protected void connectionException(Exception exception) {
+        if (!done) {
+            System.out.println("Player " + symbol + " lost its connection: " + exception.getMessage());
+        }
+        finish(false);
+    }
+
+    @Override
+    protected void connectionClosed() {
+        finish(false);
+    }
+}
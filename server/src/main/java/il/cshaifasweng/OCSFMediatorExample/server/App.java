@@ -1,6 +1,11 @@
 package il.cshaifasweng.OCSFMediatorExample.server;
 
+import il.cshaifasweng.OCSFMediatorExample.entities.log.LogManager;
+import il.cshaifasweng.OCSFMediatorExample.server.journal.GameJournal;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.AbstractServer;
+
 import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * Hello world!
@@ -13,6 +18,56 @@ public class App
     public static void main( String[] args ) throws IOException
     {
         server = new SimpleServer(3000);
+        // -Docsf.transport=nio serves all clients from a few event loop threads,
+        // -Docsf.transport=virtual gives each client a virtual thread
+        String transport = System.getProperty("ocsf.transport", "");
+        if (transport.equalsIgnoreCase("nio")) {
+            server.setTransportMode(AbstractServer.TransportMode.NIO);
+        } else if (transport.equalsIgnoreCase("virtual")) {
+            server.setTransportMode(AbstractServer.TransportMode.VIRTUAL_THREAD);
+        }
+        // -Docsf.outboundQueue=N bounds the messages queued for each client,
+        // -Docsf.overflow=disconnect drops slow clients instead of old board updates
+        server.setOutboundQueueCapacity(Integer.getInteger("ocsf.outboundQueue", server.getOutboundQueueCapacity()));
+        if (System.getProperty("ocsf.overflow", "").equalsIgnoreCase("disconnect")) {
+            server.setOverflowPolicy(AbstractServer.OverflowPolicy.DISCONNECT);
+        }
+        // -Dgame.botTimeout=MS is how long a player waits before playing a bot, 0 to wait forever,
+        // -Dgame.botStrength=0..1 and -Dgame.botThink=MS set how the bot plays,
+        // -Dgame.botSearchMillis=MS and -Dgame.hintMillis=MS how long a move of a bot
+        // and a hint may search on large boards
+        GameManager games = GameManager.getInstance();
+        games.setBotPlayer(Double.parseDouble(System.getProperty("game.botStrength", "0.8")),
+                Long.getLong("game.botThink", 500));
+        games.setWaitTimeoutMillis(Long.getLong("game.botTimeout", 10000));
+        games.setBotSearchMillis(Long.getLong("game.botSearchMillis", BotPlayer.DEFAULT_SEARCH_MILLIS));
+        games.setHintMillis(Long.getLong("game.hintMillis", 100));
+        // -Dserver.journal=DIR journals the games in DIR, written to the disk every
+        // -Dserver.journalCommitMillis=MS
+        String journalDirectory = System.getProperty("server.journal");
+        if (journalDirectory != null) {
+            GameJournal journal = new GameJournal(Paths.get(journalDirectory), GameJournal.DEFAULT_SEGMENT_SIZE,
+                    Long.getLong("server.journalCommitMillis", GameJournal.DEFAULT_COMMIT_MILLIS));
+            games.setJournal(journal);
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "Journal shutdown"));
+        }
+        // -Dserver.metricsSeconds=S prints the metrics every S seconds, else a client sends "#metrics"
+        long metricsSeconds = Long.getLong("server.metricsSeconds", 0);
+        if (metricsSeconds > 0) {
+            Thread reporter = new Thread(() -> {
+                try {
+                    while (true) {
+                        Thread.sleep(metricsSeconds * 1000);
+                        LogManager.getLogger("Metrics").info("{}{}", System.lineSeparator(), server.getMetricsSnapshot());
+                    }
+                } catch (InterruptedException e) {
+                    // Stopped with the server
+                }
+            }, "Metrics reporter");
+            reporter.setDaemon(true);
+            reporter.start();
+        }
+        // -Dlog.level=DEBUG logs every message and move, -Dlog.format=json one object per line
         server.listen();
     }
 }
@@ -0,0 +1,147 @@
+package il.cshaifasweng.OCSFMediatorExample.server;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.server.ai.PerfectPlaySolver;
+import il.cshaifasweng.OCSFMediatorExample.server.ai.SearchEngine;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A player played by the server, without any connection. When a board says
+ * it is the bot's turn, the bot schedules its move on a shared scheduler
+ * after its think time; the move is then chosen from a copy of the board at
+ * that time and played if the game has not moved on. A bot is a few fields
+ * and at most one pending task, so a server can run many thousands of bot
+ * games on the threads of a single scheduler.
+ *
+ * The strength of a bot is the probability that it plays a best move;
+ * otherwise it plays a random empty cell. On the 3x3 board the best move is
+ * looked up in the {@link PerfectPlaySolver} table, and a bot of strength 1
+ * never loses. On larger boards it is searched by the {@link SearchEngine} of
+ * a thread of the search executor once the think time is over, within a
+ * search budget of its own: the think time is only how long the bot seems
+ * to think, and keeps no thread busy.
+ */
+public class BotPlayer implements Player {
+    public static final long DEFAULT_SEARCH_MILLIS = 20;
+
+    private final double strength;
+    private final long thinkMillis;
+    private final long searchMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Executor searches;
+    private volatile GameRoom room;
+    private volatile char symbol;
+
+    /**
+     * A bot searching its moves on the scheduler, within the default budget.
+     *
+     * @param strength    between 0, random moves, and 1, perfect play
+     * @param thinkMillis how long the bot waits before playing
+     * @param scheduler   the scheduler running the moves of the bot
+     */
+    public BotPlayer(double strength, long thinkMillis, ScheduledExecutorService scheduler) {
+        this(strength, thinkMillis, DEFAULT_SEARCH_MILLIS, scheduler, scheduler);
+    }
+
+    /**
+     * @param strength     between 0, random moves, and 1, perfect play
+     * @param thinkMillis  how long the bot waits before playing
+     * @param searchMillis how long the bot may search a move on boards larger than 3x3
+     * @param scheduler    the scheduler running the moves of the bot
+     * @param searches     the executor running the searches of the bot
+     */
+    public BotPlayer(double strength, long thinkMillis, long searchMillis, ScheduledExecutorService scheduler,
+                     Executor searches) {
+        if (strength < 0 || strength > 1) {
+            throw new IllegalArgumentException("strength must be between 0 and 1: " + strength);
+        }
+        this.strength = strength;
+        this.thinkMillis = thinkMillis;
+        this.searchMillis = searchMillis;
+        this.scheduler = scheduler;
+        this.searches = searches;
+    }
+
+    @Override
+    public void seated(GameRoom room, char symbol) {
+        this.room = room;
+        this.symbol = symbol;
+    }
+
+    @Override
+    public void send(GameMessage message) {
+        GameMessage.MessageType type = message.getType();
+        if ((type == GameMessage.MessageType.BOARD_UPDATE || type == GameMessage.MessageType.BOARD_DELTA)
+                && message.getPlayerSymbol() == symbol) {
+            GameRoom current = room;
+            Runnable play = () -> current.playBotTurn(this);
+            if (current.getBoardSize() != GameBoard.SIZE || current.getWinLength() != GameBoard.SIZE) {
+                scheduler.schedule(() -> searches.execute(play), thinkMillis, TimeUnit.MILLISECONDS);
+            } else {
+                scheduler.schedule(play, thinkMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Chooses the cell to play. Called by the room, with a copy of its board.
+     *
+     * @return the cell as row * size + col, or -1 if the game is over
+     */
+    int chooseMove(GameBoard board) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (strength >= 1 || random.nextDouble() < strength) {
+            return bestMove(board, searchMillis);
+        }
+
+        int empty = board.getCellCount() - board.getMoveCount();
+        if (empty == 0 || board.isGameOver()) {
+            return -1;
+        }
+        int skip = random.nextInt(empty);
+        for (int cell = 0; cell < board.getCellCount(); cell++) {
+            if (board.getCell(cell / board.getSize(), cell % board.getSize()) == ' ' && skip-- == 0) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the best move for the current player of a board: from the table
+     * on the 3x3 board, else by a search of at most the given budget.
+     *
+     * @return the cell as row * size + col, or -1 if the game is over
+     */
+    static int bestMove(GameBoard board, long budgetMillis) {
+        if (board.isGameOver()) {
+            return -1;
+        }
+        PerfectPlaySolver solver = PerfectPlaySolver.getInstance();
+        if (solver.isReachable(board)) {
+            return solver.getBestMove(board, ThreadLocalRandom.current());
+        }
+        return SearchEngine.forCurrentThread().search(board, budgetMillis).getMove();
+    }
+
+    public double getStrength() {
+        return strength;
+    }
+
+    public long getThinkMillis() {
+        return thinkMillis;
+    }
+
+    public long getSearchMillis() {
+        return searchMillis;
+    }
+
+    public char getSymbol() {
+        return symbol;
+    }
+}
@@ -0,0 +1,27 @@
+package il.cshaifasweng.OCSFMediatorExample.server;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+
+import java.io.IOException;
+
+/**
+ * A player connected to the server. Its messages are queued for its
+ * connection, whose writer sends them.
+ */
+public class ClientPlayer implements Player {
+    private final ConnectionToClient client;
+
+    public ClientPlayer(ConnectionToClient client) {
+        this.client = client;
+    }
+
+    public ConnectionToClient getClient() {
+        return client;
+    }
+
+    @Override
+    public void send(GameMessage message) throws IOException {
+        client.sendToClient(message);
+    }
+}
@@ -2,25 +2,78 @@ package il.cshaifasweng.OCSFMediatorExample.server;
 
 import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
 import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.LogManager;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.Logger;
+import il.cshaifasweng.OCSFMediatorExample.server.journal.GameJournal;
 import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
 
-import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Registry of the game rooms of the server. Each client is mapped to the
+ * room it plays in, so every request is routed to its room in O(1) and then
+ * handled under that room's own lock only. Players asking to join are paired
+ * into new rooms by the {@link Matchmaker} of the board they asked for, one
+ * per board size and win length. A player that waits longer than the wait
+ * timeout plays against a {@link BotPlayer}.
+ *
+ * The wait timeouts and the moves of all the bots run on one shared
+ * scheduler. The searches of the bots on boards larger than 3x3 run on a
+ * small pool of their own, within a short budget. The hints are searched on
+ * another pool, with a bounded queue and at most one pending hint per
+ * player, so that players asking for hints cannot hold the threads the bots
+ * play on. All the threads are daemons.
+ */
 public class GameManager {
+    private static final Logger log = LogManager.getLogger(GameManager.class);
     private static GameManager instance = null;
-    private GameBoard gameBoard;
-    private ConnectionToClient playerX;
-    private ConnectionToClient playerO;
-    private char currentTurn; // 'X' or 'O'
-    private boolean gameInProgress;
-    private final Random random = new Random();
+    private static final int MAX_PENDING_HINTS = 256;
+
+    private final Map<ConnectionToClient, GameRoom> roomsByClient = new ConcurrentHashMap<>();
+    private final Map<Integer, GameRoom> rooms = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRoomId = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor hintSearches;
+    private final ExecutorService botSearches;
+    private final Map<Integer, Matchmaker> matchmakers = new ConcurrentHashMap<>();
+    private volatile long waitTimeoutMillis; // 0 to wait forever
+    private volatile double botStrength = 1.0;
+    private volatile long botThinkMillis = 500;
+    private volatile long botSearchMillis = BotPlayer.DEFAULT_SEARCH_MILLIS;
+    private volatile long hintMillis = 100;
+    private volatile GameJournal journal; // null to not journal the games
+    private volatile Subscriptions subscriptions; // null if the games cannot be watched
     
     private GameManager() {
-        gameBoard = new GameBoard();
-        gameInProgress = false;
+        int cores = Runtime.getRuntime().availableProcessors();
+        ScheduledThreadPoolExecutor timers = new ScheduledThreadPoolExecutor(cores, daemonThreads("Game scheduler"));
+        // The wait timeouts of the players paired in time are cancelled, and leave the queue
+        timers.setRemoveOnCancelPolicy(true);
+        scheduler = timers;
+        int searchThreads = Math.max(1, cores / 2);
+        hintSearches = new ThreadPoolExecutor(searchThreads, searchThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_HINTS), daemonThreads("Hint search"));
+        botSearches = Executors.newFixedThreadPool(searchThreads, daemonThreads("Bot search"));
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger threads = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, name + " " + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
     
     public static synchronized GameManager getInstance() {
@@ -30,287 +83,285 @@ public class GameManager {
         return instance;
     }
     
-    public synchronized void handleJoinGame(ConnectionToClient client) {
-        System.out.println("Client joined game: " + client.getInetAddress());
-        
-        // If game is already in progress with two players
-        if (gameInProgress && playerX != null && playerO != null) {
-            try {
-                GameMessage message = new GameMessage(GameMessage.MessageType.GAME_JOINED);
-                message.setMessage("Game is already in progress. Please try again later.");
-                client.sendToClient(message);
-                System.out.println("Game is full, rejected player");
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    public void handleJoinGame(ConnectionToClient client) {
+        handleJoinGame(client, GameBoard.SIZE, GameBoard.SIZE);
+    }
+
+    /**
+     * Joins a game on a board of the given size and win length, or on the
+     * 3x3 board if they are 0 or invalid.
+     */
+    public void handleJoinGame(ConnectionToClient client, int boardSize, int winLength) {
+        log.info("Client joined game: {}", client.getInetAddress());
+
+        // A player joining again gets the current state of its room
+        GameRoom current = roomsByClient.get(client);
+        if (current != null) {
+            current.handleRejoin(client);
             return;
         }
-        
-        // If there's no game in progress and no players waiting
-        if (!gameInProgress && playerX == null && playerO == null) {
-            // Assign first player to X
-            playerX = client;
-            sendPlayerAssigned(client, 'X');
-            System.out.println("Assigned player X");
-            
-            // Tell player to wait for another player
-            sendWaitForPlayer(client);
+
+        if (isWaiting(client)) {
+            GameRoom.sendWaitForPlayer(client);
+            return;
         }
-        // If there's one player waiting
-        else if (!gameInProgress && (playerX == null || playerO == null)) {
-            // Assign second player to O
-            if (playerX == null) {
-                playerX = client;
-                sendPlayerAssigned(client, 'X');
-                System.out.println("Assigned player X");
-            } else {
-                playerO = client;
-                sendPlayerAssigned(client, 'O');
-                System.out.println("Assigned player O");
-            }
-            
-            // Start the game
-            startGame();
+
+        if (boardSize == 0 && winLength == 0) {
+            boardSize = GameBoard.SIZE;
+            winLength = GameBoard.SIZE;
+        } else if (!GameBoard.isValid(boardSize, winLength)) {
+            log.warn("Invalid board {}x{}, {} in a row, joining a 3x3 game instead", boardSize, boardSize, winLength);
+            boardSize = GameBoard.SIZE;
+            winLength = GameBoard.SIZE;
         }
-        // If client is reconnecting or requesting current state
-        else if (gameInProgress && (client == playerX || client == playerO)) {
-            // Send current game state to the reconnecting player
-            char symbol = (client == playerX) ? 'X' : 'O';
-            sendPlayerAssigned(client, symbol);
-            
-            // Send current board state
-            GameMessage boardMessage = new GameMessage(GameMessage.MessageType.BOARD_UPDATE);
-            boardMessage.setGameBoard(gameBoard);
-            boardMessage.setPlayerSymbol(currentTurn);
-            boardMessage.setMessage(currentTurn == symbol ? "Your turn" : "Opponent's turn");
-            
-            try {
-                client.sendToClient(boardMessage);
-                System.out.println("Sent current board state to reconnecting player");
-                
-                // Also send a PLAYER_TURN message to ensure proper turn state
-                GameMessage turnMessage = new GameMessage(GameMessage.MessageType.PLAYER_TURN);
-                turnMessage.setPlayerSymbol(currentTurn);
-                turnMessage.setMessage(currentTurn == symbol ? "Your turn" : "Opponent's turn");
-                client.sendToClient(turnMessage);
-                System.out.println("Sent turn notification to reconnecting player");
-            } catch (IOException e) {
-                e.printStackTrace();
+        getMatchmaker(boardSize, winLength).join(client, (char) 0);
+    }
+
+    private boolean isWaiting(ConnectionToClient client) {
+        for (Matchmaker matchmaker : matchmakers.values()) {
+            if (matchmaker.isWaiting(client)) {
+                return true;
             }
         }
+        return false;
     }
-    
-    private void sendPlayerAssigned(ConnectionToClient client, char symbol) {
-        try {
-            GameMessage message = new GameMessage(GameMessage.MessageType.PLAYER_ASSIGNED);
-            message.setPlayerSymbol(symbol);
-            message.setMessage("You have been assigned as player " + symbol);
-            client.sendToClient(message);
-            System.out.println("Sent PLAYER_ASSIGNED message to client: " + symbol);
-        } catch (IOException e) {
-            e.printStackTrace();
+
+    /**
+     * Pairs the players of one board size and win length.
+     */
+    private class BoardMatchmaking implements Matchmaker.Listener {
+        private final int boardSize;
+        private final int winLength;
+
+        BoardMatchmaking(int boardSize, int winLength) {
+            this.boardSize = boardSize;
+            this.winLength = winLength;
         }
-    }
-    
-    private void sendWaitForPlayer(ConnectionToClient client) {
-        try {
-            GameMessage message = new GameMessage(GameMessage.MessageType.WAIT_FOR_PLAYER);
-            message.setMessage("Waiting for another player to join...");
-            client.sendToClient(message);
-            System.out.println("Sent WAIT_FOR_PLAYER message to client");
-        } catch (IOException e) {
-            e.printStackTrace();
+
+        @Override
+        public void waiting(Matchmaker.Ticket ticket) {
+            // Tell player to wait for another player
+            GameRoom.sendWaitForPlayer(ticket.getClient());
+        }
+
+        @Override
+        public void matched(Matchmaker.Ticket playerX, Matchmaker.Ticket playerO) {
+            GameRoom room = new GameRoom(nextRoomId.incrementAndGet(),
+                    new ClientPlayer(playerX.getClient()), new ClientPlayer(playerO.getClient()),
+                    boardSize, winLength, journal, subscriptions);
+            rooms.put(room.getId(), room);
+            roomsByClient.put(playerX.getClient(), room);
+            roomsByClient.put(playerO.getClient(), room);
+            room.start();
+        }
+
+        @Override
+        public void timedOut(Matchmaker.Ticket ticket) {
+            // The player keeps its symbol when it has one, else it plays X
+            ClientPlayer player = new ClientPlayer(ticket.getClient());
+            BotPlayer bot = new BotPlayer(botStrength, botThinkMillis, botSearchMillis, scheduler, botSearches);
+            boolean playsO = ticket.getPreferredSymbol() == 'O';
+            GameRoom room = new GameRoom(nextRoomId.incrementAndGet(), playsO ? bot : player, playsO ? player : bot,
+                    boardSize, winLength, journal, subscriptions);
+            rooms.put(room.getId(), room);
+            roomsByClient.put(ticket.getClient(), room);
+            log.info("Room {}: no opponent found, playing against a bot", room.getId());
+            room.start();
+        }
+
+        @Override
+        public void left(Matchmaker.Ticket ticket) {
+            // Disconnected while its room was set up, which it may not have seen
+            handleClientDisconnected(ticket.getClient());
         }
     }
-    
-    private void startGame() {
-        gameBoard = new GameBoard();
-        gameInProgress = true;
-        
-        // X always goes first
-        currentTurn = 'X';
-        gameBoard.setCurrentPlayer(currentTurn);
-        System.out.println("Game started. X goes first");
-        
-        // Send initial board state to both players
-        updateBoardForBothPlayers();
-        
-        // Notify whose turn it is
-        notifyPlayerTurn();
+
+    /**
+     * Starts a game between two bots, e.g. to load the server. The room is
+     * not registered: it is only reachable through the returned reference.
+     */
+    public GameRoom startBotGame(BotPlayer playerX, BotPlayer playerO) {
+        return startBotGame(playerX, playerO, GameBoard.SIZE, GameBoard.SIZE);
+    }
+
+    public GameRoom startBotGame(BotPlayer playerX, BotPlayer playerO, int boardSize, int winLength) {
+        GameRoom room = new GameRoom(nextRoomId.incrementAndGet(), playerX, playerO, boardSize, winLength, journal,
+                subscriptions);
+        room.start();
+        return room;
     }
     
-    public synchronized void handleMove(GameMessage message, ConnectionToClient client) {
-        System.out.println("Received move from client: [" + message.getRow() + "," + message.getCol() + "] as " + message.getPlayerSymbol());
-        
-        if (!gameInProgress) {
-            System.out.println("Game not in progress, ignoring move");
-            return;
-        }
-        
-        char playerSymbol = message.getPlayerSymbol();
-        
-        // Verify it's the correct client for this symbol
-        if ((playerSymbol == 'X' && client != playerX) || (playerSymbol == 'O' && client != playerO)) {
-            System.out.println("Not the correct client for this symbol, ignoring move");
-            sendErrorMessage(client, "Not your turn!");
-            return;
-        }
-        
-        // Verify it's this player's turn
-        if (playerSymbol != currentTurn) {
-            System.out.println("Not player's turn, sending error");
-            sendErrorMessage(client, "Not your turn!");
+    public void handleMove(GameMessage message, ConnectionToClient client) {
+        GameRoom room = roomsByClient.get(client);
+        if (room == null) {
+            log.debug("Client is not in a game, ignoring move");
             return;
         }
-        
-        // Try to make the move
-        int row = message.getRow();
-        int col = message.getCol();
-        
-        if (gameBoard.makeMove(row, col, playerSymbol)) {
-            System.out.println("Valid move made: [" + row + "," + col + "] by " + playerSymbol);
-            
-            // Switch turns
-            currentTurn = (currentTurn == 'X') ? 'O' : 'X';
-            gameBoard.setCurrentPlayer(currentTurn);
-            
-            // Check if game is over
-            if (gameBoard.isGameOver()) {
-                gameInProgress = false;
-                sendGameOverMessage();
-                System.out.println("Game over. Winner: " + gameBoard.getWinner());
-            } else {
-                // Send board update to both players
-                updateBoardForBothPlayers();
-                
-                // Notify whose turn it is now
-                notifyPlayerTurn();
-            }
-        } else {
-            // Invalid move
-            System.out.println("Invalid move, sending error");
-            sendErrorMessage(client, "Invalid move!");
-        }
+        room.handleMove(message, client);
     }
     
-    private void sendErrorMessage(ConnectionToClient client, String message) {
-        try {
-            GameMessage response = new GameMessage(GameMessage.MessageType.BOARD_UPDATE);
-            response.setMessage(message);
-            response.setGameBoard(gameBoard);
-            response.setPlayerSymbol(currentTurn);
-            client.sendToClient(response);
-        } catch (IOException e) {
-            e.printStackTrace();
+    public void handleBoardSync(ConnectionToClient client) {
+        GameRoom room = roomsByClient.get(client);
+        if (room != null) {
+            room.handleBoardSync(client);
         }
     }
-    
-    private void updateBoardForBothPlayers() {
-        GameMessage message = new GameMessage(GameMessage.MessageType.BOARD_UPDATE);
-        message.setGameBoard(gameBoard);
-        message.setPlayerSymbol(currentTurn);  // Include current turn in board update
-        System.out.println("Sending updated board to both players. Current turn: " + currentTurn);
-        
-        try {
-            if (playerX != null) {
-                message.setMessage(currentTurn == 'X' ? "Your turn" : "Opponent's turn");
-                playerX.sendToClient(message);
-                System.out.println("Sent board update to X: " + message.getMessage());
-            }
-            if (playerO != null) {
-                message.setMessage(currentTurn == 'O' ? "Your turn" : "Opponent's turn");
-                playerO.sendToClient(message);
-                System.out.println("Sent board update to O: " + message.getMessage());
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+
+    public void handleRestartGame(ConnectionToClient client) {
+        GameRoom room = roomsByClient.get(client);
+        if (room != null) {
+            room.handleRestartGame(client);
         }
     }
     
-    private void notifyPlayerTurn() {
-        try {
-            GameMessage xMessage = new GameMessage(GameMessage.MessageType.PLAYER_TURN);
-            xMessage.setPlayerSymbol(currentTurn);
-            xMessage.setMessage(currentTurn == 'X' ? "Your turn" : "Opponent's turn");
-            
-            GameMessage oMessage = new GameMessage(GameMessage.MessageType.PLAYER_TURN);
-            oMessage.setPlayerSymbol(currentTurn);
-            oMessage.setMessage(currentTurn == 'O' ? "Your turn" : "Opponent's turn");
-            
-            if (playerX != null) {
-                playerX.sendToClient(xMessage);
-                System.out.println("Notified player X: " + xMessage.getMessage());
-            }
-            if (playerO != null) {
-                playerO.sendToClient(oMessage);
-                System.out.println("Notified player O: " + oMessage.getMessage());
+    /**
+     * Answers a player asking for a move with the best one found within the
+     * hint budget. The search runs on the hint pool, not on the thread
+     * reading from the client. A player asking again before getting its
+     * hint, or while the pool is full, is ignored.
+     */
+    public void handleHint(ConnectionToClient client) {
+        GameRoom room = roomsByClient.get(client);
+        if (room != null && room.requestHint(client)) {
+            long budget = hintMillis;
+            try {
+                hintSearches.execute(() -> room.handleHint(client, budget));
+            } catch (RejectedExecutionException e) {
+                room.hintDone(client);
+                log.debug("{} hints pending, ignoring one more", MAX_PENDING_HINTS);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
         }
     }
-    
-    private void sendGameOverMessage() {
-        GameMessage message = new GameMessage(GameMessage.MessageType.GAME_OVER);
-        message.setGameBoard(gameBoard);
-        
-        char winner = gameBoard.getWinner();
-        if (winner == 'T') {
-            message.setMessage("Game over! It's a tie!");
-        } else {
-            message.setMessage("Game over! Player " + winner + " wins!");
-        }
-        
-        try {
-            if (playerX != null) {
-                playerX.sendToClient(message);
-            }
-            if (playerO != null) {
-                playerO.sendToClient(message);
+
+    public void handleClientDisconnected(ConnectionToClient client) {
+        for (Matchmaker matchmaker : matchmakers.values()) {
+            if (matchmaker.cancel(client)) {
+                return;
             }
-            System.out.println("Sent game over message to both players");
-        } catch (IOException e) {
-            e.printStackTrace();
         }
-    }
-    
-    public synchronized void handleRestartGame(ConnectionToClient client) {
-        // Only allow restart if the game is over
-        if (!gameInProgress && playerX != null && playerO != null) {
-            startGame();
-            System.out.println("Game restarted");
+
+        GameRoom room = roomsByClient.remove(client);
+        if (room == null) {
+            return;
         }
-    }
-    
-    public synchronized void handleClientDisconnected(ConnectionToClient client) {
-        if (client == playerX) {
-            playerX = null;
-            notifyOpponentDisconnected(playerO);
-            System.out.println("Player X disconnected");
-        } else if (client == playerO) {
-            playerO = null;
-            notifyOpponentDisconnected(playerX);
-            System.out.println("Player O disconnected");
+
+        ConnectionToClient remaining = room.removePlayer(client);
+        rooms.remove(room.getId());
+
+        // The remaining player keeps its symbol and waits for a new opponent,
+        // unless it left too; join checks again once its ticket is visible
+        if (remaining != null && roomsByClient.remove(remaining, room) && remaining.isConnected()) {
+            getMatchmaker(room.getBoardSize(), room.getWinLength()).join(remaining, room.getSymbol(remaining));
         }
-        
-        // Reset game if a player disconnects
-        if (gameInProgress) {
-            gameInProgress = false;
-            gameBoard = new GameBoard();
-            System.out.println("Game reset due to player disconnection");
+    }
+
+    public GameRoom getRoom(int id) {
+        return rooms.get(id);
+    }
+
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * @return the matchmaker of the 3x3 board
+     */
+    public Matchmaker getMatchmaker() {
+        return getMatchmaker(GameBoard.SIZE, GameBoard.SIZE);
+    }
+
+    /**
+     * @return the matchmaker of a board size and win length, created on first use
+     */
+    public Matchmaker getMatchmaker(int boardSize, int winLength) {
+        return matchmakers.computeIfAbsent(boardSize << 8 | winLength, key -> {
+            Matchmaker matchmaker = new Matchmaker(new BoardMatchmaking(boardSize, winLength), scheduler);
+            matchmaker.setWaitTimeoutMillis(waitTimeoutMillis);
+            return matchmaker;
+        });
+    }
+
+    /**
+     * Sets how long a player waits for an opponent before playing a bot,
+     * in every matchmaker.
+     *
+     * @param waitTimeoutMillis the timeout, 0 to wait forever
+     */
+    public void setWaitTimeoutMillis(long waitTimeoutMillis) {
+        this.waitTimeoutMillis = waitTimeoutMillis;
+        for (Matchmaker matchmaker : matchmakers.values()) {
+            matchmaker.setWaitTimeoutMillis(waitTimeoutMillis);
         }
     }
-    
-    private void notifyOpponentDisconnected(ConnectionToClient client) {
-        if (client != null) {
-            try {
-                GameMessage message = new GameMessage(GameMessage.MessageType.GAME_OVER);
-                message.setMessage("Your opponent has disconnected. Game over.");
-                client.sendToClient(message);
-                System.out.println("Notified remaining player about disconnection");
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+
+    /**
+     * @return the scheduler running the wait timeouts and the bots
+     */
+    public ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Journals the games of the rooms created from now on, or stops
+     * journaling them if null.
+     */
+    public void setJournal(GameJournal journal) {
+        this.journal = journal;
+    }
+
+    public GameJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Lets clients watch the games of the rooms created from now on, through
+     * the spectators topic of each room, or no longer if null.
+     */
+    public void setSubscriptions(Subscriptions subscriptions) {
+        this.subscriptions = subscriptions;
+    }
+
+    /**
+     * Sets how the bots replacing a missing opponent play, from the next one on.
+     *
+     * @param strength    between 0, random moves, and 1, perfect play
+     * @param thinkMillis how long a bot waits before playing
+     */
+    public void setBotPlayer(double strength, long thinkMillis) {
+        if (strength < 0 || strength > 1) {
+            throw new IllegalArgumentException("strength must be between 0 and 1: " + strength);
         }
+        botStrength = strength;
+        botThinkMillis = thinkMillis;
+    }
+
+    /**
+     * Sets how long the bots replacing a missing opponent may search a move
+     * on boards larger than 3x3, from the next one on.
+     */
+    public void setBotSearchMillis(long searchMillis) {
+        botSearchMillis = searchMillis;
+    }
+
+    public long getBotSearchMillis() {
+        return botSearchMillis;
+    }
+
+    /**
+     * @return the executor running the searches of the bots on boards larger than 3x3
+     */
+    public ExecutorService getBotSearches() {
+        return botSearches;
+    }
+
+    /**
+     * Sets how long the search for a hint may take on boards larger than 3x3.
+     */
+    public void setHintMillis(long hintMillis) {
+        this.hintMillis = hintMillis;
+    }
+
+    public long getHintMillis() {
+        return hintMillis;
     }
 }
@@ -0,0 +1,585 @@
+package il.cshaifasweng.OCSFMediatorExample.server;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.LogManager;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.Logger;
+import il.cshaifasweng.OCSFMediatorExample.server.journal.GameJournal;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+
+import java.io.IOException;
+
+/**
+ * One match between two players. A room owns its board, its players and
+ * whose turn it is. All its methods are synchronized on the room itself,
+ * so moves in different rooms never wait for each other.
+ *
+ * Players get the full board when a game starts, when they join again and
+ * when they ask for it. After that each move is sent as a BOARD_DELTA with
+ * the cell played, whose turn it is and the sequence number of the board,
+ * so a client that missed a delta can tell and ask for the full board.
+ *
+ * A seat is held by a {@link Player}: a connected client or a bot. Clients
+ * are found by their connection, bots play through {@link #playBotTurn}.
+ *
+ * With a {@link GameJournal}, the room journals the start of each game,
+ * every move it accepts, the end of the game and the players who leave.
+ *
+ * With {@link Subscriptions}, clients can watch the games of the room: the
+ * spectators get the boards, the deltas and the end of the games through
+ * the {@link Subscriptions#spectatorsTopic} of the room.
+ */
+public class GameRoom {
+    private static final Logger log = LogManager.getLogger(GameRoom.class);
+
+    private final int id;
+    private final int boardSize;
+    private final int winLength;
+    private final GameJournal journal; // null if the games are not journaled
+    private final Subscriptions subscriptions; // null if the games cannot be watched
+    private GameBoard gameBoard;
+    private Player playerX;
+    private Player playerO;
+    private char currentTurn; // 'X' or 'O'
+    private int sequence; // moves played in the current game
+    private boolean gameInProgress;
+    private boolean closed; // set once a player left, the room is not reused
+    private boolean hintPendingX;
+    private boolean hintPendingO;
+
+    GameRoom(int id, Player playerX, Player playerO) {
+        this(id, playerX, playerO, GameBoard.SIZE, GameBoard.SIZE);
+    }
+
+    GameRoom(int id, Player playerX, Player playerO, int boardSize, int winLength) {
+        this(id, playerX, playerO, boardSize, winLength, null);
+    }
+
+    GameRoom(int id, Player playerX, Player playerO, int boardSize, int winLength, GameJournal journal) {
+        this(id, playerX, playerO, boardSize, winLength, journal, null);
+    }
+
+    GameRoom(int id, Player playerX, Player playerO, int boardSize, int winLength, GameJournal journal,
+             Subscriptions subscriptions) {
+        this.id = id;
+        this.playerX = playerX;
+        this.playerO = playerO;
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+        this.journal = journal;
+        this.subscriptions = subscriptions;
+        gameBoard = new GameBoard(boardSize, winLength);
+        gameInProgress = false;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    /**
+     * Tells both players their symbol and starts the first game.
+     */
+    synchronized void start() {
+        if (closed) {
+            return;
+        }
+        playerX.seated(this, 'X');
+        playerO.seated(this, 'O');
+        sendPlayerAssigned(playerX, 'X');
+        sendPlayerAssigned(playerO, 'O');
+        log.info("Room {}: assigned players X and O", id);
+        startGame();
+    }
+
+    /**
+     * Sends the current state again to a player of this room that joins again.
+     */
+    synchronized void handleRejoin(ConnectionToClient client) {
+        Player player = seatOf(client);
+        if (player == null) {
+            return;
+        }
+
+        sendPlayerAssigned(player, symbolOf(player));
+
+        if (!gameInProgress) {
+            sendWaitForPlayer(client);
+            return;
+        }
+
+        // Send current board state, it includes whose turn it is
+        sendBoard(player, null);
+        log.info("Room {}: sent current board state to reconnecting player", id);
+    }
+
+    /**
+     * Sends the full board to a player that missed a delta.
+     */
+    synchronized void handleBoardSync(ConnectionToClient client) {
+        Player player = seatOf(client);
+        if (player == null) {
+            return;
+        }
+        sendBoard(player, null);
+        log.debug("Room {}: sent board {} to resynchronize a player", id, sequence);
+    }
+
+    /**
+     * Lets a client watch the games of this room. It gets the board now,
+     * then every move and the end of the games, as the players do.
+     *
+     * @return false if the games of this room cannot be watched
+     */
+    synchronized boolean addSpectator(ConnectionToClient client) {
+        if (subscriptions == null || closed) {
+            return false;
+        }
+        // Under the room lock, so that no move is published in between
+        if (subscriptions.subscribe(Subscriptions.spectatorsTopic(id), client)) {
+            try {
+                client.sendToClient(spectatorBoard());
+            } catch (IOException e) {
+                log.warn("Room {}: could not send the board to a spectator: {}", id, e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private void sendPlayerAssigned(Player player, char symbol) {
+        try {
+            GameMessage message = new GameMessage(GameMessage.MessageType.PLAYER_ASSIGNED);
+            message.setPlayerSymbol(symbol);
+            message.setBoardSize(boardSize);
+            message.setWinLength(winLength);
+            message.setMessage("You have been assigned as player " + symbol);
+            player.send(message);
+            log.debug("Room {}: sent PLAYER_ASSIGNED {}", id, symbol);
+        } catch (IOException e) {
+            log.warn("Room {}: could not send PLAYER_ASSIGNED: {}", id, e.getMessage());
+        }
+    }
+
+    static void sendWaitForPlayer(ConnectionToClient client) {
+        try {
+            GameMessage message = new GameMessage(GameMessage.MessageType.WAIT_FOR_PLAYER);
+            message.setMessage("Waiting for another player to join...");
+            client.sendToClient(message);
+            log.debug("Sent WAIT_FOR_PLAYER message to client");
+        } catch (IOException e) {
+            log.warn("Could not send WAIT_FOR_PLAYER: {}", e.getMessage());
+        }
+    }
+
+    private void startGame() {
+        gameBoard = new GameBoard(boardSize, winLength);
+        gameInProgress = true;
+        sequence = 0;
+
+        // X always goes first
+        currentTurn = 'X';
+        gameBoard.setCurrentPlayer(currentTurn);
+        log.debug("Room {}: game started. X goes first", id);
+        if (journal != null) {
+            journal.gameStarted(id, boardSize, winLength);
+        }
+
+        // Send initial board state to both players, with whose turn it is
+        sendBoard(playerX, null);
+        sendBoard(playerO, null);
+        publishToSpectators(spectatorBoard());
+    }
+
+    synchronized void handleMove(GameMessage message, ConnectionToClient client) {
+        Player player = seatOf(client);
+        if (player != null) {
+            handleMove(message, player);
+        }
+    }
+
+    /**
+     * Plays the move of a bot, if it is still its turn. Called on the
+     * scheduler of the bot once it has thought. The bot chooses from a copy
+     * of the board, without holding the lock of the room, since a search may
+     * take its whole time budget; the move is dropped if the game moved on
+     * meanwhile.
+     */
+    void playBotTurn(BotPlayer bot) {
+        GameBoard game;
+        GameBoard board;
+        int boardSequence;
+        synchronized (this) {
+            if (closed || !gameInProgress || symbolOf(bot) != currentTurn) {
+                return;
+            }
+            game = gameBoard;
+            board = gameBoard.copy();
+            boardSequence = sequence;
+        }
+        int cell = bot.chooseMove(board);
+        if (cell < 0) {
+            return;
+        }
+
+        synchronized (this) {
+            char symbol = symbolOf(bot);
+            if (closed || !gameInProgress || gameBoard != game || sequence != boardSequence || symbol != currentTurn) {
+                return;
+            }
+            GameMessage move = new GameMessage(GameMessage.MessageType.MOVE);
+            move.setRow(cell / boardSize);
+            move.setCol(cell % boardSize);
+            move.setPlayerSymbol(symbol);
+            handleMove(move, bot);
+        }
+    }
+
+    /**
+     * Notes that a player asked for a hint, unless one is already pending.
+     *
+     * @return false if the client has no seat here or waits for a hint
+     */
+    synchronized boolean requestHint(ConnectionToClient client) {
+        Player player = seatOf(client);
+        if (player == null || (player == playerX ? hintPendingX : hintPendingO)) {
+            return false;
+        }
+        setHintPending(player, true);
+        return true;
+    }
+
+    /**
+     * Lets a player ask for a hint again, e.g. once it got the last one.
+     */
+    synchronized void hintDone(ConnectionToClient client) {
+        Player player = seatOf(client);
+        if (player != null) {
+            setHintPending(player, false);
+        }
+    }
+
+    private void setHintPending(Player player, boolean pending) {
+        if (player == playerX) {
+            hintPendingX = pending;
+        } else {
+            hintPendingO = pending;
+        }
+    }
+
+    /**
+     * Sends a player whose turn it is the move the server would play, as a
+     * HINT with its row and col. Like the move of a bot, it is chosen
+     * without holding the lock of the room. The hint asked with
+     * {@link #requestHint} is done afterwards.
+     */
+    void handleHint(ConnectionToClient client, long budgetMillis) {
+        try {
+            sendHint(client, budgetMillis);
+        } finally {
+            hintDone(client);
+        }
+    }
+
+    private void sendHint(ConnectionToClient client, long budgetMillis) {
+        Player player;
+        GameBoard board;
+        int boardSequence;
+        synchronized (this) {
+            player = seatOf(client);
+            if (player == null || !gameInProgress || symbolOf(player) != currentTurn) {
+                return;
+            }
+            board = gameBoard.copy();
+            boardSequence = sequence;
+        }
+        int cell = BotPlayer.bestMove(board, budgetMillis);
+        if (cell < 0) {
+            return;
+        }
+
+        GameMessage hint = new GameMessage(GameMessage.MessageType.HINT);
+        hint.setRow(cell / boardSize);
+        hint.setCol(cell % boardSize);
+        hint.setPlayerSymbol(board.getCurrentPlayer());
+        hint.setSequence(boardSequence);
+        hint.setMessage("Try row " + (cell / boardSize + 1) + ", column " + (cell % boardSize + 1));
+        try {
+            player.send(hint);
+            log.debug("Room {}: sent hint {}", id, hint.getMessage());
+        } catch (IOException e) {
+            log.warn("Room {}: could not send a hint: {}", id, e.getMessage());
+        }
+    }
+
+    private void handleMove(GameMessage message, Player player) {
+        if (log.isDebugEnabled()) {
+            log.debug("Room {}: received move [{},{}] as {}",
+                    id, message.getRow(), message.getCol(), message.getPlayerSymbol());
+        }
+
+        if (!gameInProgress) {
+            log.debug("Room {}: game not in progress, ignoring move", id);
+            return;
+        }
+
+        char playerSymbol = message.getPlayerSymbol();
+
+        // Verify it's the correct player for this symbol
+        if ((playerSymbol == 'X' && player != playerX) || (playerSymbol == 'O' && player != playerO)) {
+            log.debug("Room {}: not the correct client for this symbol, ignoring move", id);
+            sendErrorMessage(player, "Not your turn!");
+            return;
+        }
+
+        // Verify it's this player's turn
+        if (playerSymbol != currentTurn) {
+            log.debug("Room {}: not the player's turn, sending error", id);
+            sendErrorMessage(player, "Not your turn!");
+            return;
+        }
+
+        // Try to make the move
+        int row = message.getRow();
+        int col = message.getCol();
+
+        if (gameBoard.makeMove(row, col, playerSymbol)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Room {}: valid move [{},{}] by {}", id, row, col, playerSymbol);
+            }
+
+            // Switch turns
+            currentTurn = (currentTurn == 'X') ? 'O' : 'X';
+            gameBoard.setCurrentPlayer(currentTurn);
+            sequence++;
+            if (journal != null) {
+                journal.moveMade(id, sequence, row, col, playerSymbol);
+            }
+
+            // Check if game is over
+            if (gameBoard.isGameOver()) {
+                gameInProgress = false;
+                if (journal != null) {
+                    journal.gameOver(id, sequence, gameBoard.getWinner());
+                }
+                sendGameOverMessage();
+                log.info("Room {}: game over. Winner: {}", id, gameBoard.getWinner());
+            } else {
+                // Send the move and whose turn it is now to both players
+                sendBoardDelta(row, col, playerSymbol);
+            }
+        } else {
+            // Invalid move
+            log.debug("Room {}: invalid move, sending error", id);
+            sendErrorMessage(player, "Invalid move!");
+        }
+    }
+
+    private void sendErrorMessage(Player player, String message) {
+        // The client may have drawn the rejected move already, so it gets the full board
+        sendBoard(player, message);
+    }
+
+    /**
+     * Sends the full board and whose turn it is to one player.
+     *
+     * @param text the status to show, or null for the player's turn status
+     */
+    private void sendBoard(Player player, String text) {
+        if (player == null) {
+            return;
+        }
+        GameMessage message = boardUpdate(text != null ? text
+                : currentTurn == symbolOf(player) ? "Your turn" : "Opponent's turn");
+
+        try {
+            player.send(message);
+            log.debug("Room {}: sent board to {}: {}", id, symbolOf(player), message.getMessage());
+        } catch (IOException e) {
+            log.warn("Room {}: could not send the board to {}: {}", id, symbolOf(player), e.getMessage());
+        }
+    }
+
+    private GameMessage boardUpdate(String text) {
+        GameMessage message = new GameMessage(GameMessage.MessageType.BOARD_UPDATE);
+        message.setGameBoard(gameBoard);
+        message.setPlayerSymbol(currentTurn);  // Include current turn in board update
+        message.setSequence(sequence);
+        message.setMessage(text);
+        return message;
+    }
+
+    private GameMessage spectatorBoard() {
+        return boardUpdate(gameInProgress ? "Player " + currentTurn + "'s turn" : "Waiting for a new game");
+    }
+
+    /**
+     * Sends the same delta to both players: the cell just played and whose turn it is now.
+     */
+    private void sendBoardDelta(int row, int col, char symbol) {
+        GameMessage message = new GameMessage(GameMessage.MessageType.BOARD_DELTA);
+        message.setRow(row);
+        message.setCol(col);
+        message.setCellSymbol(symbol);
+        message.setPlayerSymbol(currentTurn);
+        message.setSequence(sequence);
+        log.debug("Room {}: sending move {} to both players. Current turn: {}", id, sequence, currentTurn);
+
+        sendToPlayers(message);
+    }
+
+    /**
+     * Sends a message to both players and the spectators. A failure to
+     * reach one of them, e.g. disconnected for being too slow, does not
+     * keep it from the others.
+     */
+    private void sendToPlayers(GameMessage message) {
+        for (Player player : new Player[]{playerX, playerO}) {
+            if (player == null) {
+                continue;
+            }
+            try {
+                player.send(message);
+            } catch (IOException e) {
+                log.warn("Room {}: could not send {} to a player: {}", id, message.getType(), e.getMessage());
+            }
+        }
+        publishToSpectators(message);
+    }
+
+    private void publishToSpectators(GameMessage message) {
+        if (subscriptions != null) {
+            subscriptions.publish(Subscriptions.spectatorsTopic(id), message);
+        }
+    }
+
+    private void sendGameOverMessage() {
+        GameMessage message = new GameMessage(GameMessage.MessageType.GAME_OVER);
+        message.setGameBoard(gameBoard);
+        message.setSequence(sequence);
+
+        char winner = gameBoard.getWinner();
+        if (winner == 'T') {
+            message.setMessage("Game over! It's a tie!");
+        } else {
+            message.setMessage("Game over! Player " + winner + " wins!");
+        }
+
+        sendToPlayers(message);
+        log.debug("Room {}: sent game over message to both players", id);
+    }
+
+    synchronized void handleRestartGame(ConnectionToClient client) {
+        // Only allow restart if the game is over
+        if (seatOf(client) != null && !gameInProgress && playerX != null && playerO != null) {
+            startGame();
+            log.info("Room {}: game restarted", id);
+        }
+    }
+
+    /**
+     * Returns the symbol of a player of this room.
+     *
+     * @return 'X', 'O', or 0 if the client is not in this room
+     */
+    synchronized char getSymbol(ConnectionToClient client) {
+        return symbolOf(seatOf(client));
+    }
+
+    private char symbolOf(Player player) {
+        if (player == null) {
+            return 0;
+        }
+        return player == playerX ? 'X' : player == playerO ? 'O' : 0;
+    }
+
+    /**
+     * @return the seat of a client in this room, or null if it has none
+     */
+    private Player seatOf(ConnectionToClient client) {
+        if (playerX instanceof ClientPlayer && ((ClientPlayer) playerX).getClient() == client) {
+            return playerX;
+        }
+        if (playerO instanceof ClientPlayer && ((ClientPlayer) playerO).getClient() == client) {
+            return playerO;
+        }
+        return null;
+    }
+
+    /**
+     * @return true while a game is being played in this room
+     */
+    public synchronized boolean isGameInProgress() {
+        return gameInProgress;
+    }
+
+    /**
+     * @return a copy of the board of the current or last game
+     */
+    public synchronized GameBoard getBoard() {
+        return gameBoard.copy();
+    }
+
+    /**
+     * Removes a disconnected player and closes the room. The game in
+     * progress, if any, is reset and the opponent is told about it.
+     *
+     * @return the client still in the room, or null if there is none or
+     *         the remaining player is a bot
+     */
+    synchronized ConnectionToClient removePlayer(ConnectionToClient client) {
+        Player player = seatOf(client);
+        if (player == null) {
+            return null;
+        }
+        if (journal != null) {
+            journal.playerLeft(id, sequence, symbolOf(player));
+        }
+        GameMessage left = new GameMessage(GameMessage.MessageType.GAME_OVER);
+        left.setMessage("Player " + symbolOf(player) + " has disconnected. Game over.");
+        publishToSpectators(left);
+        if (subscriptions != null) {
+            // The room is not reused, its spectators have nothing more to watch
+            subscriptions.removeTopic(Subscriptions.spectatorsTopic(id));
+        }
+        if (player == playerX) {
+            playerX = null;
+            notifyOpponentDisconnected(playerO);
+            log.info("Room {}: player X disconnected", id);
+        } else {
+            playerO = null;
+            notifyOpponentDisconnected(playerX);
+            log.info("Room {}: player O disconnected", id);
+        }
+
+        // Reset game if a player disconnects
+        if (gameInProgress) {
+            gameInProgress = false;
+            gameBoard = new GameBoard(boardSize, winLength);
+            log.info("Room {}: game reset due to player disconnection", id);
+        }
+
+        closed = true;
+        Player remaining = playerX != null ? playerX : playerO;
+        return remaining instanceof ClientPlayer ? ((ClientPlayer) remaining).getClient() : null;
+    }
+
+    private void notifyOpponentDisconnected(Player player) {
+        if (player != null) {
+            try {
+                GameMessage message = new GameMessage(GameMessage.MessageType.GAME_OVER);
+                message.setMessage("Your opponent has disconnected. Game over.");
+                player.send(message);
+                log.debug("Room {}: notified remaining player about disconnection", id);
+            } catch (IOException e) {
+                log.warn("Room {}: could not notify the remaining player: {}", id, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package il.cshaifasweng.OCSFMediatorExample.server;
+
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pairs players asking to join a game, without any lock.
+ *
+ * A room has two seats, so as soon as two players are waiting they are
+ * paired: at most one player ever waits, and the waiting queue is a single
+ * slot that joining players swap with compare-and-set. A player either takes
+ * the waiting ticket out of the slot and is paired with it, or puts its own
+ * ticket in the empty slot and waits. A ticket is claimed or cancelled by a
+ * compare-and-set on its state, so a player leaving while being paired is
+ * either paired or cancelled, never both. A player leaving once paired but
+ * before its room is set up is handed to {@link Listener#left}, so that its
+ * opponent is not kept in a room with nobody.
+ *
+ * With a wait timeout, a player still waiting when it expires is claimed the
+ * same way and handed to {@link Listener#timedOut}, e.g. to play a bot.
+ */
+public class Matchmaker {
+
+    /**
+     * Callbacks of the matchmaker. They run on the thread of the joining player.
+     */
+    public interface Listener {
+        /**
+         * Called before the player starts waiting. The player may still be
+         * paired right after, in which case {@link #matched} follows.
+         */
+        void waiting(Ticket ticket);
+
+        /**
+         * Called once two players are paired, with the seats already decided.
+         */
+        void matched(Ticket playerX, Ticket playerO);
+
+        /**
+         * Called when a player waited longer than the wait timeout. The ticket
+         * is already claimed. Runs on the thread of the scheduler.
+         */
+        default void timedOut(Ticket ticket) {
+        }
+
+        /**
+         * Called after {@link #matched} or {@link #timedOut} when the player
+         * was cancelled while they ran, e.g. because it disconnected before
+         * being seated in its room. The room should let the player go as if
+         * it disconnected from it.
+         */
+        default void left(Ticket ticket) {
+        }
+    }
+
+    /**
+     * A request to join a game.
+     */
+    public static class Ticket {
+        private static final int WAITING = 0;
+        private static final int MATCHED = 1;
+        private static final int CANCELLED = 2;
+        private static final int LEFT = 3;
+        private static final int SEATED = 4;
+
+        private final ConnectionToClient client;
+        private final char preferredSymbol;
+        private final long createdNanos = System.nanoTime();
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile ScheduledFuture<?> timeout; // null without a wait timeout
+
+        Ticket(ConnectionToClient client, char preferredSymbol) {
+            this.client = client;
+            this.preferredSymbol = preferredSymbol;
+        }
+
+        public ConnectionToClient getClient() {
+            return client;
+        }
+
+        /**
+         * @return 'X' or 'O' if the player should keep that symbol, 0 otherwise
+         */
+        public char getPreferredSymbol() {
+            return preferredSymbol;
+        }
+
+        public long getCreatedNanos() {
+            return createdNanos;
+        }
+
+        public boolean isWaiting() {
+            return state.get() == WAITING;
+        }
+
+        boolean claim() {
+            return state.compareAndSet(WAITING, MATCHED);
+        }
+
+        boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+
+        /**
+         * Marks a claimed ticket whose player left before being seated.
+         */
+        boolean leave() {
+            return state.compareAndSet(MATCHED, LEFT);
+        }
+
+        /**
+         * @return false if the player left since the ticket was claimed
+         */
+        boolean seat() {
+            return state.compareAndSet(MATCHED, SEATED);
+        }
+
+        /**
+         * Takes the expiry of a ticket no longer waiting out of the scheduler.
+         */
+        void cancelTimeout() {
+            ScheduledFuture<?> future = timeout;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private final Listener listener;
+    private final ScheduledExecutorService scheduler;
+    private volatile long waitTimeoutMillis; // 0 to wait forever
+    private final AtomicReference<Ticket> waitingSlot = new AtomicReference<>();
+    private final Map<ConnectionToClient, Ticket> tickets = new ConcurrentHashMap<>();
+
+    // Metrics
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final LongAdder matches = new LongAdder();
+    private final LongAdder cancellations = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+
+    public Matchmaker(Listener listener) {
+        this(listener, null);
+    }
+
+    /**
+     * @param scheduler runs the wait timeouts, may be null if there are none
+     */
+    public Matchmaker(Listener listener, ScheduledExecutorService scheduler) {
+        this.listener = listener;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Pairs the client with the waiting player, if any, or makes it wait.
+     * A client has at most one ticket: joining again while waiting or being
+     * paired, e.g. from two threads at once, keeps the first one. A client
+     * already disconnected is not queued.
+     *
+     * @param preferredSymbol 'X' or 'O' to keep a symbol when possible, 0 for any
+     * @return the ticket of the client, already claimed if it was paired
+     */
+    public Ticket join(ConnectionToClient client, char preferredSymbol) {
+        Ticket ticket = new Ticket(client, preferredSymbol);
+        Ticket existing = tickets.putIfAbsent(client, ticket);
+        if (existing != null) {
+            if (existing.isWaiting()) {
+                listener.waiting(existing);
+            }
+            return existing;
+        }
+        queueDepth.incrementAndGet();
+        if (!client.isConnected()) {
+            // Disconnected before its ticket could be found, so cancelled here
+            cancel(client);
+            return ticket;
+        }
+        boolean waitingNotified = false;
+
+        while (true) {
+            Ticket waiting = waitingSlot.get();
+
+            if (waiting == null) {
+                if (!waitingNotified) {
+                    listener.waiting(ticket);
+                    waitingNotified = true;
+                }
+                if (waitingSlot.compareAndSet(null, ticket)) {
+                    scheduleTimeout(ticket);
+                    return ticket;
+                }
+            } else if (!waiting.isWaiting()) {
+                // Cancelled or claimed ticket left in the slot
+                waitingSlot.compareAndSet(waiting, null);
+            } else if (waitingSlot.compareAndSet(waiting, null)) {
+                if (waiting.claim()) {
+                    waiting.cancelTimeout();
+                    queueDepth.decrementAndGet();
+                    // A joining player cancelled meanwhile is paired all the
+                    // same, then left: its opponent joins again
+                    if (ticket.claim()) {
+                        queueDepth.decrementAndGet();
+                    }
+                    pair(waiting, ticket);
+                    seat(waiting);
+                    seat(ticket);
+                    return ticket;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the waiting ticket of a client, typically because it disconnected.
+     * A client already paired but not yet seated in its room is handed to
+     * {@link Listener#left} once the pairing is done.
+     *
+     * @return true if the client was waiting
+     */
+    public boolean cancel(ConnectionToClient client) {
+        Ticket ticket = tickets.get(client);
+        if (ticket == null) {
+            return false;
+        }
+        if (!ticket.cancel()) {
+            ticket.leave();
+            return false;
+        }
+        ticket.cancelTimeout();
+        tickets.remove(client, ticket);
+        queueDepth.decrementAndGet();
+        cancellations.increment();
+        waitingSlot.compareAndSet(ticket, null);
+        return true;
+    }
+
+    private void scheduleTimeout(Ticket ticket) {
+        long timeout = waitTimeoutMillis;
+        if (timeout > 0 && scheduler != null) {
+            ticket.timeout = scheduler.schedule(() -> expire(ticket), timeout, TimeUnit.MILLISECONDS);
+            if (!ticket.isWaiting()) {
+                ticket.cancelTimeout(); // Paired or cancelled before the timeout was set
+            }
+        }
+    }
+
+    /**
+     * Takes a ticket out of the queue if it is still waiting.
+     */
+    private void expire(Ticket ticket) {
+        if (!ticket.claim()) {
+            return; // Paired or cancelled meanwhile
+        }
+        waitingSlot.compareAndSet(ticket, null);
+        queueDepth.decrementAndGet();
+        timeouts.increment();
+        listener.timedOut(ticket);
+        seat(ticket);
+    }
+
+    /**
+     * Forgets a paired ticket once the listener set up its room, telling the
+     * listener if the player left meanwhile. The ticket stays registered
+     * until then so that {@link #cancel} finds it.
+     */
+    private void seat(Ticket ticket) {
+        tickets.remove(ticket.getClient(), ticket);
+        if (!ticket.seat()) {
+            listener.left(ticket);
+        }
+    }
+
+    /**
+     * @return true if the client is waiting for an opponent
+     */
+    public boolean isWaiting(ConnectionToClient client) {
+        Ticket ticket = tickets.get(client);
+        return ticket != null && ticket.isWaiting();
+    }
+
+    private void pair(Ticket waiting, Ticket joining) {
+        long waitNanos = System.nanoTime() - waiting.getCreatedNanos();
+        matches.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+
+        // The player who waited keeps its symbol when it has one, else it plays X
+        if (waiting.getPreferredSymbol() == 'O' || (waiting.getPreferredSymbol() != 'X' && joining.getPreferredSymbol() == 'X')) {
+            listener.matched(joining, waiting);
+        } else {
+            listener.matched(waiting, joining);
+        }
+    }
+
+    /**
+     * Sets how long a player waits for an opponent before
+     * {@link Listener#timedOut} is called, for the players joining from now on.
+     *
+     * @param waitTimeoutMillis the timeout, 0 to wait forever
+     */
+    public void setWaitTimeoutMillis(long waitTimeoutMillis) {
+        if (waitTimeoutMillis > 0 && scheduler == null) {
+            throw new IllegalStateException("no scheduler to run the timeouts");
+        }
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    public long getWaitTimeoutMillis() {
+        return waitTimeoutMillis;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    public long getMatchCount() {
+        return matches.sum();
+    }
+
+    public long getCancellationCount() {
+        return cancellations.sum();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return the average time the first player of a pair waited, in microseconds
+     */
+    public double getAverageTimeToMatchMicros() {
+        long count = matches.sum();
+        return count == 0 ? 0 : totalWaitNanos.sum() / 1000.0 / count;
+    }
+
+    public double getMaxTimeToMatchMicros() {
+        return maxWaitNanos.get() / 1000.0;
+    }
+}
@@ -0,0 +1,23 @@
+package il.cshaifasweng.OCSFMediatorExample.server;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+
+import java.io.IOException;
+
+/**
+ * Someone sitting at a seat of a {@link GameRoom}: a connected client or a bot.
+ */
+public interface Player {
+
+    /**
+     * Sends a message of the room to the player. Called with the room locked,
+     * so it must not block.
+     */
+    void send(GameMessage message) throws IOException;
+
+    /**
+     * Called when a room starts, once the player has its seat.
+     */
+    default void seated(GameRoom room, char symbol) {
+    }
+}
@@ -1,32 +1,48 @@
 package il.cshaifasweng.OCSFMediatorExample.server;
 
+import il.cshaifasweng.OCSFMediatorExample.server.metrics.ServerMetrics;
 import il.cshaifasweng.OCSFMediatorExample.server.ocsf.AbstractServer;
 import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
 
 import java.io.IOException;
-import java.util.ArrayList;
 
 import il.cshaifasweng.OCSFMediatorExample.entities.Warning;
 import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
-import il.cshaifasweng.OCSFMediatorExample.server.ocsf.SubscribedClient;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.LogManager;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.Logger;
 
 public class SimpleServer extends AbstractServer {
-	private static ArrayList<SubscribedClient> SubscribersList = new ArrayList<>();
+	private static final Logger log = LogManager.getLogger(SimpleServer.class);
+
+	// Messages from different clients are handled concurrently
+	private final Subscriptions subscriptions;
+	private final ServerMetrics metrics = new ServerMetrics();
 	private GameManager gameManager;
 
 	public SimpleServer(int port) {
 		super(port);
+		subscriptions = new Subscriptions(this);
 		gameManager = GameManager.getInstance();
+		gameManager.setSubscriptions(subscriptions);
 	}
 
 	@Override
 	protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+		long start = System.nanoTime();
+		try {
+			dispatch(msg, client);
+		} finally {
+			metrics.recordHandling(msg, System.nanoTime() - start);
+		}
+	}
+
+	private void dispatch(Object msg, ConnectionToClient client) {
 		if (msg instanceof GameMessage) {
 			GameMessage gameMsg = (GameMessage) msg;
 			
 			switch (gameMsg.getType()) {
 				case JOIN_GAME:
-					gameManager.handleJoinGame(client);
+					gameManager.handleJoinGame(client, gameMsg.getBoardSize(), gameMsg.getWinLength());
 					break;
 				case MOVE:
 					gameManager.handleMove(gameMsg, client);
@@ -34,8 +50,14 @@ public class SimpleServer extends AbstractServer {
 				case RESTART_GAME:
 					gameManager.handleRestartGame(client);
 					break;
+				case BOARD_SYNC:
+					gameManager.handleBoardSync(client);
+					break;
+				case HINT:
+					gameManager.handleHint(client);
+					break;
 				default:
-					System.out.println("Unknown game message type: " + gameMsg.getType());
+					log.warn("Unknown game message type: {}", gameMsg.getType());
 			}
 			return;
 		}
@@ -45,14 +67,13 @@ public class SimpleServer extends AbstractServer {
 			Warning warning = new Warning("Warning from server!");
 			try {
 				client.sendToClient(warning);
-				System.out.format("Sent warning to client %s\n", client.getInetAddress().getHostAddress());
+				log.info("Sent warning to client {}", client.getInetAddress().getHostAddress());
 			} catch (IOException e) {
-				e.printStackTrace();
+				log.warn("Could not send a warning", e);
 			}
 		}
 		else if(msgString.startsWith("add client")){
-			SubscribedClient connection = new SubscribedClient(client);
-			SubscribersList.add(connection);
+			subscriptions.subscribe(Subscriptions.LOBBY, client);
 			try {
 				client.sendToClient("client added successfully");
 			} catch (IOException e) {
@@ -60,36 +81,89 @@ public class SimpleServer extends AbstractServer {
 			}
 		}
 		else if(msgString.startsWith("remove client")){
-			if(!SubscribersList.isEmpty()){
-				for(SubscribedClient subscribedClient: SubscribersList){
-					if(subscribedClient.getClient().equals(client)){
-						SubscribersList.remove(subscribedClient);
-						break;
-					}
-				}
+			subscriptions.unsubscribe(Subscriptions.LOBBY, client);
+		}
+		else if(msgString.startsWith("subscribe ")){
+			// e.g. "subscribe room/3/spectators"
+			subscribe(msgString.substring("subscribe ".length()).trim(), client);
+		}
+		else if(msgString.startsWith("unsubscribe ")){
+			subscriptions.unsubscribe(msgString.substring("unsubscribe ".length()).trim(), client);
+		}
+		else if(msgString.startsWith("#metrics")){
+			try {
+				client.sendToClient(getMetricsSnapshot().toString());
+			} catch (IOException e) {
+				log.warn("Could not send the metrics", e);
 			}
 		}
 	}
 	
+	/**
+	 * Subscribes a client to the lobby or to the spectators of a room being
+	 * played. Other topics are refused, so that clients cannot create them.
+	 */
+	private void subscribe(String topic, ConnectionToClient client) {
+		if (Subscriptions.LOBBY.equals(topic)) {
+			subscriptions.subscribe(topic, client);
+			return;
+		}
+		GameRoom room = gameManager.getRoom(Subscriptions.spectatedRoom(topic));
+		if (room == null || !room.addSpectator(client)) {
+			log.debug("Refused a subscription to {}", topic);
+		}
+	}
+
+	/**
+	 * Deltas may be dropped for a slow client: it asks for the board when it
+	 * sees a gap in their sequence. Full boards are never dropped, since the
+	 * sequence starts over with each game: a client that missed the board of
+	 * a new game would ignore its first deltas as older than the board it has.
+	 */
+	@Override
+	protected boolean isDroppable(Object msg) {
+		return msg instanceof GameMessage
+				&& ((GameMessage) msg).getType() == GameMessage.MessageType.BOARD_DELTA;
+	}
+
 	@Override
 	protected void clientDisconnected(ConnectionToClient client) {
 		super.clientDisconnected(client);
 		gameManager.handleClientDisconnected(client);
+		metrics.connectionClosed(client);
 		
-		// Remove from subscribers list if present
-		if (!SubscribersList.isEmpty()) {
-			SubscribersList.removeIf(subscribedClient -> subscribedClient.getClient().equals(client));
-		}
+		// Leave all the topics the client subscribed to
+		subscriptions.unsubscribeAll(client);
 	}
 	
+	/**
+	 * Sends a message to the clients subscribed to the lobby.
+	 */
 	public void sendToAllClients(String message) {
-		try {
-			for (SubscribedClient subscribedClient : SubscribersList) {
-				subscribedClient.getClient().sendToClient(message);
-			}
-		} catch (IOException e1) {
-			e1.printStackTrace();
-		}
+		subscriptions.publish(Subscriptions.LOBBY, message);
+	}
+
+	/**
+	 * Sends a message to the clients subscribed to a topic.
+	 */
+	public void publish(String topic, Object message) {
+		subscriptions.publish(topic, message);
+	}
+
+	public Subscriptions getSubscriptions() {
+		return subscriptions;
+	}
+
+	public ServerMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * The handling times, traffic, connections and rooms of the server as
+	 * they are now. A client gets it as text by sending "#metrics".
+	 */
+	public ServerMetrics.Snapshot getMetricsSnapshot() {
+		return metrics.snapshot(getConnections(), gameManager.getRoomCount());
 	}
 
 }
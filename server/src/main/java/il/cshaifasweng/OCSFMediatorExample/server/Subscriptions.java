@@ -0,0 +1,164 @@
+package il.cshaifasweng.OCSFMediatorExample.server;
+
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.AbstractServer;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The clients subscribed to each named topic: the lobby and the spectators
+ * of each room. Subscribing and unsubscribing are O(1) and safe from
+ * any connection thread: each topic is a concurrent set keyed by connection,
+ * and each connection keeps the set of its topics so that a disconnected
+ * client leaves all of them without scanning the others. The calls for one
+ * client are expected from its own connection, one at a time.
+ *
+ * Publishing iterates the live set of the topic, without copying it: a client
+ * subscribing or leaving during a publish may or may not get the message.
+ * A topic with no subscriber left is removed.
+ */
+public class Subscriptions {
+    public static final String LOBBY = "lobby";
+
+    private final AbstractServer server;
+    private final Map<String, Set<ConnectionToClient>> topics = new ConcurrentHashMap<>();
+    private final Map<ConnectionToClient, Set<String>> topicsByClient = new ConcurrentHashMap<>();
+
+    public Subscriptions(AbstractServer server) {
+        this.server = server;
+    }
+
+    private static final String ROOM_PREFIX = "room/";
+    private static final String SPECTATORS_SUFFIX = "/spectators";
+
+    public static String spectatorsTopic(int roomId) {
+        return ROOM_PREFIX + roomId + SPECTATORS_SUFFIX;
+    }
+
+    /**
+     * @return the room whose spectators a topic is, or -1 if it is not one
+     */
+    public static int spectatedRoom(String topic) {
+        if (!topic.startsWith(ROOM_PREFIX) || !topic.endsWith(SPECTATORS_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(topic.substring(ROOM_PREFIX.length(), topic.length() - SPECTATORS_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return false if the client was already subscribed to the topic
+     */
+    public boolean subscribe(String topic, ConnectionToClient client) {
+        boolean[] added = new boolean[1];
+        // Creating the topic and adding to it is atomic with removing it once empty
+        topics.compute(topic, (name, clients) -> {
+            if (clients == null) {
+                clients = ConcurrentHashMap.newKeySet();
+            }
+            added[0] = clients.add(client);
+            return clients;
+        });
+        if (added[0]) {
+            topicsByClient.compute(client, (c, clientTopics) -> {
+                if (clientTopics == null) {
+                    clientTopics = new HashSet<>();
+                }
+                clientTopics.add(topic);
+                return clientTopics;
+            });
+        }
+        return added[0];
+    }
+
+    /**
+     * @return false if the client was not subscribed to the topic
+     */
+    public boolean unsubscribe(String topic, ConnectionToClient client) {
+        boolean[] removed = new boolean[1];
+        topicsByClient.computeIfPresent(client, (c, clientTopics) -> {
+            removed[0] = clientTopics.remove(topic);
+            return clientTopics.isEmpty() ? null : clientTopics;
+        });
+        if (removed[0]) {
+            removeFromTopic(topic, client);
+        }
+        return removed[0];
+    }
+
+    /**
+     * Removes a client from all its topics, e.g. once it disconnected.
+     */
+    public void unsubscribeAll(ConnectionToClient client) {
+        Set<String> clientTopics = topicsByClient.remove(client);
+        if (clientTopics == null) {
+            return;
+        }
+        for (String topic : clientTopics) {
+            removeFromTopic(topic, client);
+        }
+    }
+
+    /**
+     * Unsubscribes every client from a topic, e.g. that of a closed room.
+     */
+    public void removeTopic(String topic) {
+        Set<ConnectionToClient> clients = topics.remove(topic);
+        if (clients == null) {
+            return;
+        }
+        for (ConnectionToClient client : clients) {
+            topicsByClient.computeIfPresent(client, (c, clientTopics) -> {
+                clientTopics.remove(topic);
+                return clientTopics.isEmpty() ? null : clientTopics;
+            });
+        }
+    }
+
+    private void removeFromTopic(String topic, ConnectionToClient client) {
+        topics.computeIfPresent(topic, (name, clients) -> {
+            clients.remove(client);
+            return clients.isEmpty() ? null : clients;
+        });
+    }
+
+    /**
+     * Sends a message to the subscribers of a topic. The message is encoded
+     * once for all of them.
+     */
+    public void publish(String topic, Object message) {
+        Set<ConnectionToClient> clients = topics.get(topic);
+        if (clients != null) {
+            server.sendToClients(message, clients);
+        }
+    }
+
+    public boolean isSubscribed(String topic, ConnectionToClient client) {
+        Set<ConnectionToClient> clients = topics.get(topic);
+        return clients != null && clients.contains(client);
+    }
+
+    /**
+     * @return a live, unmodifiable view of the subscribers of a topic
+     */
+    public Set<ConnectionToClient> getSubscribers(String topic) {
+        Set<ConnectionToClient> clients = topics.get(topic);
+        return clients == null ? Collections.emptySet() : Collections.unmodifiableSet(clients);
+    }
+
+    public int getSubscriberCount(String topic) {
+        Set<ConnectionToClient> clients = topics.get(topic);
+        return clients == null ? 0 : clients.size();
+    }
+
+    public int getTopicCount() {
+        return topics.size();
+    }
+}
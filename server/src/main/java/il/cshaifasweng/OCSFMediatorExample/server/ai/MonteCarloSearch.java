@@ -0,0 +1,460 @@
+package il.cshaifasweng.OCSFMediatorExample.server.ai;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds a move by Monte Carlo tree search: many games are played to the end
+ * from the position, and the move played first most often is chosen. Unlike
+ * the {@link SearchEngine} it needs no evaluation, and its cost per game
+ * grows with the board, not its decision time, which the budget bounds.
+ *
+ * Each playout walks down the tree choosing the child of best UCT value,
+ * the rate of wins plus an exploration term, trying the unvisited moves
+ * first in the order of {@link SearchBoard#rateMove}. A node is expanded on
+ * its second visit; the game is then finished with random moves on the
+ * {@link SearchBoard} of the thread, and undone move by move, so a playout
+ * allocates nothing but the nodes it adds. A game ends as soon as the player
+ * to move can complete a line, which the board tracks: random moves would
+ * often miss that win, and the playout would say little about the position.
+ * For the same reason, when a move wins or stops a win at once, only such
+ * moves get a node.
+ *
+ * The playouts run on all the threads of a {@link ForkJoinPool} at once, on
+ * one shared tree. A thread counts its visit to a node on the way down and
+ * its result on the way up, so until then the node looks like a loss to the
+ * others, which then spread over other moves: a virtual loss.
+ *
+ * The tree is kept from one search to the next. When the position searched
+ * follows the last one by one or two moves that are in the tree, the search
+ * starts from that subtree and the playouts already through it count.
+ */
+public final class MonteCarloSearch {
+    private static final double EXPLORATION = Math.sqrt(2);
+    private static final int EXPAND_VISITS = 2;
+
+    private static final AtomicIntegerFieldUpdater<Node> VISITS =
+            AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+    private static final AtomicLongFieldUpdater<Node> SCORE =
+            AtomicLongFieldUpdater.newUpdater(Node.class, "score");
+
+    /** The outcome of a search. */
+    public static final class Result {
+        private final int move;
+        private final long playouts;
+        private final double winRate;
+        private final int reusedVisits;
+        private final long elapsedNanos;
+
+        Result(int move, long playouts, double winRate, int reusedVisits, long elapsedNanos) {
+            this.move = move;
+            this.playouts = playouts;
+            this.winRate = winRate;
+            this.reusedVisits = reusedVisits;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the cell to play, as row * size + col, or -1 if the game is over
+         */
+        public int getMove() {
+            return move;
+        }
+
+        /**
+         * @return the playouts of this search
+         */
+        public long getPlayouts() {
+            return playouts;
+        }
+
+        /**
+         * @return the share of the playouts through the move won by the
+         *         player to move, a draw counting half
+         */
+        public double getWinRate() {
+            return winRate;
+        }
+
+        /**
+         * @return the playouts kept from earlier searches
+         */
+        public int getReusedVisits() {
+            return reusedVisits;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+
+    /** A position of the tree, reached by a move. */
+    static final class Node {
+        final int move;
+        final int player; // who played the move
+        volatile int visits;
+        volatile long score; // half points won by the player of the move
+        volatile Node[] children; // set once expanded, created on their first visit
+        int[] moves; // the moves of the children, set before them
+
+        Node(int move, int player) {
+            this.move = move;
+            this.player = player;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final boolean ownPool;
+    private final AtomicLong seeds = new AtomicLong(System.nanoTime());
+    private SearchBoard rootBoard;
+    private Node root;
+
+    /**
+     * Creates a search with a pool of its own, to {@link #shutdown()} once done.
+     *
+     * @param threads the number of threads playing at once
+     */
+    public MonteCarloSearch(int threads) {
+        this(new ForkJoinPool(threads), true);
+    }
+
+    /**
+     * @param pool the pool running the playouts, one thread per unit of parallelism
+     */
+    public MonteCarloSearch(ForkJoinPool pool) {
+        this(pool, false);
+    }
+
+    private MonteCarloSearch(ForkJoinPool pool, boolean ownPool) {
+        this.pool = pool;
+        this.ownPool = ownPool;
+    }
+
+    /**
+     * Searches a game board for its current player, X if it has none set and
+     * the number of moves is even.
+     */
+    public Result search(GameBoard gameBoard, long maxPlayouts, long budgetMillis) {
+        char player = gameBoard.getCurrentPlayer();
+        if (player != 'X' && player != 'O') {
+            player = gameBoard.getMoveCount() % 2 == 0 ? 'X' : 'O';
+        }
+        return search(SearchBoard.of(gameBoard, player), maxPlayouts, budgetMillis);
+    }
+
+    /**
+     * Searches a position for the player to move until either budget is
+     * spent. The board is not changed.
+     *
+     * @param maxPlayouts  the playouts to play at most
+     * @param budgetMillis the time after which no playout is started
+     */
+    public synchronized Result search(SearchBoard board, long maxPlayouts, long budgetMillis) {
+        long start = System.nanoTime();
+        if (board.isGameOver()) {
+            return new Result(-1, 0, 0, 0, System.nanoTime() - start);
+        }
+        if (board.canWinNextMove()) {
+            // Nothing to search, the best rated move wins
+            int[] moves = new int[board.getCellCount()];
+            orderMoves(board, moves, board.generateMoves(moves));
+            return new Result(moves[0], 0, 1, 0, System.nanoTime() - start);
+        }
+        Node reused = findInTree(board);
+        root = reused != null ? reused : new Node(-1, 3 - board.getToMove());
+        rootBoard = board.copy();
+        int reusedVisits = root.visits;
+
+        long deadline = start + budgetMillis * 1_000_000L;
+        AtomicLong started = new AtomicLong();
+        LongAdder playouts = new LongAdder();
+        List<RecursiveAction> workers = new ArrayList<>();
+        for (int i = 0; i < pool.getParallelism(); i++) {
+            Worker worker = new Worker(board.copy(), seeds.incrementAndGet());
+            workers.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    worker.run(maxPlayouts, deadline, started, playouts);
+                }
+            });
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(workers)));
+
+        Node best = null;
+        Node[] children = root.children;
+        if (children != null) {
+            for (Node child : children) {
+                if (child != null && (best == null || child.visits > best.visits)) {
+                    best = child;
+                }
+            }
+        }
+        if (best == null) {
+            // Not a single expansion, e.g. no budget: the best rated move
+            int[] moves = new int[board.getCellCount()];
+            orderMoves(board, moves, board.generateMoves(moves));
+            return new Result(moves[0], playouts.sum(), 0.5, reusedVisits, System.nanoTime() - start);
+        }
+        return new Result(best.move, playouts.sum(), best.score / (2.0 * best.visits),
+                reusedVisits, System.nanoTime() - start);
+    }
+
+    /**
+     * @return the node of the tree for a position one or two moves after the
+     *         last root, or null if there is none
+     */
+    private Node findInTree(SearchBoard board) {
+        if (root == null || board.getSize() != rootBoard.getSize() || board.getWinLength() != rootBoard.getWinLength()) {
+            return null;
+        }
+        int newMoves = board.getMoveCount() - rootBoard.getMoveCount();
+        if (newMoves < 0 || newMoves > 2) {
+            return null;
+        }
+        int[] played = new int[3]; // the new stone of each player, by player
+        for (int cell = 0; cell < board.getCellCount(); cell++) {
+            int before = rootBoard.getStone(cell);
+            int after = board.getStone(cell);
+            if (before != after) {
+                if (before != SearchBoard.EMPTY || played[after] != 0) {
+                    return null;
+                }
+                played[after] = cell + 1;
+            }
+        }
+
+        Node node = root;
+        int player = rootBoard.getToMove();
+        for (int i = 0; i < newMoves && node != null; i++) {
+            node = played[player] == 0 ? null : childFor(node, played[player] - 1);
+            player = 3 - player;
+        }
+        return node != null && player == board.getToMove() ? node : null;
+    }
+
+    private static Node childFor(Node node, int move) {
+        Node[] children = node.children;
+        if (children == null) {
+            return null;
+        }
+        for (int i = 0; i < children.length; i++) {
+            if (node.moves[i] == move) {
+                return children[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sorts moves by {@link SearchBoard#rateMove}, best first.
+     *
+     * @return the number of moves worth playing: the winning moves if there
+     *         are some, else the moves stopping a win of the opponent if
+     *         there are some, else all of them
+     */
+    private static int orderMoves(SearchBoard board, int[] moves, int count) {
+        int[] ratings = new int[count];
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            int rating = board.rateMove(move);
+            int j = i;
+            while (j > 0 && ratings[j - 1] < rating) {
+                moves[j] = moves[j - 1];
+                ratings[j] = ratings[j - 1];
+                j--;
+            }
+            moves[j] = move;
+            ratings[j] = rating;
+        }
+        int threshold = count > 0 && ratings[0] >= SearchBoard.WIN_RATING ? SearchBoard.WIN_RATING
+                : count > 0 && ratings[0] >= SearchBoard.BLOCK_RATING ? SearchBoard.BLOCK_RATING : Integer.MIN_VALUE;
+        int worthPlaying = 0;
+        while (worthPlaying < count && ratings[worthPlaying] >= threshold) {
+            worthPlaying++;
+        }
+        return worthPlaying;
+    }
+
+    /** The playouts of one thread, on its own copy of the board. */
+    private final class Worker {
+        private final SearchBoard board;
+        private final int rootMoves;
+        private final Node[] path;
+        private final int[] empty;
+        private final SplittableRandom random;
+
+        Worker(SearchBoard board, long seed) {
+            this.board = board;
+            rootMoves = board.getMoveCount();
+            path = new Node[board.getCellCount() + 1];
+            empty = new int[board.getCellCount()];
+            random = new SplittableRandom(seed);
+        }
+
+        void run(long maxPlayouts, long deadline, AtomicLong started, LongAdder playouts) {
+            while (System.nanoTime() - deadline < 0 && started.getAndIncrement() < maxPlayouts) {
+                playout();
+                playouts.increment();
+            }
+        }
+
+        private void playout() {
+            Node node = root;
+            VISITS.incrementAndGet(node);
+            int length = 0;
+            path[length++] = node;
+
+            // Down the tree, counting the visits on the way: a virtual loss
+            while (!board.isGameOver() && !board.canWinNextMove()) {
+                Node[] children = node.children;
+                if (children == null) {
+                    if (node.visits < EXPAND_VISITS) {
+                        break;
+                    }
+                    children = expand(node);
+                }
+                int i = select(node, children);
+                Node child = children[i];
+                boolean created = false;
+                if (child == null) {
+                    synchronized (node) {
+                        child = children[i];
+                        if (child == null) {
+                            child = new Node(node.moves[i], board.getToMove());
+                            children[i] = child;
+                            created = true;
+                        }
+                    }
+                }
+                VISITS.incrementAndGet(child);
+                board.play(child.move);
+                path[length++] = child;
+                node = child;
+                if (created) {
+                    break;
+                }
+            }
+
+            int winner = rollout();
+            for (int moves = board.getMoveCount() - rootMoves; moves > 0; moves--) {
+                board.undo();
+            }
+            for (int i = 0; i < length; i++) {
+                Node visited = path[i];
+                int points = winner == SearchBoard.EMPTY ? 1 : winner == visited.player ? 2 : 0;
+                if (points > 0) {
+                    SCORE.addAndGet(visited, points);
+                }
+            }
+        }
+
+        private Node[] expand(Node node) {
+            synchronized (node) {
+                if (node.children == null) {
+                    int count = board.generateMoves(empty);
+                    count = orderMoves(board, empty, count);
+                    int[] moves = new int[count];
+                    System.arraycopy(empty, 0, moves, 0, count);
+                    node.moves = moves;
+                    node.children = new Node[count];
+                }
+                return node.children;
+            }
+        }
+
+        /**
+         * @return the index of the child of best UCT value, or of the first
+         *         child not visited yet
+         */
+        private int select(Node node, Node[] children) {
+            double logVisits = Math.log(node.visits);
+            int best = 0;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < children.length; i++) {
+                Node child = children[i];
+                if (child == null) {
+                    return i;
+                }
+                int visits = child.visits;
+                if (visits == 0) {
+                    return i;
+                }
+                double value = child.score / (2.0 * visits) + EXPLORATION * Math.sqrt(logVisits / visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = i;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Plays random moves to the end of the game, which is over as soon
+         * as the player to move can complete a line.
+         *
+         * @return the winner, or EMPTY for a draw
+         */
+        private int rollout() {
+            if (board.isGameOver()) {
+                return board.getWinner();
+            }
+            int count = 0;
+            for (int cell = 0; cell < board.getCellCount(); cell++) {
+                if (board.getStone(cell) == SearchBoard.EMPTY) {
+                    empty[count++] = cell;
+                }
+            }
+            while (!board.isGameOver()) {
+                if (board.canWinNextMove()) {
+                    return board.getToMove();
+                }
+                int i = random.nextInt(count);
+                int cell = empty[i];
+                empty[i] = empty[--count];
+                board.play(cell);
+            }
+            return board.getWinner();
+        }
+    }
+
+    /**
+     * @return the playouts through the root of the last search, kept for the next one
+     */
+    public synchronized int getTreeVisits() {
+        return root == null ? 0 : root.visits;
+    }
+
+    /**
+     * Forgets the tree, e.g. when a new game starts.
+     */
+    public synchronized void clear() {
+        root = null;
+        rootBoard = null;
+    }
+
+    /**
+     * @return the number of threads playing at once
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stops the threads of the pool, if this search created it.
+     */
+    public void shutdown() {
+        if (ownPool) {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package il.cshaifasweng.OCSFMediatorExample.server.ai;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches like the {@link SearchEngine}, with the moves of the position
+ * split between the threads of a {@link ForkJoinPool}.
+ *
+ * At each depth of the iterative deepening the young brothers wait: the first
+ * move, the best of the previous depth, is searched alone and gives the score
+ * to beat. The other moves are then searched in parallel, one task each on
+ * its own copy of the board, each against the best score known when it
+ * starts, shared through an {@link AtomicInteger}; a move that does not beat
+ * it is not searched further. All the threads share one
+ * {@link TranspositionTable}, without locks, so what one thread learns
+ * about a position saves the others from searching it again.
+ *
+ * Each thread of the pool keeps its own engine, with its buffers and move
+ * history, from one search to the next. A search object runs one search at
+ * a time; its pool may be shared with other work.
+ */
+public final class ParallelSearch {
+    private static final int DEFAULT_TABLE_BITS = 20;
+
+    private final ForkJoinPool pool;
+    private final boolean ownPool;
+    private final TranspositionTable table;
+    private final SearchEngine engine;
+    private final ThreadLocal<SearchEngine> engines;
+    private int[] moves = new int[0];
+
+    /**
+     * Creates a search with a pool of its own, to {@link #shutdown()} once done.
+     *
+     * @param threads the number of threads searching at once
+     */
+    public ParallelSearch(int threads) {
+        this(new ForkJoinPool(threads), true, DEFAULT_TABLE_BITS);
+    }
+
+    /**
+     * @param pool      the pool running the searches of the moves
+     * @param tableBits the shared transposition table has 2^tableBits entries of 16 bytes
+     */
+    public ParallelSearch(ForkJoinPool pool, int tableBits) {
+        this(pool, false, tableBits);
+    }
+
+    private ParallelSearch(ForkJoinPool pool, boolean ownPool, int tableBits) {
+        this.pool = pool;
+        this.ownPool = ownPool;
+        table = new TranspositionTable(tableBits);
+        engine = new SearchEngine(table);
+        engines = ThreadLocal.withInitial(() -> new SearchEngine(table));
+    }
+
+    /**
+     * Searches a game board for its current player, X if it has none set and
+     * the number of moves is even.
+     */
+    public SearchEngine.Result search(GameBoard gameBoard, long budgetMillis) {
+        char player = gameBoard.getCurrentPlayer();
+        if (player != 'X' && player != 'O') {
+            player = gameBoard.getMoveCount() % 2 == 0 ? 'X' : 'O';
+        }
+        return search(SearchBoard.of(gameBoard, player), SearchEngine.MAX_DEPTH, budgetMillis);
+    }
+
+    /**
+     * Searches a position for the player to move, as
+     * {@link SearchEngine#search(SearchBoard, int, long)} does.
+     */
+    public synchronized SearchEngine.Result search(SearchBoard board, int maxDepth, long budgetMillis) {
+        long start = System.nanoTime();
+        long deadline = start + budgetMillis * 1_000_000L;
+        maxDepth = Math.max(1, Math.min(maxDepth, SearchEngine.MAX_DEPTH));
+        table.newSearch();
+        engine.prepare(board, deadline);
+
+        if (moves.length < board.getCellCount()) {
+            moves = new int[board.getCellCount()];
+        }
+        int count = engine.orderedMoves(moves);
+        if (count <= 1) {
+            return engine.withoutChoice(count == 0 ? -1 : moves[0], start);
+        }
+
+        int bestMove = -1;
+        int bestScore = 0;
+        int completed = 0;
+        long nodes = 0;
+        int empty = board.getCellCount() - board.getMoveCount();
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            boolean canAbort = depth > 1;
+
+            // The eldest brother alone
+            engine.prepare(board, deadline);
+            int score = engine.searchMove(moves[0], depth, -SearchEngine.INFINITY, SearchEngine.INFINITY, canAbort);
+            nodes += engine.getNodes();
+            if (engine.isAborted()) {
+                break;
+            }
+
+            // Then the young brothers at once
+            AtomicInteger scoreToBeat = new AtomicInteger(score);
+            List<MoveTask> tasks = new ArrayList<>(count - 1);
+            for (int i = 1; i < count; i++) {
+                tasks.add(new MoveTask(board, moves[i], depth, deadline, canAbort, scoreToBeat));
+            }
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+            int depthMove = moves[0];
+            int depthScore = score;
+            int depthIndex = 0;
+            boolean aborted = false;
+            for (int i = 0; i < tasks.size(); i++) {
+                MoveTask task = tasks.get(i);
+                nodes += task.nodes;
+                aborted |= task.aborted;
+                if (!task.aborted && task.beaten && task.score > depthScore) {
+                    depthMove = task.move;
+                    depthScore = task.score;
+                    depthIndex = i + 1;
+                }
+            }
+            if (aborted) {
+                break;
+            }
+            bestMove = depthMove;
+            bestScore = depthScore;
+            completed = depth;
+            if (SearchEngine.isSolved(bestScore, depth, empty)) {
+                break;
+            }
+
+            // The best move goes first at the next depth
+            System.arraycopy(moves, 0, moves, 1, depthIndex);
+            moves[0] = bestMove;
+        }
+        return new SearchEngine.Result(bestMove, bestScore, completed, nodes, System.nanoTime() - start);
+    }
+
+    /** The search of one move of the position, on a copy of the board. */
+    private class MoveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final SearchBoard board;
+        private final int move;
+        private final int depth;
+        private final long deadline;
+        private final boolean canAbort;
+        private final AtomicInteger scoreToBeat;
+        private int score;
+        private boolean beaten;
+        private boolean aborted;
+        private long nodes;
+
+        MoveTask(SearchBoard board, int move, int depth, long deadline, boolean canAbort, AtomicInteger scoreToBeat) {
+            this.board = board;
+            this.move = move;
+            this.depth = depth;
+            this.deadline = deadline;
+            this.canAbort = canAbort;
+            this.scoreToBeat = scoreToBeat;
+        }
+
+        @Override
+        protected void compute() {
+            SearchEngine worker = engines.get();
+            worker.prepare(board.copy(), deadline);
+            int alpha = scoreToBeat.get();
+            score = worker.searchMove(move, depth, alpha, SearchEngine.INFINITY, canAbort);
+            aborted = worker.isAborted();
+            nodes = worker.getNodes();
+            // A score not above alpha is only a bound, and not the best
+            beaten = !aborted && score > alpha;
+            if (beaten) {
+                scoreToBeat.accumulateAndGet(score, Math::max);
+            }
+        }
+    }
+
+    /**
+     * @return the number of threads searching at once
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Stops the threads of the pool, if this search created it.
+     */
+    public void shutdown() {
+        if (ownPool) {
+            pool.shutdown();
+        }
+    }
+}
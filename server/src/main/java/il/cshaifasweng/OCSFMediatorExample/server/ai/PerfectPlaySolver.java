@@ -0,0 +1,194 @@
+package il.cshaifasweng.OCSFMediatorExample.server.ai;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Perfect play for the classic 3x3 board, looked up in a table instead of searched.
+ *
+ * The table is filled once, on first use, by a memoized minimax over every
+ * position reachable from the empty board with X moving first: 5,478 of them,
+ * in about 10 ms on a cold JVM. Each position is indexed by its base-3 number
+ * (0 empty, 1 X, 2 O per cell), computed from the two masks of the board with
+ * two array reads, so a query costs a few array reads and never allocates.
+ *
+ * For each position the table keeps its score for the player to move and the
+ * mask of the cells that reach that score. A score is 0 for a draw and
+ * +/-(10 - moves) for a win or a loss after that many moves in total, so the
+ * best moves win as early, and lose as late, as possible.
+ */
+public final class PerfectPlaySolver {
+
+    /** The possible outcomes of a position under perfect play. */
+    public enum Result {
+        X_WINS, O_WINS, DRAW
+    }
+
+    private static final int POSITIONS = 19683; // 3^9
+    private static final byte UNREACHABLE = Byte.MIN_VALUE;
+
+    /** The base-3 number of each 9-bit mask with only 1 digits. */
+    private static final int[] TERNARY = new int[1 << GameBoard.CELLS];
+
+    static {
+        for (int mask = 0; mask < TERNARY.length; mask++) {
+            int value = 0;
+            for (int cell = GameBoard.CELLS - 1; cell >= 0; cell--) {
+                value = value * 3 + ((mask >> cell) & 1);
+            }
+            TERNARY[mask] = value;
+        }
+    }
+
+    private final byte[] scores = new byte[POSITIONS];
+    private final short[] bestMoves = new short[POSITIONS];
+    private int positionCount;
+
+    private static class Holder {
+        static final PerfectPlaySolver INSTANCE = new PerfectPlaySolver();
+    }
+
+    private PerfectPlaySolver() {
+        Arrays.fill(scores, UNREACHABLE);
+        solve(0, 0);
+    }
+
+    /**
+     * @return the solver, whose table is filled on the first call
+     */
+    public static PerfectPlaySolver getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    private static int index(int xMask, int oMask) {
+        return TERNARY[xMask] + 2 * TERNARY[oMask];
+    }
+
+    /**
+     * Fills the table for a position and everything reachable from it.
+     *
+     * @return the score of the position for the player to move
+     */
+    private int solve(int xMask, int oMask) {
+        int index = index(xMask, oMask);
+        if (scores[index] != UNREACHABLE) {
+            return scores[index];
+        }
+        positionCount++;
+
+        int taken = xMask | oMask;
+        int moves = Integer.bitCount(taken);
+        if (GameBoard.isWin(xMask) || GameBoard.isWin(oMask)) {
+            // The previous player just won
+            scores[index] = (byte) -(GameBoard.CELLS + 1 - moves);
+            return scores[index];
+        }
+        if (taken == GameBoard.FULL_MASK) {
+            scores[index] = 0;
+            return 0;
+        }
+
+        boolean xToMove = moves % 2 == 0;
+        int best = Integer.MIN_VALUE;
+        int bestMask = 0;
+        for (int cell = 0; cell < GameBoard.CELLS; cell++) {
+            int bit = 1 << cell;
+            if ((taken & bit) != 0) {
+                continue;
+            }
+            int score = xToMove ? -solve(xMask | bit, oMask) : -solve(xMask, oMask | bit);
+            if (score > best) {
+                best = score;
+                bestMask = bit;
+            } else if (score == best) {
+                bestMask |= bit;
+            }
+        }
+        scores[index] = (byte) best;
+        bestMoves[index] = (short) bestMask;
+        return best;
+    }
+
+    private int lookup(GameBoard board) {
+        if (!board.isClassic()) {
+            throw new IllegalArgumentException("only the 3x3 board is solved");
+        }
+        int index = index(board.getXMask(), board.getOMask());
+        if (scores[index] == UNREACHABLE) {
+            throw new IllegalArgumentException("position cannot be reached with X moving first");
+        }
+        return index;
+    }
+
+    /**
+     * @return false if the board cannot occur in a game where X moves first
+     */
+    public boolean isReachable(GameBoard board) {
+        return board.isClassic() && scores[index(board.getXMask(), board.getOMask())] != UNREACHABLE;
+    }
+
+    /**
+     * @return the score of the position for the player to move: positive if
+     *         it wins, negative if it loses, 0 for a draw
+     * @throws IllegalArgumentException if the position is not reachable
+     */
+    public int getScore(GameBoard board) {
+        return scores[lookup(board)];
+    }
+
+    /**
+     * @return the outcome of the position if both players play perfectly
+     * @throws IllegalArgumentException if the position is not reachable
+     */
+    public Result getResult(GameBoard board) {
+        int score = scores[lookup(board)];
+        if (score == 0) {
+            return Result.DRAW;
+        }
+        boolean xToMove = board.getMoveCount() % 2 == 0;
+        return (score > 0) == xToMove ? Result.X_WINS : Result.O_WINS;
+    }
+
+    /**
+     * @return the mask of the cells that are best for the player to move,
+     *         0 if the game is over
+     * @throws IllegalArgumentException if the position is not reachable
+     */
+    public int getBestMoves(GameBoard board) {
+        return bestMoves[lookup(board)];
+    }
+
+    /**
+     * @return the first best cell, as row * 3 + col, or -1 if the game is over
+     * @throws IllegalArgumentException if the position is not reachable
+     */
+    public int getBestMove(GameBoard board) {
+        int moves = bestMoves[lookup(board)];
+        return moves == 0 ? -1 : Integer.numberOfTrailingZeros(moves);
+    }
+
+    /**
+     * @return one of the best cells chosen at random, as row * 3 + col, or
+     *         -1 if the game is over
+     * @throws IllegalArgumentException if the position is not reachable
+     */
+    public int getBestMove(GameBoard board, Random random) {
+        int moves = bestMoves[lookup(board)];
+        if (moves == 0) {
+            return -1;
+        }
+        for (int skip = random.nextInt(Integer.bitCount(moves)); skip > 0; skip--) {
+            moves &= moves - 1; // Clear the lowest cell
+        }
+        return Integer.numberOfTrailingZeros(moves);
+    }
+
+    /**
+     * @return the number of positions reachable from the empty board
+     */
+    public int getPositionCount() {
+        return positionCount;
+    }
+}
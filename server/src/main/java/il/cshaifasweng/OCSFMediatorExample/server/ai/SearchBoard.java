@@ -0,0 +1,382 @@
+package il.cshaifasweng.OCSFMediatorExample.server.ai;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+
+import java.util.SplittableRandom;
+
+/**
+ * The board the {@link SearchEngine} plays on: size x size cells, winLength
+ * in a row to win, with everything the search needs kept up to date by each
+ * move and its undo instead of being recomputed.
+ *
+ * The board is cut into windows, every run of winLength cells along a row,
+ * column or diagonal. Each window counts the stones of each player in it, so
+ * a move only updates the at most 4 * winLength windows through its cell:
+ * a window reaching winLength stones is a win, one short of it with no
+ * opponent stone is a win on the next move, and the evaluation is the sum
+ * of the windows only one player has stones in, weighted by their count.
+ * The Zobrist hash of the position and, for each cell, the number of stones
+ * around it, which limits the moves searched on large boards, are updated the
+ * same way.
+ */
+public final class SearchBoard {
+    public static final int EMPTY = 0;
+    public static final int X = 1;
+    public static final int O = 2;
+
+    /** How far from the stones the moves are searched on large boards. */
+    private static final int NEIGHBOURHOOD = 2;
+    /** Boards up to this size search every empty cell. */
+    private static final int SMALL_SIZE = 5;
+    private static final int MAX_WEIGHT_SHIFT = 18;
+
+    /** A move rated at least this completes a line of the player to move. */
+    static final int WIN_RATING = 1 << 28;
+    /** A move rated at least this, and less than a win, stops a line of the opponent. */
+    static final int BLOCK_RATING = 1 << 27;
+
+    private static final long[][] ZOBRIST = new long[GameBoard.MAX_SIZE + 1][];
+
+    private final int size;
+    private final int winLength;
+    private final int cells;
+    private final byte[] stones;
+    private final int[][] cellWindows;
+    private final int[][] windowCounts = new int[3][];
+    private final int[] threats = new int[3]; // windows a player completes with one more stone
+    private final int[] weights;
+    private final int[] near;
+    private final long[] keys;
+    private final int[] history;
+    private int moveCount;
+    private int toMove = X;
+    private int winner = EMPTY;
+    private int evaluation; // for X
+    private long hash;
+
+    public SearchBoard(int size, int winLength) {
+        if (!GameBoard.isValid(size, winLength)) {
+            throw new IllegalArgumentException("invalid board " + size + "x" + size + ", " + winLength + " in a row");
+        }
+        this.size = size;
+        this.winLength = winLength;
+        cells = size * size;
+        stones = new byte[cells];
+        near = new int[cells];
+        history = new int[cells];
+        keys = zobristKeys(size);
+
+        weights = new int[winLength + 1];
+        for (int count = 1; count <= winLength; count++) {
+            weights[count] = 1 << Math.min(3 * (count - 1), MAX_WEIGHT_SHIFT);
+        }
+
+        int[][] windowCells = buildWindows(size, winLength);
+        windowCounts[X] = new int[windowCells.length];
+        windowCounts[O] = new int[windowCells.length];
+
+        int[] windowsPerCell = new int[cells];
+        for (int[] window : windowCells) {
+            for (int cell : window) {
+                windowsPerCell[cell]++;
+            }
+        }
+        cellWindows = new int[cells][];
+        for (int cell = 0; cell < cells; cell++) {
+            cellWindows[cell] = new int[windowsPerCell[cell]];
+            windowsPerCell[cell] = 0;
+        }
+        for (int w = 0; w < windowCells.length; w++) {
+            for (int cell : windowCells[w]) {
+                cellWindows[cell][windowsPerCell[cell]++] = w;
+            }
+        }
+    }
+
+    private SearchBoard(SearchBoard board) {
+        size = board.size;
+        winLength = board.winLength;
+        cells = board.cells;
+        stones = board.stones.clone();
+        cellWindows = board.cellWindows; // Never changed
+        windowCounts[X] = board.windowCounts[X].clone();
+        windowCounts[O] = board.windowCounts[O].clone();
+        threats[X] = board.threats[X];
+        threats[O] = board.threats[O];
+        weights = board.weights;
+        near = board.near.clone();
+        keys = board.keys;
+        history = board.history.clone();
+        moveCount = board.moveCount;
+        toMove = board.toMove;
+        winner = board.winner;
+        evaluation = board.evaluation;
+        hash = board.hash;
+    }
+
+    /**
+     * @return an independent copy of this board, e.g. for another thread to search
+     */
+    public SearchBoard copy() {
+        return new SearchBoard(this);
+    }
+
+    /**
+     * Creates the search board of a game board.
+     *
+     * @param toMove 'X' or 'O'
+     */
+    public static SearchBoard of(GameBoard board, char toMove) {
+        SearchBoard searchBoard = new SearchBoard(board.getSize(), board.getWinLength());
+        for (int cell = 0; cell < searchBoard.cells; cell++) {
+            char stone = board.getCell(cell / board.getSize(), cell % board.getSize());
+            if (stone != ' ') {
+                searchBoard.place(cell, stone == 'X' ? X : O);
+            }
+        }
+        searchBoard.setToMove(toMove == 'O' ? O : X);
+        return searchBoard;
+    }
+
+    private static int[][] buildWindows(int size, int winLength) {
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        // With 1 in a row every cell is a window, whatever the direction
+        int directionCount = winLength == 1 ? 1 : directions.length;
+        int count = 0;
+        int[][] windows = new int[4 * size * size][];
+        for (int d = 0; d < directionCount; d++) {
+            int[] direction = directions[d];
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int endRow = row + direction[0] * (winLength - 1);
+                    int endCol = col + direction[1] * (winLength - 1);
+                    if (endRow < 0 || endRow >= size || endCol < 0 || endCol >= size) {
+                        continue;
+                    }
+                    int[] window = new int[winLength];
+                    for (int i = 0; i < winLength; i++) {
+                        window[i] = (row + direction[0] * i) * size + col + direction[1] * i;
+                    }
+                    windows[count++] = window;
+                }
+            }
+        }
+        int[][] result = new int[count][];
+        System.arraycopy(windows, 0, result, 0, count);
+        return result;
+    }
+
+    private static synchronized long[] zobristKeys(int size) {
+        if (ZOBRIST[size] == null) {
+            // Fixed seed: hashes are the same from run to run
+            SplittableRandom random = new SplittableRandom(0x5EA2C4L + size);
+            long[] keys = new long[2 * size * size + 1];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = random.nextLong();
+            }
+            ZOBRIST[size] = keys;
+        }
+        return ZOBRIST[size];
+    }
+
+    /**
+     * Plays a move for the player to move, who then changes.
+     *
+     * @throws IllegalStateException if the cell is taken or the game over
+     */
+    public void play(int cell) {
+        if (stones[cell] != EMPTY || isGameOver()) {
+            throw new IllegalStateException("cell " + cell + " cannot be played");
+        }
+        history[moveCount] = cell;
+        place(cell, toMove);
+        setToMove(3 - toMove);
+    }
+
+    /**
+     * Takes back the last move.
+     */
+    public void undo() {
+        int cell = history[moveCount - 1];
+        setToMove(3 - toMove);
+        remove(cell);
+    }
+
+    private void setToMove(int player) {
+        if (player != toMove) {
+            hash ^= keys[2 * cells];
+            toMove = player;
+        }
+    }
+
+    private void place(int cell, int player) {
+        int opponent = 3 - player;
+        int[] own = windowCounts[player];
+        int[] other = windowCounts[opponent];
+        int sign = player == X ? 1 : -1;
+        for (int w : cellWindows[cell]) {
+            if (other[w] == 0) {
+                evaluation += sign * (weights[own[w] + 1] - weights[own[w]]);
+                if (own[w] == winLength - 1) {
+                    threats[player]--;
+                } else if (own[w] + 1 == winLength - 1) {
+                    threats[player]++;
+                }
+            } else if (own[w] == 0) {
+                evaluation += sign * weights[other[w]]; // The window is dead for the opponent
+                if (other[w] == winLength - 1) {
+                    threats[opponent]--;
+                }
+            }
+            if (++own[w] == winLength) {
+                winner = player;
+            }
+        }
+        stones[cell] = (byte) player;
+        hash ^= keys[2 * cell + player - 1];
+        moveCount++;
+        updateNear(cell, 1);
+    }
+
+    private void remove(int cell) {
+        int player = stones[cell];
+        int opponent = 3 - player;
+        int[] own = windowCounts[player];
+        int[] other = windowCounts[opponent];
+        int sign = player == X ? 1 : -1;
+        for (int w : cellWindows[cell]) {
+            own[w]--;
+            if (other[w] == 0) {
+                evaluation -= sign * (weights[own[w] + 1] - weights[own[w]]);
+                if (own[w] == winLength - 1) {
+                    threats[player]++;
+                } else if (own[w] + 1 == winLength - 1) {
+                    threats[player]--;
+                }
+            } else if (own[w] == 0) {
+                evaluation -= sign * weights[other[w]];
+                if (other[w] == winLength - 1) {
+                    threats[opponent]++;
+                }
+            }
+        }
+        stones[cell] = EMPTY;
+        hash ^= keys[2 * cell + player - 1];
+        moveCount--;
+        winner = EMPTY; // No move is played once the game is won
+        updateNear(cell, -1);
+    }
+
+    private void updateNear(int cell, int delta) {
+        int row = cell / size;
+        int col = cell % size;
+        for (int r = Math.max(0, row - NEIGHBOURHOOD); r <= Math.min(size - 1, row + NEIGHBOURHOOD); r++) {
+            for (int c = Math.max(0, col - NEIGHBOURHOOD); c <= Math.min(size - 1, col + NEIGHBOURHOOD); c++) {
+                near[r * size + c] += delta;
+            }
+        }
+    }
+
+    /**
+     * Lists the moves worth searching: every empty cell on small boards,
+     * the empty cells near a stone on large ones, the center on an empty one.
+     *
+     * @return the number of moves written to the array
+     */
+    int generateMoves(int[] moves) {
+        if (isGameOver()) {
+            return 0;
+        }
+        if (moveCount == 0 && size > SMALL_SIZE) {
+            moves[0] = (size / 2) * size + size / 2;
+            return 1;
+        }
+        int count = 0;
+        boolean all = size <= SMALL_SIZE;
+        for (int cell = 0; cell < cells; cell++) {
+            if (stones[cell] == EMPTY && (all || near[cell] > 0)) {
+                moves[count++] = cell;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Rates a move for move ordering: what it builds for the player to move
+     * plus what it blocks of the opponent, from the windows through the cell.
+     */
+    int rateMove(int cell) {
+        int[] own = windowCounts[toMove];
+        int[] other = windowCounts[3 - toMove];
+        int rating = 0;
+        for (int w : cellWindows[cell]) {
+            if (other[w] == 0) {
+                rating += weights[own[w] + 1];
+                if (own[w] + 1 == winLength) {
+                    rating += WIN_RATING; // Wins at once
+                }
+            } else if (own[w] == 0) {
+                rating += weights[other[w]];
+                if (other[w] + 1 == winLength) {
+                    rating += BLOCK_RATING; // Stops a win
+                }
+            }
+        }
+        return rating;
+    }
+
+    /**
+     * @return the evaluation for the player to move, positive if it is ahead
+     */
+    int evaluate() {
+        return toMove == X ? evaluation : -evaluation;
+    }
+
+    /**
+     * @return true if the player to move has a window it completes with its
+     *         next stone, i.e. wins with its next move
+     */
+    boolean canWinNextMove() {
+        // With 1 in a row any first move wins, the counts are not kept
+        return winLength > 1 && winner == EMPTY && threats[toMove] > 0;
+    }
+
+    public boolean isGameOver() {
+        return winner != EMPTY || moveCount == cells;
+    }
+
+    /**
+     * @return X or O if a player has won, EMPTY otherwise
+     */
+    public int getWinner() {
+        return winner;
+    }
+
+    public int getToMove() {
+        return toMove;
+    }
+
+    public int getStone(int cell) {
+        return stones[cell];
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public int getCellCount() {
+        return cells;
+    }
+
+    public int getMoveCount() {
+        return moveCount;
+    }
+}
@@ -0,0 +1,395 @@
+package il.cshaifasweng.OCSFMediatorExample.server.ai;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+
+import java.util.Arrays;
+
+/**
+ * Finds a good move on boards of any size, within a time budget, for the
+ * positions the {@link PerfectPlaySolver} table does not cover.
+ *
+ * The search is a negamax with alpha-beta pruning on a {@link SearchBoard},
+ * deepened one move at a time until the budget runs out, the game is solved
+ * or the maximum depth is reached; the move of the deepest search completed
+ * is played. A search of depth 1 always completes, so there is a move even
+ * with no budget at all. Moves are tried in order: the best move stored for
+ * the position in the {@link TranspositionTable}, then by what they build and
+ * block on the board plus how often they cut the search off elsewhere.
+ *
+ * A win is scored {@link #WIN_SCORE} less the moves it takes, so the engine
+ * wins as early and loses as late as it can. An engine keeps its table and
+ * buffers from one search to the next and is not thread-safe: use one per
+ * thread, e.g. {@link #forCurrentThread()}.
+ */
+public final class SearchEngine {
+    public static final int WIN_SCORE = 1_000_000_000;
+    public static final int MAX_DEPTH = 64;
+
+    /** Scores beyond this one are wins or losses in a known number of moves. */
+    private static final int WIN_BOUND = WIN_SCORE - 1000;
+    static final int INFINITY = Integer.MAX_VALUE;
+    private static final int DEFAULT_TABLE_BITS = 16;
+    /** The clock is read once every this many nodes, plus one. */
+    private static final int CHECK_INTERVAL = 255;
+    private static final int MAX_HISTORY = 1 << 20;
+
+    private static final ThreadLocal<SearchEngine> ENGINES = ThreadLocal.withInitial(SearchEngine::new);
+
+    /** The outcome of a search. */
+    public static final class Result {
+        private final int move;
+        private final int score;
+        private final int depth;
+        private final long nodes;
+        private final long elapsedNanos;
+
+        Result(int move, int score, int depth, long nodes, long elapsedNanos) {
+            this.move = move;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return the cell to play, as row * size + col, or -1 if the game is over
+         */
+        public int getMove() {
+            return move;
+        }
+
+        /**
+         * @return the score of the move for the player to move
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * @return the depth of the deepest search completed, 0 if there was no choice
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        public long getNodes() {
+            return nodes;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return true if the player to move wins whatever the opponent does
+         */
+        public boolean isWin() {
+            return score >= WIN_BOUND;
+        }
+
+        /**
+         * @return true if the player to move loses against the best defence
+         */
+        public boolean isLoss() {
+            return score <= -WIN_BOUND;
+        }
+    }
+
+    private final TranspositionTable table;
+    private final int[][] moves = new int[MAX_DEPTH + 1][];
+    private final int[][] ratings = new int[MAX_DEPTH + 1][];
+    private int[] history = new int[0];
+    private SearchBoard board;
+    private long deadline;
+    private boolean canAbort;
+    private boolean aborted;
+    private long nodes;
+    private int rootMove;
+
+    public SearchEngine() {
+        this(DEFAULT_TABLE_BITS);
+    }
+
+    /**
+     * @param tableBits the transposition table has 2^tableBits entries of 16 bytes
+     */
+    public SearchEngine(int tableBits) {
+        this(new TranspositionTable(tableBits));
+    }
+
+    /**
+     * Creates an engine sharing a table, as each thread of a {@link ParallelSearch} does.
+     */
+    SearchEngine(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * @return the engine of the calling thread, created on first use
+     */
+    public static SearchEngine forCurrentThread() {
+        return ENGINES.get();
+    }
+
+    /**
+     * Searches a game board for its current player, X if it has none set and
+     * the number of moves is even.
+     */
+    public Result search(GameBoard gameBoard, long budgetMillis) {
+        char player = gameBoard.getCurrentPlayer();
+        if (player != 'X' && player != 'O') {
+            player = gameBoard.getMoveCount() % 2 == 0 ? 'X' : 'O';
+        }
+        return search(SearchBoard.of(gameBoard, player), MAX_DEPTH, budgetMillis);
+    }
+
+    public Result search(SearchBoard searchBoard, long budgetMillis) {
+        return search(searchBoard, MAX_DEPTH, budgetMillis);
+    }
+
+    /**
+     * Searches a position for the player to move. The board is back to the
+     * same position when the search returns.
+     *
+     * @param maxDepth     the number of moves to look ahead at most
+     * @param budgetMillis the time after which no deeper search is started
+     *                     and the one running is abandoned
+     */
+    public Result search(SearchBoard searchBoard, int maxDepth, long budgetMillis) {
+        long start = System.nanoTime();
+        table.newSearch();
+        prepare(searchBoard, start + budgetMillis * 1_000_000L);
+        maxDepth = Math.max(1, Math.min(maxDepth, MAX_DEPTH));
+
+        int count = board.generateMoves(moves[0]);
+        if (count <= 1) {
+            return withoutChoice(count == 0 ? -1 : moves[0][0], start);
+        }
+
+        int bestMove = -1;
+        int bestScore = 0;
+        int completed = 0;
+        int empty = board.getCellCount() - board.getMoveCount();
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            canAbort = depth > 1;
+            int score = negamax(depth, -INFINITY, INFINITY, 0);
+            if (aborted) {
+                break;
+            }
+            bestMove = rootMove;
+            bestScore = score;
+            completed = depth;
+            if (isSolved(score, depth, empty)) {
+                break;
+            }
+            for (int cell = 0; cell < history.length; cell++) {
+                history[cell] >>= 1; // Newer cutoffs count more
+            }
+        }
+        return new Result(bestMove, bestScore, completed, nodes, System.nanoTime() - start);
+    }
+
+    /**
+     * @param move the only move, or -1 if there is none
+     * @return the result of a search with no choice, whose score is only
+     *         that of the position after the move
+     */
+    Result withoutChoice(int move, long start) {
+        if (move < 0) {
+            return new Result(-1, 0, 0, 0, System.nanoTime() - start);
+        }
+        board.play(move);
+        int score = board.getWinner() != SearchBoard.EMPTY ? WIN_SCORE - 1
+                : board.isGameOver() ? 0 : -board.evaluate();
+        board.undo();
+        return new Result(move, score, 0, 1, System.nanoTime() - start);
+    }
+
+    /**
+     * @return true if searching deeper would not change the move: the game
+     *         is won or lost within the depth, or the depth reaches its end.
+     *         A win taken from the table may be longer than the depth, and
+     *         then a deeper search may find a shorter one.
+     */
+    static boolean isSolved(int score, int depth, int emptyCells) {
+        return (Math.abs(score) >= WIN_BOUND && WIN_SCORE - Math.abs(score) <= depth) || depth >= emptyCells;
+    }
+
+    /**
+     * Gets ready to search a position, with the buffers sized for its board.
+     *
+     * @param deadline the {@link System#nanoTime()} at which to abort
+     */
+    void prepare(SearchBoard searchBoard, long deadline) {
+        board = searchBoard;
+        this.deadline = deadline;
+        int cells = board.getCellCount();
+        if (history.length != cells) {
+            history = new int[cells];
+            for (int ply = 0; ply <= MAX_DEPTH; ply++) {
+                moves[ply] = new int[cells];
+                ratings[ply] = new int[cells];
+            }
+        } else {
+            Arrays.fill(history, 0);
+        }
+        aborted = false;
+        nodes = 0;
+        rootMove = -1;
+    }
+
+    /**
+     * Lists the moves of the position being searched, best first.
+     *
+     * @return the number of moves written to the array
+     */
+    int orderedMoves(int[] list) {
+        int count = board.generateMoves(list);
+        long entry = table.probe(board.getHash());
+        order(list, ratings[0], count, entry == 0 ? -1 : TranspositionTable.move(entry));
+        return count;
+    }
+
+    /**
+     * Searches one move of the position being searched, for a parallel
+     * search that splits the moves between threads.
+     *
+     * @param canAbort false to finish the search whatever the deadline
+     * @return the score of the move, meaningless if the search was aborted
+     */
+    int searchMove(int move, int depth, int alpha, int beta, boolean canAbort) {
+        this.canAbort = canAbort;
+        board.play(move);
+        int score = -negamax(depth - 1, -beta, -alpha, 1);
+        board.undo();
+        return score;
+    }
+
+    boolean isAborted() {
+        return aborted;
+    }
+
+    long getNodes() {
+        return nodes;
+    }
+
+    SearchBoard getBoard() {
+        return board;
+    }
+
+    /**
+     * @return the score of the position for the player to move, 0 once the
+     *         search is aborted
+     */
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        if ((++nodes & CHECK_INTERVAL) == 0 && canAbort && System.nanoTime() - deadline >= 0) {
+            aborted = true;
+        }
+        if (aborted) {
+            return 0;
+        }
+        if (board.getWinner() != SearchBoard.EMPTY) {
+            return -(WIN_SCORE - ply); // The player who just moved won
+        }
+        if (board.getMoveCount() == board.getCellCount()) {
+            return 0;
+        }
+        if (ply > 0 && board.canWinNextMove()) {
+            return WIN_SCORE - (ply + 1); // Nothing is better, whatever the depth left
+        }
+        if (depth == 0) {
+            return board.evaluate();
+        }
+
+        long hash = board.getHash();
+        long entry = table.probe(hash);
+        int tableMove = -1;
+        if (entry != 0) {
+            tableMove = TranspositionTable.move(entry);
+            if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+                int score = fromTable(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.EXACT
+                        || (bound == TranspositionTable.LOWER_BOUND && score >= beta)
+                        || (bound == TranspositionTable.UPPER_BOUND && score <= alpha)) {
+                    return score;
+                }
+            }
+        }
+
+        int[] list = moves[ply];
+        int count = board.generateMoves(list);
+        order(list, ratings[ply], count, tableMove);
+
+        int originalAlpha = alpha;
+        int best = -INFINITY;
+        int bestMove = -1;
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            board.play(move);
+            int score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            board.undo();
+            if (aborted) {
+                return 0;
+            }
+            if (score > best) {
+                best = score;
+                bestMove = move;
+                if (ply == 0) {
+                    rootMove = move;
+                }
+            }
+            if (score > alpha) {
+                alpha = score;
+            }
+            if (alpha >= beta) {
+                if (history[move] < MAX_HISTORY) {
+                    history[move] += depth * depth;
+                }
+                break;
+            }
+        }
+
+        int bound = best <= originalAlpha ? TranspositionTable.UPPER_BOUND
+                : best >= beta ? TranspositionTable.LOWER_BOUND : TranspositionTable.EXACT;
+        table.store(hash, depth, bound, toTable(best, ply), bestMove);
+        return best;
+    }
+
+    /**
+     * Sorts the moves best first: the move of the table, then by rating.
+     */
+    private void order(int[] list, int[] rating, int count, int tableMove) {
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            int value = move == tableMove ? INFINITY : board.rateMove(move) + history[move];
+            // Insertion sort, the lists are short and often nearly sorted
+            int j = i;
+            while (j > 0 && rating[j - 1] < value) {
+                list[j] = list[j - 1];
+                rating[j] = rating[j - 1];
+                j--;
+            }
+            list[j] = move;
+            rating[j] = value;
+        }
+    }
+
+    /**
+     * Win scores count the moves from the root; in the table they count from
+     * the position, which may be reached again at another ply.
+     */
+    private static int toTable(int score, int ply) {
+        if (score >= WIN_BOUND) {
+            return score + ply;
+        }
+        return score <= -WIN_BOUND ? score - ply : score;
+    }
+
+    private static int fromTable(int score, int ply) {
+        if (score >= WIN_BOUND) {
+            return score - ply;
+        }
+        return score <= -WIN_BOUND ? score + ply : score;
+    }
+}
@@ -0,0 +1,115 @@
+package il.cshaifasweng.OCSFMediatorExample.server.ai;
+
+import java.util.Arrays;
+
+/**
+ * What the {@link SearchEngine} learned about the positions it searched,
+ * indexed by their Zobrist hash. The table has a fixed number of slots, a
+ * power of two, allocated once: two longs per slot, the entry packed in one
+ * and the full hash XOR the entry in the other, so a probe or a store never
+ * allocates.
+ *
+ * The table can be shared by the threads of a {@link ParallelSearch}
+ * without any lock. Two threads storing to the same slot at once may leave
+ * the hash of one with the entry of the other; the XOR no longer matches
+ * either hash then, and the probe finds nothing instead of a wrong entry.
+ *
+ * A position goes to the slot of the low bits of its hash. It replaces the
+ * entry there if that entry is for the same position, was stored by an
+ * earlier search, or was searched no deeper; the deeper results of the
+ * current search, which cost the most to find again, are kept.
+ */
+final class TranspositionTable {
+    static final int EXACT = 0;
+    static final int LOWER_BOUND = 1;
+    static final int UPPER_BOUND = 2;
+
+    // Entry layout: score in the low 32 bits, then depth, bound, move + 1 and age
+    private static final int DEPTH_SHIFT = 32;
+    private static final int BOUND_SHIFT = 40;
+    private static final int MOVE_SHIFT = 42;
+    private static final int AGE_SHIFT = 52;
+    private static final long USED = 1L << 60;
+
+    private final long[] hashes;
+    private final long[] entries;
+    private final int mask;
+    private int age;
+
+    /**
+     * @param bits the table has 2^bits slots
+     */
+    TranspositionTable(int bits) {
+        if (bits < 1 || bits > 28) {
+            throw new IllegalArgumentException("bits must be between 1 and 28: " + bits);
+        }
+        hashes = new long[1 << bits];
+        entries = new long[1 << bits];
+        mask = (1 << bits) - 1;
+    }
+
+    /**
+     * Starts a new search: the entries stored so far may be replaced by any new one.
+     */
+    void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    /**
+     * @return the entry of a position, to read with the static accessors,
+     *         or 0 if the table has none
+     */
+    long probe(long hash) {
+        int slot = (int) hash & mask;
+        long entry = entries[slot];
+        return (hashes[slot] ^ entry) == hash ? entry : 0;
+    }
+
+    void store(long hash, int depth, int bound, int score, int move) {
+        int slot = (int) hash & mask;
+        long entry = entries[slot];
+        if (entry != 0 && (hashes[slot] ^ entry) != hash && age(entry) == age && depth(entry) > depth) {
+            return;
+        }
+        entry = USED
+                | ((long) age << AGE_SHIFT)
+                | ((long) (move + 1) << MOVE_SHIFT)
+                | ((long) bound << BOUND_SHIFT)
+                | ((long) depth << DEPTH_SHIFT)
+                | (score & 0xFFFFFFFFL);
+        entries[slot] = entry;
+        hashes[slot] = hash ^ entry;
+    }
+
+    static int score(long entry) {
+        return (int) entry;
+    }
+
+    static int depth(long entry) {
+        return (int) (entry >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    static int bound(long entry) {
+        return (int) (entry >>> BOUND_SHIFT) & 0x3;
+    }
+
+    /**
+     * @return the best move found for the position, or -1
+     */
+    static int move(long entry) {
+        return ((int) (entry >>> MOVE_SHIFT) & 0x3FF) - 1;
+    }
+
+    private static int age(long entry) {
+        return (int) (entry >>> AGE_SHIFT) & 0xFF;
+    }
+
+    void clear() {
+        Arrays.fill(hashes, 0);
+        Arrays.fill(entries, 0);
+    }
+
+    int getSlotCount() {
+        return entries.length;
+    }
+}
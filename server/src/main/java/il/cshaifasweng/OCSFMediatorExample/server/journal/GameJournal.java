@@ -0,0 +1,350 @@
+package il.cshaifasweng.OCSFMediatorExample.server.journal;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.log.LogManager;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * An append-only journal of the games played: their start, every move
+ * accepted, their end and the players who left.
+ *
+ * Events are records of {@link #RECORD_SIZE} bytes written into segment
+ * files mapped in memory, so an append is a copy into the page cache under
+ * a short lock, with no system call. Once written, an event survives the
+ * server process crashing. To survive the machine crashing as well, a
+ * commit thread writes the pages appended since its last pass to the disk
+ * every commit interval: a group commit, one disk write for all the events
+ * of the interval instead of one per move. A caller that needs an event on
+ * the disk before going on waits for the next commit with
+ * {@link #awaitDurable(long)}. A commit failing stops the journal: the
+ * events since the last commit may not be on the disk, and the callers
+ * waiting for them get the failure.
+ *
+ * A journal opened on a directory that has one continues after its last
+ * valid record. The events are read back with {@link #replay}.
+ */
+public class GameJournal implements Closeable {
+    private static final Logger log = LogManager.getLogger(GameJournal.class);
+
+    public static final int RECORD_SIZE = 32;
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    public static final long DEFAULT_COMMIT_MILLIS = 10;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long commitNanos;
+    private final Thread committer;
+    private final Object commitLock = new Object();
+
+    // Guarded by this
+    private final byte[] record = new byte[RECORD_SIZE];
+    private final ByteBuffer fields = ByteBuffer.wrap(record);
+    private final CRC32C crc = new CRC32C();
+    private final List<Segment> full = new ArrayList<>();
+    private Segment segment;
+    private long position;
+    private boolean closed;
+
+    /** The journal position up to which the records are on the disk */
+    private volatile long durable;
+    private volatile boolean commitRequested;
+    /** Why the commits stopped, null while they go on */
+    private volatile IOException failure;
+
+    public GameJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_COMMIT_MILLIS);
+    }
+
+    /**
+     * Opens the journal in a directory, created if needed.
+     *
+     * @param segmentSize the size of the segment files, rounded down to
+     *                    whole records
+     * @param commitMillis how often the appended records are written to the disk
+     */
+    public GameJournal(Path directory, int segmentSize, long commitMillis) throws IOException {
+        if (segmentSize < RECORD_SIZE) {
+            throw new IllegalArgumentException("Segments of " + segmentSize + " bytes cannot hold a record");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize - segmentSize % RECORD_SIZE;
+        this.commitNanos = TimeUnit.MILLISECONDS.toNanos(commitMillis);
+        Files.createDirectories(directory);
+
+        List<Long> bases = segmentBases(directory);
+        long base = bases.isEmpty() ? 0 : bases.get(bases.size() - 1);
+        segment = Segment.openForWrite(directory, base, this.segmentSize);
+        position = base + segment.scan(null);
+        durable = position;
+        log.info("Journal {}: {} events, appending to {}", directory, position / RECORD_SIZE,
+                Segment.pathOf(directory, base).getFileName());
+
+        committer = new Thread(this::commitLoop, "Journal commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the journal position after the last event appended
+     */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * @return the journal position up to which the events are on the disk
+     */
+    public long getDurablePosition() {
+        return durable;
+    }
+
+    public synchronized long getEventCount() {
+        return position / RECORD_SIZE;
+    }
+
+    /**
+     * @return the journal position after the event, for awaitDurable
+     */
+    public long gameStarted(int room, int boardSize, int winLength) {
+        return append(JournalEvent.Type.GAME_START, room, 0, 0, 0, boardSize, winLength, (char) 0);
+    }
+
+    /**
+     * @param sequence the sequence of the board after the move
+     */
+    public long moveMade(int room, int sequence, int row, int col, char symbol) {
+        return append(JournalEvent.Type.MOVE, room, sequence, row, col, 0, 0, symbol);
+    }
+
+    /**
+     * @param winner 'X', 'O', or 'T' for a tie
+     */
+    public long gameOver(int room, int moves, char winner) {
+        return append(JournalEvent.Type.GAME_OVER, room, moves, 0, 0, 0, 0, winner);
+    }
+
+    public long playerLeft(int room, int moves, char symbol) {
+        return append(JournalEvent.Type.PLAYER_LEFT, room, moves, 0, 0, 0, 0, symbol);
+    }
+
+    private synchronized long append(JournalEvent.Type type, int room, int sequence, int row, int col,
+                                     int boardSize, int winLength, char symbol) {
+        if (closed) {
+            return position;
+        }
+        if (position - segment.base == segment.size) {
+            try {
+                // The commit thread writes the full segment to the disk and closes it
+                full.add(segment);
+                segment = Segment.openForWrite(directory, position, segmentSize);
+            } catch (IOException e) {
+                log.error("Journal {}: could not open a segment, no more events are kept", directory, e);
+                segment = full.remove(full.size() - 1);
+                closed = true;
+                LockSupport.unpark(committer);
+                return position;
+            }
+        }
+
+        fields.putLong(0, System.currentTimeMillis());
+        fields.putInt(8, room);
+        fields.putInt(12, sequence);
+        fields.putShort(16, (short) row);
+        fields.putShort(18, (short) col);
+        fields.putShort(20, (short) boardSize);
+        fields.putShort(22, (short) winLength);
+        record[24] = (byte) type.code();
+        record[25] = (byte) symbol;
+        crc.reset();
+        crc.update(record, 0, Segment.CHECKED_SIZE);
+        fields.putInt(Segment.CHECKED_SIZE, (int) crc.getValue());
+
+        segment.buffer.position((int) (position - segment.base));
+        segment.buffer.put(record);
+        position += RECORD_SIZE;
+        return position;
+    }
+
+    /**
+     * Waits until the events up to a journal position are on the disk,
+     * committing early rather than at the next interval. The callers
+     * waiting at the same time share the same commit.
+     *
+     * @exception IOException if the commits failed before reaching the position
+     */
+    public void awaitDurable(long position) throws InterruptedException, IOException {
+        if (durable >= position) {
+            return;
+        }
+        commitRequested = true;
+        LockSupport.unpark(committer);
+        synchronized (commitLock) {
+            while (durable < position && failure == null && committer.isAlive()) {
+                commitLock.wait();
+            }
+        }
+        if (durable < position && failure != null) {
+            throw new IOException("Journal " + directory + ": the events may not be on the disk", failure);
+        }
+    }
+
+    /**
+     * Waits until every event appended so far is on the disk.
+     *
+     * @exception IOException if the commits failed
+     */
+    public void sync() throws InterruptedException, IOException {
+        awaitDurable(getPosition());
+    }
+
+    /**
+     * @return why the commits stopped, null if they did not
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Commits the events appended so far and closes the segment files.
+     * Later events are ignored.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        LockSupport.unpark(committer);
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void commitLoop() {
+        while (true) {
+            commitRequested = false;
+            Segment current;
+            List<Segment> completed;
+            long end;
+            boolean stopping;
+            synchronized (this) {
+                current = segment;
+                completed = full.isEmpty() ? Collections.emptyList() : new ArrayList<>(full);
+                full.clear();
+                end = position;
+                stopping = closed;
+            }
+
+            try {
+                for (Segment done : completed) {
+                    done.force(0, done.size);
+                    done.close();
+                }
+                if (end > durable) {
+                    current.force((int) (Math.max(durable, current.base) - current.base), (int) (end - current.base));
+                }
+                if (stopping) {
+                    current.close();
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Journal {}: could not commit, no more events are kept", directory, e);
+                stop(e instanceof IOException ? (IOException) e : new IOException(e), completed);
+                return;
+            }
+            synchronized (commitLock) {
+                durable = end;
+                commitLock.notifyAll();
+            }
+            if (stopping) {
+                return;
+            }
+            if (!commitRequested) {
+                LockSupport.parkNanos(this, commitNanos);
+            }
+        }
+    }
+
+    /**
+     * Stops the journal after a failed commit. The durable position stays
+     * where it is, the waiting callers get the failure instead.
+     *
+     * @param completed the full segments taken by the failed commit
+     */
+    private void stop(IOException e, List<Segment> completed) {
+        List<Segment> open;
+        synchronized (this) {
+            closed = true;
+            open = new ArrayList<>(completed);
+            open.addAll(full);
+            open.add(segment);
+            full.clear();
+        }
+        for (Segment unused : open) {
+            try {
+                unused.close();
+            } catch (IOException closing) {
+                // Already failing
+            }
+        }
+        synchronized (commitLock) {
+            failure = e;
+            commitLock.notifyAll();
+        }
+    }
+
+    /**
+     * Reads the events of the journal in a directory, oldest first. Can be
+     * called while the journal is open, for the events appended so far.
+     *
+     * @return the number of events read
+     */
+    public static long replay(Path directory, Consumer<JournalEvent> consumer) throws IOException {
+        long events = 0;
+        for (long base : segmentBases(directory)) {
+            Segment segment = Segment.openForRead(directory, base);
+            try {
+                events += segment.scan(consumer) / RECORD_SIZE;
+            } finally {
+                segment.close();
+            }
+        }
+        return events;
+    }
+
+    private static List<Long> segmentBases(Path directory) throws IOException {
+        List<Long> bases = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return bases;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + Segment.SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    bases.add(Long.parseLong(name.substring(0, name.length() - Segment.SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not a segment
+                }
+            }
+        }
+        Collections.sort(bases);
+        return bases;
+    }
+}
@@ -0,0 +1,105 @@
+package il.cshaifasweng.OCSFMediatorExample.server.journal;
+
+/**
+ * One event read back from a {@link GameJournal}. Which fields are set
+ * depends on the type:
+ * <ul>
+ *     <li>GAME_START: the board size and win length of the game</li>
+ *     <li>MOVE: the sequence of the board after the move, its row and col
+ *     and the symbol played</li>
+ *     <li>GAME_OVER: the moves played and the winner, 'X', 'O' or 'T' for a tie</li>
+ *     <li>PLAYER_LEFT: the moves played and the symbol of the player who left</li>
+ * </ul>
+ */
+public final class JournalEvent {
+
+    public enum Type {
+        GAME_START, MOVE, GAME_OVER, PLAYER_LEFT;
+
+        /** The code of the type in a record, 0 marks the end of the journal */
+        int code() {
+            return ordinal() + 1;
+        }
+
+        static Type forCode(int code) {
+            Type[] types = values();
+            return code >= 1 && code <= types.length ? types[code - 1] : null;
+        }
+    }
+
+    private final Type type;
+    private final long time;
+    private final int room;
+    private final int sequence;
+    private final int row;
+    private final int col;
+    private final int boardSize;
+    private final int winLength;
+    private final char symbol;
+
+    JournalEvent(Type type, long time, int room, int sequence, int row, int col,
+                 int boardSize, int winLength, char symbol) {
+        this.type = type;
+        this.time = time;
+        this.room = room;
+        this.sequence = sequence;
+        this.row = row;
+        this.col = col;
+        this.boardSize = boardSize;
+        this.winLength = winLength;
+        this.symbol = symbol;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return when the event was journaled, in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    public int getRoom() {
+        return room;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getCol() {
+        return col;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    public int getWinLength() {
+        return winLength;
+    }
+
+    public char getSymbol() {
+        return symbol;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case GAME_START:
+                return "Room " + room + ": game started on " + boardSize + "x" + boardSize + ", " + winLength + " in a row";
+            case MOVE:
+                return "Room " + room + ": move " + sequence + " [" + row + "," + col + "] by " + symbol;
+            case GAME_OVER:
+                return "Room " + room + ": game over after " + sequence + " moves. Winner: " + symbol;
+            default:
+                return "Room " + room + ": player " + symbol + " left after " + sequence + " moves";
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package il.cshaifasweng.OCSFMediatorExample.server.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * One file of a {@link GameJournal}, mapped in memory. It is named after
+ * the journal position of its first record and holds records of
+ * {@link GameJournal#RECORD_SIZE} bytes, each ending with the CRC of the
+ * others. The file is created at its full size and filled from the start:
+ * the first record that is zero or fails its CRC, e.g. torn by a crash,
+ * ends it.
+ */
+final class Segment {
+    static final String SUFFIX = ".journal";
+
+    /** The bytes of a record covered by its CRC, the CRC being the last four */
+    static final int CHECKED_SIZE = GameJournal.RECORD_SIZE - 4;
+
+    final long base;
+    final int size;
+    final MappedByteBuffer buffer;
+    private final FileChannel channel;
+
+    private Segment(long base, int size, FileChannel channel, MappedByteBuffer buffer) {
+        this.base = base;
+        this.size = size;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static Path pathOf(Path directory, long base) {
+        return directory.resolve(String.format("%020d%s", base, SUFFIX));
+    }
+
+    /**
+     * Maps the segment starting at a journal position, created with the
+     * given size if it does not exist. An existing segment keeps its size.
+     */
+    static Segment openForWrite(Path directory, long base, int size) throws IOException {
+        FileChannel channel = FileChannel.open(pathOf(directory, base),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long existing = channel.size();
+            int mapped = existing > 0 ? (int) (existing - existing % GameJournal.RECORD_SIZE) : size;
+            return new Segment(base, mapped, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, mapped));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    static Segment openForRead(Path directory, long base) throws IOException {
+        FileChannel channel = FileChannel.open(pathOf(directory, base), StandardOpenOption.READ);
+        try {
+            long existing = channel.size();
+            int mapped = (int) (existing - existing % GameJournal.RECORD_SIZE);
+            return new Segment(base, mapped, channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, mapped));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the records from the start of the segment.
+     *
+     * @param consumer given each event read, or null to only find the end
+     * @return the offset after the last valid record
+     */
+    int scan(Consumer<JournalEvent> consumer) {
+        ByteBuffer records = buffer.duplicate();
+        byte[] record = new byte[GameJournal.RECORD_SIZE];
+        ByteBuffer fields = ByteBuffer.wrap(record);
+        CRC32C crc = new CRC32C();
+        int offset = 0;
+        while (offset + GameJournal.RECORD_SIZE <= size) {
+            records.position(offset);
+            records.get(record);
+            crc.reset();
+            crc.update(record, 0, CHECKED_SIZE);
+            JournalEvent.Type type = JournalEvent.Type.forCode(record[24]);
+            if (type == null || fields.getInt(CHECKED_SIZE) != (int) crc.getValue()) {
+                break;
+            }
+            if (consumer != null) {
+                consumer.accept(new JournalEvent(type, fields.getLong(0), fields.getInt(8), fields.getInt(12),
+                        fields.getShort(16), fields.getShort(18), fields.getShort(20), fields.getShort(22),
+                        (char) (record[25] & 0xff)));
+            }
+            offset += GameJournal.RECORD_SIZE;
+        }
+        return offset;
+    }
+
+    /**
+     * Writes the pages holding the bytes from one offset to another to the
+     * disk, and waits until they are.
+     */
+    void force(int from, int to) {
+        if (to > from) {
+            buffer.force(from, to - from);
+        }
+    }
+
+    /**
+     * Closes the file. The mapping stays valid until the buffer is collected.
+     */
+    void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,117 @@
+package il.cshaifasweng.OCSFMediatorExample.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations in nanoseconds, recorded from any thread without locks,
+ * to read their percentiles later. Like an HDR histogram, values up to 127
+ * have a bucket each and every power of two above is split in 64 buckets,
+ * so a percentile is off by less than 1.6%, from nanoseconds to hours.
+ *
+ * Recording is one atomic increment of the bucket, an add to the sum and,
+ * for a new maximum only, a compare-and-set.
+ */
+public final class Histogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param nanos the duration to count, negative ones count as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(value));
+        sum.add(value);
+        if (value > max.get()) {
+            max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /** The highest value counted in a bucket. */
+    static long highestOf(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index >>> SUB_BUCKET_BITS) - 1;
+        long mantissa = index - ((long) shift << SUB_BUCKET_BITS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Copies the counts, for percentiles that agree with each other while
+     * recording goes on.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, sum.sum(), max.get());
+    }
+
+    /**
+     * The counts of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param percentile from 0 to 100
+         * @return the value below which the given percentage of the
+         *         values fall, 0 if nothing was recorded
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestOf(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
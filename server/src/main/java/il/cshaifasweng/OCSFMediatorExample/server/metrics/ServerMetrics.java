@@ -0,0 +1,191 @@
+package il.cshaifasweng.OCSFMediatorExample.server.metrics;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The metrics of a server: how long it takes to handle each type of
+ * message, and how much the clients send and receive.
+ *
+ * Each connection counts its own traffic; the totals of the closed ones
+ * are kept here, so that a snapshot adds the open connections to them.
+ * Recording a handling time takes no lock and costs a few tens of
+ * nanoseconds, so it stays on for every message.
+ */
+public final class ServerMetrics {
+    private static final GameMessage.MessageType[] TYPES = GameMessage.MessageType.values();
+
+    private final Histogram[] handlingByType = new Histogram[TYPES.length];
+    /** Messages that are not a GameMessage, e.g. subscriptions */
+    private final Histogram otherHandling = new Histogram();
+
+    private final LongAdder closedConnections = new LongAdder();
+    private final LongAdder closedMessagesReceived = new LongAdder();
+    private final LongAdder closedBytesReceived = new LongAdder();
+    private final LongAdder closedMessagesSent = new LongAdder();
+    private final LongAdder closedBytesSent = new LongAdder();
+
+    public ServerMetrics() {
+        for (int i = 0; i < TYPES.length; i++) {
+            handlingByType[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Records how long the server took to handle a message.
+     */
+    public void recordHandling(Object msg, long nanos) {
+        Histogram histogram = otherHandling;
+        if (msg instanceof GameMessage) {
+            GameMessage.MessageType type = ((GameMessage) msg).getType();
+            if (type != null) {
+                histogram = handlingByType[type.ordinal()];
+            }
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * Keeps the traffic of a connection once it is closed. To be called
+     * once per connection.
+     */
+    public void connectionClosed(ConnectionToClient client) {
+        closedConnections.increment();
+        closedMessagesReceived.add(client.getMessagesReceived());
+        closedBytesReceived.add(client.getBytesReceived());
+        closedMessagesSent.add(client.getMessagesSent());
+        closedBytesSent.add(client.getBytesSent());
+    }
+
+    /**
+     * @param type the type of the messages
+     * @return the times taken to handle the messages of this type so far
+     */
+    public Histogram.Snapshot getHandling(GameMessage.MessageType type) {
+        return handlingByType[type.ordinal()].snapshot();
+    }
+
+    /**
+     * Takes the metrics as they are now.
+     *
+     * @param connections the open connections
+     * @param rooms       the number of games in progress or waiting for a restart
+     */
+    public Snapshot snapshot(Collection<ConnectionToClient> connections, int rooms) {
+        // The closed ones first: a connection is no longer listed once it is counted here
+        long closed = closedConnections.sum();
+        long messagesReceived = closedMessagesReceived.sum();
+        long bytesReceived = closedBytesReceived.sum();
+        long messagesSent = closedMessagesSent.sum();
+        long bytesSent = closedBytesSent.sum();
+        int open = 0;
+        for (ConnectionToClient client : connections) {
+            open++;
+            messagesReceived += client.getMessagesReceived();
+            bytesReceived += client.getBytesReceived();
+            messagesSent += client.getMessagesSent();
+            bytesSent += client.getBytesSent();
+        }
+
+        Histogram.Snapshot[] handling = new Histogram.Snapshot[TYPES.length + 1];
+        for (int i = 0; i < TYPES.length; i++) {
+            handling[i] = handlingByType[i].snapshot();
+        }
+        handling[TYPES.length] = otherHandling.snapshot();
+        return new Snapshot(open, closed, rooms,
+                messagesReceived, bytesReceived, messagesSent, bytesSent, handling);
+    }
+
+    /**
+     * The metrics of the server at one point in time. {@link #toString()}
+     * gives them as a table, handling times in microseconds.
+     */
+    public static final class Snapshot {
+        private final int openConnections;
+        private final long closedConnections;
+        private final int rooms;
+        private final long messagesReceived;
+        private final long bytesReceived;
+        private final long messagesSent;
+        private final long bytesSent;
+        private final Histogram.Snapshot[] handling;
+
+        private Snapshot(int openConnections, long closedConnections, int rooms,
+                         long messagesReceived, long bytesReceived, long messagesSent, long bytesSent,
+                         Histogram.Snapshot[] handling) {
+            this.openConnections = openConnections;
+            this.closedConnections = closedConnections;
+            this.rooms = rooms;
+            this.messagesReceived = messagesReceived;
+            this.bytesReceived = bytesReceived;
+            this.messagesSent = messagesSent;
+            this.bytesSent = bytesSent;
+            this.handling = handling;
+        }
+
+        public int getOpenConnections() {
+            return openConnections;
+        }
+
+        public long getClosedConnections() {
+            return closedConnections;
+        }
+
+        public int getRooms() {
+            return rooms;
+        }
+
+        public long getMessagesReceived() {
+            return messagesReceived;
+        }
+
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        public long getMessagesSent() {
+            return messagesSent;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        public Histogram.Snapshot getHandling(GameMessage.MessageType type) {
+            return handling[type.ordinal()];
+        }
+
+        /**
+         * @return the handling times of the messages that are not a GameMessage
+         */
+        public Histogram.Snapshot getOtherHandling() {
+            return handling[TYPES.length];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("Connections: %d open, %d closed; rooms: %d%n",
+                    openConnections, closedConnections, rooms));
+            text.append(String.format("Received: %d messages, %d bytes; sent: %d messages, %d bytes%n",
+                    messagesReceived, bytesReceived, messagesSent, bytesSent));
+            text.append(String.format("%-16s %10s %10s %10s %10s %10s %10s%n",
+                    "Handling (us)", "count", "mean", "p50", "p99", "p99.9", "max"));
+            for (int i = 0; i < handling.length; i++) {
+                Histogram.Snapshot times = handling[i];
+                if (times.getCount() == 0) {
+                    continue;
+                }
+                text.append(String.format("%-16s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                        i < TYPES.length ? TYPES[i].name() : "other", times.getCount(),
+                        times.getMean() / 1000, times.getPercentile(50) / 1000.0,
+                        times.getPercentile(99) / 1000.0, times.getPercentile(99.9) / 1000.0,
+                        times.getMax() / 1000.0));
+            }
+            return text.toString();
+        }
+    }
+}
@@ -4,8 +4,13 @@
 
 package il.cshaifasweng.OCSFMediatorExample.server.ocsf;
 
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageCodec;
+
 import java.net.*;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
 import java.io.*;
 
 /**
@@ -56,7 +61,14 @@ import java.io.*;
 * the <code>run</code> method.
 * <li> Method <code>isListening()</code> has been modified.
 * <li> Instance variable <code>readToStop</code> is now initialized to <code>true</code>
-* </ul><p>
+* </ul>
+* A transport mode may be selected with <code>setTransportMode()</code>.
+* In <code>NIO</code> mode the accepted connections are not given their
+* own thread but are multiplexed over a few event loop threads. In
+* <code>VIRTUAL_THREAD</code> mode each connection keeps its blocking
+* read loop but runs it on a virtual thread. The hook methods are the
+* same in all modes. The connection factory is not used in
+* <code>NIO</code> mode.<p>
 *
 * Project Name: OCSF (Object Client-Server Framework)<p>
 *
@@ -70,12 +82,56 @@ import java.io.*;
 */
 public abstract class AbstractServer implements Runnable
 {
+  // CLASS VARIABLES ************************************************
+
+  /**
+   * The ways the server can handle its client connections.
+   */
+  public enum TransportMode
+  {
+    /**
+     * Each client is served by its own <code>ConnectionToClient</code>
+     * thread blocking on the socket.
+     */
+    THREAD_PER_CONNECTION,
+
+    /**
+     * Clients are served by a fixed pool of selector based event loops.
+     */
+    NIO,
+
+    /**
+     * Each client is served by its own virtual thread blocking on the
+     * socket. Requires a Java runtime providing virtual threads,
+     * otherwise regular threads outside the thread group are used.
+     */
+    VIRTUAL_THREAD
+  }
+
+  /**
+   * What to do with a message for a client whose outbound queue is
+   * full, i.e. a client that does not read as fast as it is sent to.
+   */
+  public enum OverflowPolicy
+  {
+    /**
+     * Drop the oldest queued message that <code>isDroppable()</code>
+     * accepts. The client is disconnected if there is none.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Disconnect the client.
+     */
+    DISCONNECT
+  }
+
   // INSTANCE VARIABLES *********************************************
 
   /**
    * The server socket: listens for clients who want to connect.
    */
-  private ServerSocket serverSocket = null;
+  private volatile ServerSocket serverSocket = null;
 
   /**
    * The connection listener thread.
@@ -121,6 +177,58 @@ public abstract class AbstractServer implements Runnable
    * instances will be created. Added in version 2.3
    */
   private AbstractConnectionFactory connectionFactory = null;
+
+  /**
+   * The way client connections are handled.
+   */
+  private TransportMode transportMode = TransportMode.THREAD_PER_CONNECTION;
+
+  /**
+   * The number of event loop threads used in <code>NIO</code> mode.
+   * Set to the number of available processors by default.
+   */
+  private int eventLoopThreads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * The event loops serving the clients in <code>NIO</code> mode,
+   * null in the other modes or when the server is closed.
+   */
+  private volatile NioTransport nioTransport = null;
+
+  /**
+   * The connections currently open, by connection identifier, whatever
+   * the transport mode. Listing or counting them takes no lock.
+   */
+  private final ConcurrentHashMap<Long, ConnectionToClient> connections =
+    new ConcurrentHashMap<>();
+
+  /**
+   * A read-only view of the values of <code>connections</code>.
+   */
+  private final Collection<ConnectionToClient> connectionView =
+    Collections.unmodifiableCollection(connections.values());
+
+  /**
+   * The maximum number of messages waiting to be written to a client.
+   * Set to 1024 by default.
+   */
+  private int outboundQueueCapacity = 1024;
+
+  /**
+   * What to do when the outbound queue of a client is full.
+   * Set to <code>DROP_OLDEST</code> by default.
+   */
+  private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+
+  /**
+   * The number of writes that sent messages to clients.
+   */
+  private final LongAdder flushCount = new LongAdder();
+
+  /**
+   * The number of messages sent by these writes.
+   */
+  private final LongAdder flushedMessageCount = new LongAdder();
   
 // CONSTRUCTOR ******************************************************
 
@@ -163,7 +271,22 @@ public abstract class AbstractServer implements Runnable
     {
       if (serverSocket == null)
       {
-        serverSocket = new ServerSocket(getPort(), backlog);
+        if (transportMode == TransportMode.NIO)
+        {
+          // The socket adaptor of a channel keeps the accept timeout
+          ServerSocketChannel channel = ServerSocketChannel.open();
+          channel.bind(new InetSocketAddress(getPort()), backlog);
+          serverSocket = channel.socket();
+        }
+        else
+        {
+          serverSocket = new ServerSocket(getPort(), backlog);
+        }
+      }
+
+      if (transportMode == TransportMode.NIO && nioTransport == null)
+      {
+        nioTransport = new NioTransport(this, eventLoopThreads);
       }
 
       serverSocket.setSoTimeout(timeout);
@@ -208,17 +331,22 @@ public abstract class AbstractServer implements Runnable
       synchronized (this)
       {
         // Close the client sockets of the already connected clients
-        Thread[] clientThreadList = getClientConnections();
-        for (int i=0; i<clientThreadList.length; i++)
+        for (ConnectionToClient client : connections.values())
         {
           try
           {
-            ((ConnectionToClient)clientThreadList[i]).close();
+            client.close();
           }
           // Ignore all exceptions when closing clients.
           catch(Exception ex) {}
         }
         serverSocket = null;
+
+        if (nioTransport != null)
+        {
+          nioTransport.shutdown();
+          nioTransport = null;
+        }
       }
 
       try
@@ -245,15 +373,57 @@ public abstract class AbstractServer implements Runnable
    */
   public void sendToAllClients(Object msg)
   {
-    Thread[] clientThreadList = getClientConnections();
+    sendToClients(msg, connections.values());
+  }
 
-    for (int i=0; i<clientThreadList.length; i++)
+  /**
+   * Sends a message to several clients. The message is encoded once
+   * per codec in use and the same bytes are queued for every client,
+   * whose writers then send them in parallel. Clients whose codec
+   * depends on previous messages, or whose connection class overrides
+   * <code>sendToClient()</code>, are sent the message one by one.
+   * Any exception thrown while sending the message to a particular
+   * client is ignored.
+   *
+   * @param msg the message to be sent.
+   * @param clients the clients to send it to.
+   */
+  public void sendToClients(Object msg,
+    Collection<? extends ConnectionToClient> clients)
+  {
+    boolean droppable = isDroppable(msg);
+    Map<MessageCodec, byte[]> frames = new HashMap<>(4);
+
+    // The writers are only woken up once everything is queued
+    SendBatch batch = SendBatch.begin();
+    try
     {
-      try
+      for (ConnectionToClient client : clients)
       {
-        ((ConnectionToClient)clientThreadList[i]).sendToClient(msg);
+        try
+        {
+          MessageCodec codec = client.getCodec();
+          if (codec == null || !codec.framesIndependent()
+            || !client.acceptsEncoded())
+          {
+            client.sendToClient(msg);
+            continue;
+          }
+
+          byte[] frame = frames.get(codec);
+          if (frame == null)
+          {
+            frame = codec.newEncoder().encode(msg);
+            frames.put(codec, frame);
+          }
+          client.sendEncoded(frame, droppable);
+        }
+        catch (Exception ex) {}
       }
-      catch (Exception ex) {}
+    }
+    finally
+    {
+      batch.end();
     }
   }
 
@@ -292,15 +462,36 @@ public abstract class AbstractServer implements Runnable
    *
    * @return an array of <code>Thread</code> containing
    * <code>ConnectionToClient</code> instances.
+   * @see #getConnections()
    */
-  synchronized final public Thread[] getClientConnections()
+  final public Thread[] getClientConnections()
   {
-    Thread[] clientThreadList = new
-      Thread[clientThreadGroup.activeCount()];
+    return connections.values().toArray(new Thread[0]);
+  }
 
-    clientThreadGroup.enumerate(clientThreadList);
+  /**
+   * Returns the existing client connections as a live, read-only
+   * view, without copying them or taking a lock. Iterating it sees
+   * every connection open during the whole iteration; connections
+   * opened or closed meanwhile may or may not be seen.
+   *
+   * @return the open connections.
+   */
+  final public Collection<ConnectionToClient> getConnections()
+  {
+    return connectionView;
+  }
 
-    return clientThreadList;
+  /**
+   * Finds an open connection by its identifier.
+   *
+   * @param connectionId the identifier of the connection.
+   * @return the connection, or null if it is not open.
+   * @see ConnectionToClient#getConnectionId()
+   */
+  final public ConnectionToClient getConnection(long connectionId)
+  {
+    return connections.get(connectionId);
   }
 
   /**
@@ -310,7 +501,7 @@ public abstract class AbstractServer implements Runnable
    */
   final public int getNumberOfClients()
   {
-    return clientThreadGroup.activeCount();
+    return connections.size();
   }
 
   /**
@@ -377,6 +568,124 @@ public abstract class AbstractServer implements Runnable
     this.connectionFactory = factory;
   }
 
+  /**
+   * Sets the way client connections are handled.
+   * The server must be closed and restarted for the
+   * change to be in effect.
+   *
+   * @param mode the transport mode.
+   */
+  final public void setTransportMode(TransportMode mode)
+  {
+    this.transportMode = mode;
+  }
+
+  /**
+   * Returns the way client connections are handled.
+   *
+   * @return the transport mode.
+   */
+  final public TransportMode getTransportMode()
+  {
+    return transportMode;
+  }
+
+  /**
+   * Returns true if the Java runtime provides the virtual threads used
+   * by the <code>VIRTUAL_THREAD</code> transport mode.
+   *
+   * @return true if virtual threads are available.
+   */
+  public static boolean isVirtualThreadSupported()
+  {
+    return VirtualThreads.isSupported();
+  }
+
+  /**
+   * Sets the number of event loop threads used in <code>NIO</code> mode.
+   * The server must be closed and restarted for the
+   * change to be in effect.
+   *
+   * @param threads the number of event loop threads.
+   */
+  final public void setEventLoopThreads(int threads)
+  {
+    this.eventLoopThreads = threads;
+  }
+
+  /**
+   * Sets the maximum number of messages waiting to be written to each
+   * client. Messages are written by a writer of their connection, so
+   * <code>sendToClient()</code> never waits for a slow client.
+   * Only connections accepted afterwards are affected.
+   *
+   * @param capacity the maximum number of queued messages.
+   */
+  final public void setOutboundQueueCapacity(int capacity)
+  {
+    this.outboundQueueCapacity = capacity;
+  }
+
+  /**
+   * @return the maximum number of messages waiting to be written
+   *   to each client.
+   */
+  final public int getOutboundQueueCapacity()
+  {
+    return outboundQueueCapacity;
+  }
+
+  /**
+   * Returns the number of socket writes that sent messages to clients.
+   * All the messages queued for a client when its writer runs are
+   * written at once, and the messages sent while handling a message
+   * are only written when the handler returns.
+   *
+   * @return the number of writes since the server was created.
+   */
+  final public long getFlushCount()
+  {
+    return flushCount.sum();
+  }
+
+  /**
+   * @return the number of messages sent by the writes counted by
+   *   <code>getFlushCount()</code>.
+   */
+  final public long getFlushedMessageCount()
+  {
+    return flushedMessageCount.sum();
+  }
+
+  /**
+   * @return the average number of messages sent per write, 0 if
+   *   nothing has been sent yet.
+   */
+  final public double getMessagesPerFlush()
+  {
+    long flushes = flushCount.sum();
+    return flushes == 0 ? 0 : (double)flushedMessageCount.sum() / flushes;
+  }
+
+  /**
+   * Sets what to do when the outbound queue of a client is full.
+   * Only connections accepted afterwards are affected.
+   *
+   * @param policy the overflow policy.
+   */
+  final public void setOverflowPolicy(OverflowPolicy policy)
+  {
+    this.overflowPolicy = policy;
+  }
+
+  /**
+   * @return what is done when the outbound queue of a client is full.
+   */
+  final public OverflowPolicy getOverflowPolicy()
+  {
+    return overflowPolicy;
+  }
+
 // RUN METHOD -------------------------------------------------------
 
   /**
@@ -397,8 +706,13 @@ public abstract class AbstractServer implements Runnable
       {
         try
         {
+          // Closed before this thread started, its readyToStop undone
+          ServerSocket listening = serverSocket;
+          if (listening == null)
+            break;
+
           // Wait here for new connection attempts, or a timeout
-          Socket clientSocket = serverSocket.accept();
+          Socket clientSocket = listening.accept();
 
           // When a client is accepted, create a thread to handle
           // the data exchange, then add it to thread group
@@ -407,7 +721,12 @@ public abstract class AbstractServer implements Runnable
           {
             if (!readyToStop)  // added in version 2.2
             {
-              if (connectionFactory == null) {
+              if (nioTransport != null) {
+
+                nioTransport.register(clientSocket.getChannel(),
+                  this.clientThreadGroup);
+
+              } else if (connectionFactory == null) {
 
                 new ConnectionToClient(
                   this.clientThreadGroup, clientSocket, this);
@@ -463,18 +782,19 @@ public abstract class AbstractServer implements Runnable
    * The client is garantee to be disconnected but the thread
    * is still active until it is asynchronously removed from the thread group. 
    * The default implementation does nothing. The method
-   * may be overridden by subclasses but should remains synchronized.
+   * may be overridden by subclasses. It is not synchronized: it may run
+   * concurrently with the handling of messages from other clients.
    *
    * @param client the connection with the client.
    */
-  synchronized protected void clientDisconnected(
+  protected void clientDisconnected(
     ConnectionToClient client) {}
 
   /**
    * Hook method called each time an exception is thrown in a
    * ConnectionToClient thread.
-   * The method may be overridden by subclasses but should remains
-   * synchronized. 
+   * The method may be overridden by subclasses. Like
+   * <code>clientDisconnected</code> it is not synchronized.
    * Most exceptions will cause the end of the client's thread except for
    * <code>ClassNotFoundException<\code>s received when an object of
    * unknown class is received and for the <code>RuntimeException</code>s
@@ -483,9 +803,25 @@ public abstract class AbstractServer implements Runnable
    * @param client the client that raised the exception.
    * @param Throwable the exception thrown.
    */
-  synchronized protected void clientException(
+  protected void clientException(
     ConnectionToClient client, Throwable exception) {}
 
+  /**
+   * Hook method telling whether a message may be dropped when the
+   * outbound queue of a client is full, with the <code>DROP_OLDEST</code>
+   * overflow policy. Only messages superseded by later ones, such as
+   * state updates, should be droppable. The default implementation
+   * returns false. Messages are never dropped with a codec whose
+   * messages depend on the previous ones.
+   *
+   * @param msg the message sent.
+   * @return true if the message may be dropped.
+   */
+  protected boolean isDroppable(Object msg)
+  {
+    return false;
+  }
+
   /**
    * Hook method called when the server stops accepting
    * connections because an exception has been raised.
@@ -522,8 +858,9 @@ public abstract class AbstractServer implements Runnable
    * Handles a command sent from one client to the server.
    * This MUST be implemented by subclasses, who should respond to
    * messages.
-   * This method is called by a synchronized method so it is also
-   * implcitly synchronized.
+   * This method may be called concurrently for different clients, so
+   * any state shared between clients must be protected by the subclass,
+   * ideally with locks that are not global to the server.
    *
    * @param msg   the message sent.
    * @param client the connection connected to the client that
@@ -535,22 +872,118 @@ public abstract class AbstractServer implements Runnable
 
 // METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------
 
+  /**
+   * Starts the read loop of a new connection: as the connection thread
+   * itself, or on a virtual thread in <code>VIRTUAL_THREAD</code> mode.
+   * Called by the constructor of <code>ConnectionToClient</code>.
+   *
+   * @param client the connection to start.
+   */
+  final void startConnection(ConnectionToClient client)
+  {
+    registerConnection(client);
+    if (transportMode != TransportMode.VIRTUAL_THREAD)
+    {
+      client.start();
+      return;
+    }
+
+    VirtualThreads.start(() -> {
+      try
+      {
+        client.run();
+      }
+      catch (RuntimeException | Error ex)
+      {
+        clientException(client, ex);
+      }
+    });
+  }
+
+  /**
+   * Starts the thread writing the queued messages of a connection:
+   * a virtual thread in <code>VIRTUAL_THREAD</code> mode, otherwise a
+   * daemon thread outside the client thread group, which only holds
+   * connections. In <code>THREAD_PER_CONNECTION</code> mode each client
+   * thus costs two platform threads, its reader and its writer, the
+   * price of never making a sender wait for a slow client.
+   *
+   * @param client the connection.
+   * @param writer the write loop of the connection.
+   */
+  final void startWriter(ConnectionToClient client, Runnable writer)
+  {
+    if (transportMode == TransportMode.VIRTUAL_THREAD)
+    {
+      VirtualThreads.start(writer);
+      return;
+    }
+
+    Thread thread = new Thread(writer, "Writer of " + client.getName());
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Records an open connection, so that it is listed by
+   * <code>getConnections()</code>. Called once the connection is
+   * ready to exchange messages, in every transport mode.
+   *
+   * @param client the connection.
+   */
+  final void registerConnection(ConnectionToClient client)
+  {
+    connections.put(client.getConnectionId(), client);
+  }
+
+  /**
+   * Forgets a connection recorded by <code>registerConnection()</code>.
+   *
+   * @param client the connection.
+   */
+  final void unregisterConnection(ConnectionToClient client)
+  {
+    connections.remove(client.getConnectionId(), client);
+  }
+
   /**
    * Receives a command sent from the client to the server.
    * Called by the run method of <code>ConnectionToClient</code>
-   * instances that are watching for messages coming from the server
-   * This method is synchronized to ensure that whatever effects it has
-   * do not conflict with work being done by other threads. The method
-   * simply calls the <code>handleMessageFromClient</code> slot method.
+   * instances that are watching for messages coming from the server,
+   * or by the event loops in <code>NIO</code> mode.
+   * This method is not synchronized: messages coming from different
+   * clients are handled concurrently, while the messages of one client
+   * are still handled one at a time, in the order they were sent.
+   * The method calls the <code>handleMessageFromClient</code>
+   * slot method, and writes the messages it sends once it returns.
    *
    * @param msg   the message sent.
    * @param client the connection connected to the client that
    *  sent the message.
    */
-  final synchronized void receiveMessageFromClient(
+  final void receiveMessageFromClient(
     Object msg, ConnectionToClient client)
   {
-    this.handleMessageFromClient(msg, client);
+    SendBatch batch = SendBatch.begin();
+    try
+    {
+      this.handleMessageFromClient(msg, client);
+    }
+    finally
+    {
+      batch.end();
+    }
+  }
+
+  /**
+   * Counts a write to a client.
+   *
+   * @param messages the number of messages written.
+   */
+  final void recordFlush(int messages)
+  {
+    flushCount.increment();
+    flushedMessageCount.add(messages);
   }
 }
 // End of AbstractServer Class
@@ -4,9 +4,16 @@
 
 package il.cshaifasweng.OCSFMediatorExample.server.ocsf;
 
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.*;
+
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
 * An instance of this class is created by the server when a client
@@ -65,6 +72,11 @@ public class ConnectionToClient extends Thread
   */
   private AbstractServer server;
 
+  /**
+  * The identifier of the connection, unique within the process.
+  */
+  private final long connectionId = NEXT_CONNECTION_ID.incrementAndGet();
+
   /**
   * Sockets are used in the operating system as channels
   * of communication between two processes.
@@ -75,12 +87,27 @@ public class ConnectionToClient extends Thread
   /**
   * Stream used to read from the client.
   */
-  private ObjectInputStream input;
+  private InputStream input;
 
   /**
   * Stream used to write to the client.
   */
-  private ObjectOutputStream output;
+  private OutputStream output;
+
+  /**
+  * The codec selected by the client when it connected.
+  */
+  private MessageCodec codec;
+
+  /**
+  * Encodes the messages sent to the client. Guarded by sendLock.
+  */
+  private MessageEncoder encoder;
+
+  /**
+  * Decodes the messages read from the client.
+  */
+  private MessageDecoder decoder;
 
   /**
   * Indicates if the thread is ready to stop. Set to true when closing
@@ -88,14 +115,88 @@ public class ConnectionToClient extends Thread
   */
   private boolean readyToStop;
 
+  /**
+  * Set once the connection is closed or its reading ended, before the
+  * server is told that the client disconnected.
+  */
+  private volatile boolean disconnected = false;
+
   /**
    * Map to save information about the client such as its login ID.
    * The initial size of the map is small since it is not expected
    * that concrete servers will want to store many different types of
    * information about each client. Used by the setInfo and getInfo
-   * methods.
+   * methods, which may be called from any thread.
+   */
+  private Map<String, Object> savedInfo = new ConcurrentHashMap<>(10);
+
+  /**
+   * Lock guarding the encoder and the outbound queue, since the server
+   * may handle several clients that send to this one at the same time.
+   * A lock rather than a monitor: a virtual thread waiting on a monitor
+   * pins its carrier thread, so idle writers would hold every carrier.
+   */
+  private final ReentrantLock sendLock = new ReentrantLock();
+
+  /**
+   * Signalled when messages are queued or the connection closes.
+   * The writer waits on it.
    */
-  private HashMap savedInfo = new HashMap(10);
+  private final Condition queued = sendLock.newCondition();
+
+  /**
+   * The encoded messages waiting for the writer. Guarded by sendLock.
+   */
+  private OutboundQueue outbound;
+
+  /**
+   * The largest number of bytes the writer gathers in a single write.
+   */
+  private static final int WRITE_BATCH_SIZE = 8192;
+
+  /**
+   * The last connection identifier given out.
+   */
+  private static final AtomicLong NEXT_CONNECTION_ID = new AtomicLong();
+
+  /**
+   * Whether each connection class keeps the original
+   * <code>sendToClient()</code>, computed once per class.
+   */
+  private static final ClassValue<Boolean> USES_DEFAULT_SEND =
+    new ClassValue<Boolean>()
+    {
+      protected Boolean computeValue(Class<?> type)
+      {
+        try
+        {
+          return type.getMethod("sendToClient", Object.class)
+            .getDeclaringClass() == ConnectionToClient.class;
+        }
+        catch (NoSuchMethodException ex)
+        {
+          return false;
+        }
+      }
+    };
+
+  /**
+   * The transport session when the connection is handled by an event
+   * loop of the server instead of its own thread. Null otherwise.
+   */
+  private NioTransport.Session session = null;
+
+  /**
+   * The messages and bytes received from the client. Only the thread
+   * reading from the client writes them.
+   */
+  private volatile long messagesReceived, bytesReceived;
+
+  /**
+   * The messages and bytes queued for the client. Only written with
+   * sendLock held, or the session locked in <code>NIO</code> mode.
+   */
+  private volatile long messagesSent, bytesSent;
 
 
 // CONSTRUCTORS *****************************************************
@@ -120,11 +221,33 @@ public class ConnectionToClient extends Thread
 
     clientSocket.setSoTimeout(0); // make sure timeout is infinite
 
-    //Initialize the objects streams
+    //Initialize the streams with the codec chosen by the client
     try
     {
-      input = new ObjectInputStream(clientSocket.getInputStream());
-      output = new ObjectOutputStream(clientSocket.getOutputStream());
+      input = new BufferedInputStream(
+        new FilterInputStream(clientSocket.getInputStream())
+        {
+          // Counts the bytes as the buffer fills, not one by one
+          public int read(byte[] b, int off, int len) throws IOException
+          {
+            int count = in.read(b, off, len);
+            if (count > 0)
+              bytesReceived += count;
+            return count;
+          }
+        });
+      output = clientSocket.getOutputStream();
+
+      byte[] header = new byte[MessageCodec.HEADER_LENGTH];
+      new DataInputStream(input).readFully(header);
+      codec = MessageCodec.forHeader(header);
+      encoder = codec.newEncoder();
+      decoder = codec.newDecoder();
+      output.write(codec.header());
+      output.flush();
+
+      outbound = new OutboundQueue(
+        server.getOutboundQueueCapacity(), server.getOverflowPolicy());
     }
     catch (IOException ex)
     {
@@ -138,13 +261,38 @@ public class ConnectionToClient extends Thread
     }
 
     readyToStop = false;
-    start(); // Start the thread waits for data from the socket
+    server.startWriter(this, this::writeQueued); // Start the thread writing to the socket
+    server.startConnection(this); // Start the thread waits for data from the socket
+  }
+
+  /**
+   * Constructs a connection handled by the NIO transport of the server.
+   * No thread is started, messages are read by an event loop and given
+   * to <code>messageReceived</code>.
+   *
+   * @param group the thread group that contains the connections.
+   * @param session the transport session of the connection.
+   * @param server a reference to the server that created
+   *        this instance
+   */
+  ConnectionToClient(ThreadGroup group, NioTransport.Session session,
+    AbstractServer server)
+  {
+    super(group,(Runnable)null);
+    this.clientSocket = session.socket();
+    this.server = server;
+    this.session = session;
+    readyToStop = false;
   }
 
 // INSTANCE METHODS *************************************************
 
   /**
    * Sends an object to the client.
+   * The message is encoded right away and queued, the calling thread
+   * never waits for the client to read it. If the client is so slow
+   * that its queue is full, the overflow policy of the server applies
+   * and the client may be disconnected.
    * This method can be overriden, but if so it should still perform
    * the general function of sending to client, by calling the
    * <code>super.sendToClient()</code> method
@@ -152,15 +300,39 @@ public class ConnectionToClient extends Thread
    *
    * @param msg the message to be sent.
    * @exception IOException if an I/O error occur when sending the
-   *    message.
+   *    message, or if the client has been disconnected because its
+   *    queue is full.
    */
   public void sendToClient(Object msg) throws IOException
   {
-    if (clientSocket == null || output == null)
-      throw new SocketException("socket does not exist");
-    
-    output.reset();
-    output.writeObject(msg);
+    boolean droppable = server.isDroppable(msg)
+      && getCodec() != null && getCodec().framesIndependent();
+    SendBatch batch = SendBatch.current();
+
+    if (session != null)
+    {
+      session.send(msg, droppable, batch != null);
+      if (batch != null)
+        batch.add(this);
+      return;
+    }
+
+    sendLock.lock();
+    try
+    {
+      if (clientSocket == null || output == null)
+        throw new SocketException("socket does not exist");
+
+      if (queue(ByteBuffer.wrap(encoder.encode(msg)), droppable, batch))
+        return;
+    }
+    finally
+    {
+      sendLock.unlock();
+    }
+
+    close();
+    throw new SocketException("client too slow, outbound queue full");
   }
 
   /**
@@ -174,11 +346,83 @@ public class ConnectionToClient extends Thread
   {
   
     readyToStop = true; // Set the flag that tells the thread to stop
+    disconnected = true;
     closeAll();
   }
 
+  /**
+   * Tells whether the connection is still open. It is false by the
+   * time <code>clientDisconnected</code> is called for it, so a server
+   * that sees it true after registering the client somewhere is sure
+   * to be told about the disconnection afterwards.
+   *
+   * @return true if the connection is open.
+   */
+  final public boolean isConnected()
+  {
+    return !disconnected;
+  }
+
 // ACCESSING METHODS ------------------------------------------------
 
+  /**
+   * Returns the identifier under which the server lists the connection.
+   *
+   * @return the identifier of the connection.
+   */
+  final public long getConnectionId()
+  {
+    return connectionId;
+  }
+
+  /**
+   * @return the number of messages received from the client.
+   */
+  final public long getMessagesReceived()
+  {
+    return messagesReceived;
+  }
+
+  /**
+   * @return the number of bytes received from the client, codec header
+   *   included.
+   */
+  final public long getBytesReceived()
+  {
+    return bytesReceived;
+  }
+
+  /**
+   * Returns the number of messages sent to the client. A message counts
+   * once queued for the client, even if it is dropped later because the
+   * client is too slow.
+   *
+   * @return the number of messages sent to the client.
+   */
+  final public long getMessagesSent()
+  {
+    return messagesSent;
+  }
+
+  /**
+   * @return the number of bytes of the messages counted by
+   *   <code>getMessagesSent()</code>.
+   */
+  final public long getBytesSent()
+  {
+    return bytesSent;
+  }
+
+  /**
+   * Returns the codec used to exchange messages with the client.
+   *
+   * @return the codec selected by the client.
+   */
+  final public MessageCodec getCodec()
+  {
+    return session != null ? session.codec() : codec;
+  }
+
   /**
    * Returns the address of the client.
    *
@@ -210,7 +454,10 @@ public class ConnectionToClient extends Thread
    */
   public void setInfo(String infoType, Object info)
   {
-    savedInfo.put(infoType, info);
+    if (info == null)
+      savedInfo.remove(infoType);
+    else
+      savedInfo.put(infoType, info);
   }
 
   /**
@@ -250,7 +497,8 @@ public class ConnectionToClient extends Thread
         try { // Added in version 2.31
         
           // wait to receive an object
-          msg = input.readObject();
+          msg = decoder.read(input);
+          messagesReceived++;
                   
           if (!readyToStop && handleMessageFromClient(msg)) // Added in version 2.2
           {
@@ -281,6 +529,8 @@ public class ConnectionToClient extends Thread
       }
     } finally {
     
+        disconnected = true;
+        server.unregisterConnection(this);
         server.clientDisconnected(this);   // moved here in version 2.31
     }
   }
@@ -303,6 +553,219 @@ public class ConnectionToClient extends Thread
 
 // METHODS TO BE USED FROM WITHIN THE FRAMEWORK ONLY ----------------
 
+  /**
+   * Tells whether messages encoded once for many clients may be given
+   * to <code>sendEncoded()</code>, i.e. whether the class of this
+   * connection keeps the original <code>sendToClient()</code>.
+   *
+   * @return true if <code>sendToClient()</code> is not overridden.
+   */
+  final boolean acceptsEncoded()
+  {
+    return USES_DEFAULT_SEND.get(getClass());
+  }
+
+  /**
+   * Sends a message already encoded with the codec of this connection,
+   * e.g. once for all the clients of a broadcast. The bytes are only
+   * read, so the same array may be given to many connections.
+   *
+   * @param frame the encoded message.
+   * @param droppable true if the message may be dropped for a slow
+   *   client.
+   * @exception IOException if the connection is closed, or if the
+   *   client has been disconnected because its queue is full.
+   */
+  final void sendEncoded(byte[] frame, boolean droppable) throws IOException
+  {
+    SendBatch batch = SendBatch.current();
+
+    if (session != null)
+    {
+      session.sendEncoded(frame, droppable, batch != null);
+      if (batch != null)
+        batch.add(this);
+      return;
+    }
+
+    sendLock.lock();
+    try
+    {
+      if (clientSocket == null || output == null)
+        throw new SocketException("socket does not exist");
+
+      if (queue(ByteBuffer.wrap(frame), droppable, batch))
+        return;
+    }
+    finally
+    {
+      sendLock.unlock();
+    }
+
+    close();
+    throw new SocketException("client too slow, outbound queue full");
+  }
+
+  /**
+   * Counts a message queued for the client. Called with sendLock held,
+   * or the session locked in <code>NIO</code> mode.
+   *
+   * @param bytes the length of the encoded message.
+   */
+  final void recordSent(int bytes)
+  {
+    messagesSent++;
+    bytesSent += bytes;
+  }
+
+  /**
+   * Counts bytes read from the client by the <code>NIO</code> transport.
+   * Called by the event loop of the connection only.
+   *
+   * @param bytes the number of bytes read.
+   */
+  final void recordReceived(int bytes)
+  {
+    bytesReceived += bytes;
+  }
+
+  /**
+   * Queues a frame for the writer and wakes it up, or lets the batch
+   * wake it up later. Called with sendLock held.
+   *
+   * @return false if the queue is full.
+   */
+  private boolean queue(ByteBuffer frame, boolean droppable, SendBatch batch)
+  {
+    int length = frame.remaining();
+    if (!outbound.offer(frame, droppable))
+      return false;
+    recordSent(length);
+
+    // Inside a handler, the writer is woken up once it returns
+    if (batch != null)
+      batch.add(this);
+    else
+      queued.signal();
+    return true;
+  }
+
+  /**
+   * Writes the messages queued while a batch was open.
+   * May be called from any thread.
+   */
+  final void flushQueued()
+  {
+    if (session != null)
+    {
+      session.flushQueued();
+      return;
+    }
+    sendLock.lock();
+    try
+    {
+      queued.signal();
+    }
+    finally
+    {
+      sendLock.unlock();
+    }
+  }
+
+  /**
+   * Writes the queued messages to the socket until the connection is
+   * closed, gathering all the messages queued meanwhile into each
+   * write. Runs on the writer thread of the connection. When writing
+   * fails, the socket is closed so that the reading thread ends and
+   * reports the problem.
+   */
+  private void writeQueued()
+  {
+    Socket socket = null;
+    byte[] buffer = new byte[WRITE_BATCH_SIZE];
+    try
+    {
+      while (true)
+      {
+        ByteBuffer large = null;
+        int length = 0;
+        int count = 0;
+        OutputStream out;
+        sendLock.lock();
+        try
+        {
+          while (outbound.isEmpty() && output != null)
+            queued.await();
+          if (output == null)
+            return;
+          out = output;
+          socket = clientSocket;
+
+          ByteBuffer frame;
+          while ((frame = outbound.peek()) != null)
+          {
+            if (count == 0 && frame.remaining() > buffer.length)
+            {
+              large = outbound.poll(); // Written on its own
+              count = 1;
+              break;
+            }
+            if (length + frame.remaining() > buffer.length)
+              break;
+            int size = frame.remaining();
+            frame.get(buffer, length, size);
+            length += size;
+            outbound.poll();
+            count++;
+          }
+        }
+        finally
+        {
+          sendLock.unlock();
+        }
+
+        if (large != null)
+          out.write(large.array(), large.arrayOffset() + large.position(),
+            large.remaining());
+        else
+          out.write(buffer, 0, length);
+        server.recordFlush(count);
+      }
+    }
+    catch (InterruptedException ex) {}
+    catch (IOException ex)
+    {
+      try
+      {
+        if (socket != null)
+          socket.close();
+      }
+      catch (IOException exc) {}
+    }
+  }
+
+  /**
+   * Handles a message read by the NIO transport the same way the
+   * <code>run</code> method handles the messages it reads.
+   *
+   * @param msg the message received.
+   */
+  final void messageReceived(Object msg)
+  {
+    messagesReceived++;
+    try
+    {
+      if (!readyToStop && handleMessageFromClient(msg))
+      {
+        server.receiveMessageFromClient(msg, this);
+      }
+    }
+    catch (RuntimeException ex)
+    {
+      server.clientException(this, ex);
+    }
+  }
+
   /**
    * Closes all connection to the server.
    *
@@ -315,6 +778,10 @@ public class ConnectionToClient extends Thread
 
     try
     {
+      // Let the transport close the channel and notify the server
+      if (session != null)
+        session.close();
+
       // Close the socket
       if (clientSocket != null)
         clientSocket.close();
@@ -336,6 +803,19 @@ public class ConnectionToClient extends Thread
       output = null;
       input = null;
       clientSocket = null;
+
+      // Wake the writer up so that it ends
+      sendLock.lock();
+      try
+      {
+        if (outbound != null)
+          outbound.clear();
+        queued.signalAll();
+      }
+      finally
+      {
+        sendLock.unlock();
+      }
     }
   }
 
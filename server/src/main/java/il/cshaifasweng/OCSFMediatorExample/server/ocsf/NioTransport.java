@@ -0,0 +1,662 @@
+// This file contains material supporting section 3.8 of the textbook:
+// "Object Oriented Software Engineering" and is issued under the open-source
+// license found at www.lloseng.com
+
+package il.cshaifasweng.OCSFMediatorExample.server.ocsf;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+* The <code> NioTransport </code> class multiplexes the client
+* connections of an <code>AbstractServer</code> over a small fixed pool
+* of event loop threads, each one owning a <code>Selector</code>. It is
+* used instead of one blocking <code>ConnectionToClient</code> thread per
+* client when the server transport mode is <code>NIO</code>.<p>
+*
+* The bytes exchanged are exactly the ones of the blocking transport:
+* the header of the codec chosen by the client, answered by the server,
+* followed by the encoded messages. Incoming bytes are accumulated per
+* connection and a message is decoded only once it has been completely
+* received, so clients do not need to know which transport the server
+* uses. The server is told about a connection once its codec is known.<p>
+*
+* The hook methods of the server are called by the event loop thread
+* that owns the connection. They should not block for long since every
+* other connection of the same loop waits meanwhile. A runtime exception
+* thrown by a hook is given to <code>clientException</code> of the
+* server, and the loop goes on with the other connections.<p>
+*
+* Project Name: OCSF (Object Client-Server Framework)<p>
+*
+* @see com.lloseng.ocsf.server.AbstractServer
+* @see com.lloseng.ocsf.server.ConnectionToClient
+*/
+final class NioTransport
+{
+// CLASS VARIABLES **************************************************
+
+  /**
+   * The size of the buffer each event loop reads into.
+   */
+  private static final int READ_BUFFER_SIZE = 8192;
+
+  /**
+   * The most bytes read from one connection each time its loop wakes up,
+   * so that a client sending without pause does not hold the others.
+   */
+  private static final int MAX_READ_SIZE = 16 * READ_BUFFER_SIZE;
+
+  /**
+   * The most bytes buffered for a message not complete yet: the longest
+   * message a codec accepts and its length prefix. A client sending more
+   * is disconnected before it fills the heap.
+   */
+  private static final int MAX_BUFFERED_SIZE =
+    MessageCodec.MAX_FRAME_LENGTH + 16;
+
+  /**
+   * The largest number of messages written to a channel at once.
+   */
+  private static final int GATHER_SIZE = 64;
+
+// INSTANCE VARIABLES ***********************************************
+
+  /**
+   * The server that uses this transport.
+   */
+  private final AbstractServer server;
+
+  /**
+   * The event loops, connections are spread over them in turn.
+   */
+  private final EventLoop[] loops;
+
+  /**
+   * Index of the loop that receives the next connection.
+   * Only accessed by the connection listener thread.
+   */
+  private int nextLoop = 0;
+
+// CONSTRUCTORS *****************************************************
+
+  /**
+   * Creates and starts the event loops.
+   *
+   * @param server the server using this transport.
+   * @param threads the number of event loop threads.
+   * @exception IOException if a selector cannot be opened.
+   */
+  NioTransport(AbstractServer server, int threads) throws IOException
+  {
+    this.server = server;
+    this.loops = new EventLoop[Math.max(1, threads)];
+
+    try
+    {
+      for (int i=0; i<loops.length; i++)
+      {
+        loops[i] = new EventLoop(i);
+      }
+    }
+    catch (IOException ex)
+    {
+      shutdown();
+      throw ex;
+    }
+
+    for (int i=0; i<loops.length; i++)
+    {
+      loops[i].thread.start();
+    }
+  }
+
+// INSTANCE METHODS *************************************************
+
+  /**
+   * Takes charge of a newly accepted channel: creates its
+   * <code>ConnectionToClient</code> and hands it to an event loop.
+   * If the channel cannot be set up it is simply closed.
+   *
+   * @param channel the accepted channel.
+   * @param group the thread group of the server connections.
+   */
+  void register(SocketChannel channel, ThreadGroup group)
+  {
+    try
+    {
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+
+      EventLoop loop = loops[nextLoop];
+      nextLoop = (nextLoop + 1) % loops.length;
+
+      Session session = new Session(channel, loop);
+      session.connection = new ConnectionToClient(group, session, server);
+      loop.execute(session::open);
+    }
+    catch (IOException ex)
+    {
+      try
+      {
+        channel.close();
+      }
+      catch (IOException exc) {}
+    }
+  }
+
+  /**
+   * Stops the event loops. Connections still opened are closed.
+   */
+  void shutdown()
+  {
+    for (int i=0; i<loops.length; i++)
+    {
+      if (loops[i] != null)
+        loops[i].stop();
+    }
+  }
+
+// INNER CLASSES ****************************************************
+
+  /**
+   * A thread running a selector loop over its share of the connections.
+   * Work submitted from other threads is queued and run by the loop.
+   */
+  final class EventLoop implements Runnable
+  {
+    final Selector selector;
+    final Thread thread;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer =
+      ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    private volatile boolean readyToStop = false;
+
+    EventLoop(int index) throws IOException
+    {
+      selector = Selector.open();
+      thread = new Thread(this, "NIO event loop " + index);
+    }
+
+    /**
+     * Runs a task on this loop thread, immediately if called from it.
+     */
+    void execute(Runnable task)
+    {
+      if (Thread.currentThread() == thread)
+      {
+        task.run();
+        return;
+      }
+      tasks.add(task);
+      selector.wakeup();
+    }
+
+    /**
+     * Runs a task on this loop thread later, even if called from it.
+     */
+    void submit(Runnable task)
+    {
+      tasks.add(task);
+      selector.wakeup();
+    }
+
+    void stop()
+    {
+      readyToStop = true;
+      selector.wakeup();
+    }
+
+    /**
+     * Runs a queued task. An exception thrown by a hook of the server
+     * is reported and the loop goes on.
+     */
+    private void runTask(Runnable task)
+    {
+      try
+      {
+        task.run();
+      }
+      catch (RuntimeException ex)
+      {
+        server.listeningException(ex);
+      }
+    }
+
+    public void run()
+    {
+      try
+      {
+        while (!readyToStop)
+        {
+          selector.select();
+
+          Runnable task;
+          while ((task = tasks.poll()) != null)
+          {
+            runTask(task);
+          }
+
+          Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+          while (keys.hasNext())
+          {
+            SelectionKey key = keys.next();
+            keys.remove();
+            Session session = (Session)key.attachment();
+
+            try
+            {
+              if (key.isValid() && key.isWritable())
+                session.flush();
+              if (key.isValid() && key.isReadable())
+                session.read(readBuffer);
+            }
+            catch (CancelledKeyException ex) {}
+            catch (IOException | RuntimeException ex)
+            {
+              session.fail(ex);
+            }
+          }
+        }
+      }
+      catch (IOException ex) {}
+      finally
+      {
+        for (SelectionKey key : new ArrayList<>(selector.keys()))
+        {
+          ((Session)key.attachment()).fail(null);
+        }
+        Runnable task;
+        while ((task = tasks.poll()) != null)
+        {
+          runTask(task);
+        }
+        try
+        {
+          selector.close();
+        }
+        catch (IOException ex) {}
+      }
+    }
+  }
+
+  /**
+   * The state of one connection: its channel, the bytes received but
+   * not decoded yet and the bytes waiting to be written.
+   */
+  final class Session
+  {
+    private final SocketChannel channel;
+    private final EventLoop loop;
+    private ConnectionToClient connection;
+    private SelectionKey key;
+    private boolean closed = false;
+
+    // Incoming bytes, only accessed by the loop thread.
+    private byte[] inbound = new byte[0];
+    private int inboundLength = 0;
+    private MessageDecoder decoder;
+    private boolean connected = false;
+
+    // Outgoing bytes, guarded by this session.
+    private final OutboundQueue outbound = new OutboundQueue(
+      server.getOutboundQueueCapacity(), server.getOverflowPolicy());
+    private final ByteBuffer[] gather = new ByteBuffer[GATHER_SIZE];
+    private volatile MessageCodec codec;
+    private MessageEncoder encoder;
+
+    Session(SocketChannel channel, EventLoop loop)
+    {
+      this.channel = channel;
+      this.loop = loop;
+    }
+
+    Socket socket()
+    {
+      return channel.socket();
+    }
+
+    /**
+     * @return the codec selected by the client, null until its header
+     *   has been received.
+     */
+    MessageCodec codec()
+    {
+      return codec;
+    }
+
+    /**
+     * Registers the channel with the loop selector.
+     * Runs on the loop thread.
+     */
+    void open()
+    {
+      synchronized (this)
+      {
+        if (closed)
+          return;
+        try
+        {
+          key = channel.register(loop.selector, SelectionKey.OP_READ, this);
+        }
+        catch (IOException ex)
+        {
+          closed = true;
+        }
+      }
+    }
+
+    /**
+     * Selects the codec named by the header of the client, answers with
+     * the same header and notifies the server. Runs on the loop thread.
+     */
+    private void negotiate(byte[] header) throws IOException
+    {
+      MessageCodec selected = MessageCodec.forHeader(header);
+      decoder = selected.newDecoder();
+
+      synchronized (this)
+      {
+        encoder = selected.newEncoder();
+        codec = selected;
+        outbound.offer(ByteBuffer.wrap(selected.header()), false);
+      }
+      SendBatch.current().add(connection); // Sent with the replies, if any
+
+      connected = true;
+      server.registerConnection(connection);
+      try
+      {
+        server.clientConnected(connection);
+      }
+      catch (RuntimeException ex)
+      {
+        server.clientException(connection, ex);
+      }
+    }
+
+    /**
+     * Encodes a message and writes it, or queues it for the loop if the
+     * socket cannot take it right away. May be called from any thread.
+     * If the queue is full and no message can be dropped, the client is
+     * disconnected.
+     *
+     * @param deferred true to only queue the message, it is then written
+     *   by <code>flushQueued()</code>.
+     */
+    void send(Object msg, boolean droppable, boolean deferred)
+      throws IOException
+    {
+      synchronized (this)
+      {
+        if (closed || encoder == null)
+          throw new SocketException("socket does not exist");
+
+        if (!sendFrame(ByteBuffer.wrap(encoder.encode(msg)), droppable, deferred))
+          return;
+      }
+      loop.selector.wakeup();
+    }
+
+    /**
+     * Sends a message already encoded with the codec of this session,
+     * like <code>send()</code>. The bytes are only read.
+     */
+    void sendEncoded(byte[] frame, boolean droppable, boolean deferred)
+      throws IOException
+    {
+      synchronized (this)
+      {
+        if (closed || encoder == null)
+          throw new SocketException("socket does not exist");
+
+        if (!sendFrame(ByteBuffer.wrap(frame), droppable, deferred))
+          return;
+      }
+      loop.selector.wakeup();
+    }
+
+    /**
+     * Writes or queues a frame. Called with the session locked.
+     *
+     * @return true if the loop must be woken up to write the frame.
+     */
+    private boolean sendFrame(ByteBuffer frame, boolean droppable,
+      boolean deferred) throws IOException
+    {
+      int length = frame.remaining();
+      if (!deferred && outbound.isEmpty())
+      {
+        channel.write(frame);
+        if (!frame.hasRemaining())
+        {
+          connection.recordSent(length);
+          server.recordFlush(1);
+          return false;
+        }
+      }
+      if (!outbound.offer(frame, droppable))
+      {
+        close();
+        throw new SocketException("client too slow, outbound queue full");
+      }
+      connection.recordSent(length);
+      if (deferred)
+        return false;
+      key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+      return true;
+    }
+
+    /**
+     * Writes the queued messages on the loop thread: right away if
+     * called from it, otherwise the loop is asked to. A thread sending
+     * to many clients thus leaves the writing to all the loops.
+     */
+    void flushQueued()
+    {
+      loop.execute(() -> {
+        try
+        {
+          flush();
+        }
+        catch (IOException ex)
+        {
+          fail(ex);
+        }
+      });
+    }
+
+    /**
+     * Writes as much of the queued bytes as the socket accepts, as many
+     * messages at a time as possible. If some remain, the loop is asked
+     * to flush again when the socket becomes writable.
+     *
+     * @return true if the queue has been emptied.
+     */
+    synchronized boolean flush() throws IOException
+    {
+      if (closed)
+        return true;
+
+      while (!outbound.isEmpty())
+      {
+        int count = outbound.peek(gather);
+        channel.write(gather, 0, count);
+
+        int written = 0;
+        while (written < count && !gather[written].hasRemaining())
+        {
+          outbound.poll();
+          written++;
+        }
+        Arrays.fill(gather, 0, count, null);
+        if (written > 0)
+          server.recordFlush(written);
+
+        if (written < count)
+        {
+          key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+          return false; // The socket is full
+        }
+      }
+      key.interestOps(SelectionKey.OP_READ);
+      return true;
+    }
+
+    /**
+     * Reads the available bytes and dispatches every message they
+     * complete, one buffer at a time. At most <code>MAX_READ_SIZE</code>
+     * bytes are read, the rest waits for the next wake-up of the loop.
+     * Runs on the loop thread.
+     *
+     * @exception IOException if the client sent more bytes than any
+     *   message can hold, or the channel failed.
+     */
+    void read(ByteBuffer buffer) throws IOException
+    {
+      int count = 0;
+      int total = 0;
+
+      // Replies to all the messages of this read leave together
+      SendBatch batch = SendBatch.begin();
+      try
+      {
+        while (total < MAX_READ_SIZE && !isClosed()
+          && (count = channel.read(buffer)) > 0)
+        {
+          if (inboundLength + count > inbound.length)
+          {
+            inbound = Arrays.copyOf(inbound,
+              Math.max(inboundLength + count, inbound.length * 2));
+          }
+          buffer.flip();
+          buffer.get(inbound, inboundLength, count);
+          inboundLength += count;
+          total += count;
+          connection.recordReceived(count);
+          buffer.clear();
+
+          decode();
+          if (inboundLength > MAX_BUFFERED_SIZE)
+            throw new StreamCorruptedException(
+              inboundLength + " bytes received without a complete message");
+
+          if (count < buffer.capacity())
+            break;
+        }
+      }
+      finally
+      {
+        batch.end();
+      }
+
+      if (count < 0)
+        fail(new EOFException());
+    }
+
+    /**
+     * Decodes all the complete messages received so far.
+     */
+    private void decode() throws IOException
+    {
+      int offset = 0;
+
+      if (decoder == null)
+      {
+        if (inboundLength < MessageCodec.HEADER_LENGTH)
+          return;
+        negotiate(Arrays.copyOf(inbound, MessageCodec.HEADER_LENGTH));
+        offset = MessageCodec.HEADER_LENGTH;
+      }
+
+      while (offset < inboundLength && !isClosed())
+      {
+        int consumed = decoder.decode(inbound, offset, inboundLength - offset);
+        if (consumed == 0)
+          break; // The message is not complete yet
+        offset += consumed;
+
+        try
+        {
+          connection.messageReceived(decoder.getMessage());
+        }
+        catch (ClassNotFoundException ex)
+        {
+          server.clientException(connection, ex);
+        }
+      }
+
+      if (offset > 0)
+      {
+        System.arraycopy(inbound, offset, inbound, 0, inboundLength - offset);
+        inboundLength -= offset;
+      }
+    }
+
+    /**
+     * Ends the connection after an error. A null exception means that
+     * the transport is shutting down. Runs on the loop thread.
+     */
+    void fail(Exception exception)
+    {
+      if (isClosed())
+        return;
+      if (exception != null && connected)
+        server.clientException(connection, exception);
+
+      try
+      {
+        connection.close();
+      }
+      catch (IOException ex) {}
+    }
+
+    synchronized boolean isClosed()
+    {
+      return closed;
+    }
+
+    /**
+     * Closes the channel and notifies the server, on the loop thread,
+     * that the client is disconnected. Has no effect if already closed.
+     */
+    void close()
+    {
+      synchronized (this)
+      {
+        if (closed)
+          return;
+        closed = true;
+        outbound.clear();
+      }
+
+      try
+      {
+        channel.close();
+      }
+      catch (IOException ex) {}
+
+      // Always queued, the caller may be in the middle of handling a message
+      loop.submit(() -> {
+        if (!connected)
+          return;
+        server.unregisterConnection(connection);
+        try
+        {
+          server.clientDisconnected(connection);
+        }
+        catch (RuntimeException ex)
+        {
+          server.clientException(connection, ex);
+        }
+      });
+    }
+  }
+}
+// End of NioTransport class
@@ -142,6 +142,16 @@ public class ObservableServer extends Observable
     return service.getClientConnections();
   }
 
+  /**
+   * Returns the existing client connections as a live, read-only view.
+   *
+   * @return the open connections.
+   */
+  final public Collection<ConnectionToClient> getConnections()
+  {
+    return service.getConnections();
+  }
+
   /**
    * @return the number of clients currently connected.
    */
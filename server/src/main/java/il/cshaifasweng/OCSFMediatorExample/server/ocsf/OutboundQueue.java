@@ -0,0 +1,182 @@
+// This file contains material supporting section 3.8 of the textbook:
+// "Object Oriented Software Engineering" and is issued under the open-source
+// license found at www.lloseng.com
+
+package il.cshaifasweng.OCSFMediatorExample.server.ocsf;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+* The <code> OutboundQueue </code> class holds the encoded messages
+* waiting to be written to one client. It holds at most a fixed number
+* of messages: when a client does not read fast enough, the overflow
+* policy of the server decides whether an old message may be dropped
+* or whether the client must be disconnected.<p>
+*
+* The queue is not synchronized, its connection guards it.<p>
+*
+* Project Name: OCSF (Object Client-Server Framework)<p>
+*
+* @see com.lloseng.ocsf.server.AbstractServer.OverflowPolicy
+*/
+final class OutboundQueue
+{
+// INSTANCE VARIABLES ***********************************************
+
+  /**
+   * The encoded messages, oldest first.
+   */
+  private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+
+  /**
+   * The maximum number of messages held.
+   */
+  private final int capacity;
+
+  /**
+   * What to do when the queue is full.
+   */
+  private final AbstractServer.OverflowPolicy policy;
+
+  /**
+   * The number of messages dropped so far.
+   */
+  private long dropped = 0;
+
+// CONSTRUCTORS *****************************************************
+
+  /**
+   * @param capacity the maximum number of messages held.
+   * @param policy what to do when the queue is full.
+   */
+  OutboundQueue(int capacity, AbstractServer.OverflowPolicy policy)
+  {
+    this.capacity = Math.max(1, capacity);
+    this.policy = policy;
+  }
+
+// INSTANCE METHODS *************************************************
+
+  /**
+   * Adds a message at the end of the queue. When the queue is full and
+   * the policy is <code>DROP_OLDEST</code>, the oldest droppable message
+   * not being written yet makes room for it.
+   *
+   * @param data the encoded message.
+   * @param droppable true if the message may be dropped later on.
+   * @return false if the queue is full, in which case the client
+   *   should be disconnected.
+   */
+  boolean offer(ByteBuffer data, boolean droppable)
+  {
+    if (frames.size() >= capacity)
+    {
+      if (policy != AbstractServer.OverflowPolicy.DROP_OLDEST || !dropOldest())
+        return false;
+    }
+    frames.add(new Frame(data, droppable));
+    return true;
+  }
+
+  /**
+   * Removes the oldest droppable message whose writing has not started.
+   *
+   * @return true if a message was removed.
+   */
+  private boolean dropOldest()
+  {
+    Iterator<Frame> it = frames.iterator();
+    while (it.hasNext())
+    {
+      Frame frame = it.next();
+      if (frame.droppable && frame.data.position() == 0)
+      {
+        it.remove();
+        dropped++;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the oldest message, or null if the queue is empty.
+   */
+  ByteBuffer peek()
+  {
+    Frame frame = frames.peek();
+    return frame == null ? null : frame.data;
+  }
+
+  /**
+   * Copies the oldest messages, without removing them, e.g. to write
+   * them all at once.
+   *
+   * @param into the array receiving the messages.
+   * @return the number of messages copied.
+   */
+  int peek(ByteBuffer[] into)
+  {
+    int count = 0;
+    for (Frame frame : frames)
+    {
+      if (count == into.length)
+        break;
+      into[count++] = frame.data;
+    }
+    return count;
+  }
+
+  /**
+   * Removes and returns the oldest message.
+   *
+   * @return the oldest message, or null if the queue is empty.
+   */
+  ByteBuffer poll()
+  {
+    Frame frame = frames.poll();
+    return frame == null ? null : frame.data;
+  }
+
+  boolean isEmpty()
+  {
+    return frames.isEmpty();
+  }
+
+  int size()
+  {
+    return frames.size();
+  }
+
+  /**
+   * @return the number of messages dropped since the queue was created.
+   */
+  long getDroppedCount()
+  {
+    return dropped;
+  }
+
+  /**
+   * Discards all the messages.
+   */
+  void clear()
+  {
+    frames.clear();
+  }
+
+// INNER CLASSES ****************************************************
+
+  private static final class Frame
+  {
+    final ByteBuffer data;
+    final boolean droppable;
+
+    Frame(ByteBuffer data, boolean droppable)
+    {
+      this.data = data;
+      this.droppable = droppable;
+    }
+  }
+}
+// End of OutboundQueue class
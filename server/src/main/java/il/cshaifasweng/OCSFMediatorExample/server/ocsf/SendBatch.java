@@ -0,0 +1,105 @@
+// This file contains material supporting section 3.8 of the textbook:
+// "Object Oriented Software Engineering" and is issued under the open-source
+// license found at www.lloseng.com
+
+package il.cshaifasweng.OCSFMediatorExample.server.ocsf;
+
+import java.util.*;
+
+/**
+* The <code> SendBatch </code> class holds back the writing of the
+* messages sent by one thread while it handles a message, so that all
+* the messages a handler sends to a client leave in a single write once
+* the handler returns. The messages are queued as usual, only the wake
+* up of the writer is deferred.<p>
+*
+* Batches nest: only the outermost one flushes.<p>
+*
+* Project Name: OCSF (Object Client-Server Framework)<p>
+*
+* @see com.lloseng.ocsf.server.ConnectionToClient
+*/
+final class SendBatch
+{
+// CLASS VARIABLES **************************************************
+
+  /**
+   * The batch of each thread, kept between batches to be reused.
+   */
+  private static final ThreadLocal<SendBatch> BATCHES =
+    ThreadLocal.withInitial(SendBatch::new);
+
+// INSTANCE VARIABLES ***********************************************
+
+  /**
+   * The connections sent to since the batch started.
+   */
+  private final ArrayList<ConnectionToClient> pending = new ArrayList<>();
+
+  /**
+   * The number of nested batches opened by the thread.
+   */
+  private int depth = 0;
+
+// CLASS METHODS ****************************************************
+
+  /**
+   * Starts a batch on the current thread. Must be followed by a call
+   * to <code>end()</code>, in a finally block.
+   *
+   * @return the batch of the current thread.
+   */
+  static SendBatch begin()
+  {
+    SendBatch batch = BATCHES.get();
+    batch.depth++;
+    return batch;
+  }
+
+  /**
+   * @return the batch started on the current thread, or null if none.
+   */
+  static SendBatch current()
+  {
+    SendBatch batch = BATCHES.get();
+    return batch.depth > 0 ? batch : null;
+  }
+
+// INSTANCE METHODS *************************************************
+
+  /**
+   * Records that a message has been queued for a connection.
+   *
+   * @param client the connection to flush when the batch ends.
+   */
+  void add(ConnectionToClient client)
+  {
+    // Handlers send to a couple of clients, a list is enough. For a
+    // broadcast only the last one is checked: a duplicate only costs
+    // an empty flush.
+    int from = pending.size() <= 16 ? 0 : pending.size() - 1;
+    for (int i=from; i<pending.size(); i++)
+    {
+      if (pending.get(i) == client)
+        return;
+    }
+    pending.add(client);
+  }
+
+  /**
+   * Ends a batch, flushing the connections sent to if it is the
+   * outermost one.
+   */
+  void end()
+  {
+    if (--depth > 0)
+      return;
+
+    for (int i=0; i<pending.size(); i++)
+    {
+      pending.get(i).flushQueued();
+    }
+    pending.clear();
+  }
+}
+// End of SendBatch class
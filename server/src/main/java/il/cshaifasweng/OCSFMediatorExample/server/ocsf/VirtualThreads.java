@@ -0,0 +1,84 @@
+// This file contains material supporting section 3.8 of the textbook:
+// "Object Oriented Software Engineering" and is issued under the open-source
+// license found at www.lloseng.com
+
+package il.cshaifasweng.OCSFMediatorExample.server.ocsf;
+
+import java.lang.invoke.*;
+
+/**
+* The <code> VirtualThreads </code> class starts tasks on virtual
+* threads when the Java runtime provides them. The framework is compiled
+* for an older release, so the factory method is looked up once at run
+* time. On runtimes without virtual threads a regular thread is used
+* and <code>isSupported()</code> returns false.<p>
+*
+* Project Name: OCSF (Object Client-Server Framework)<p>
+*
+* @see com.lloseng.ocsf.server.AbstractServer
+*/
+final class VirtualThreads
+{
+  /**
+   * <code>Thread.startVirtualThread(Runnable)</code>, or null when the
+   * runtime does not provide it.
+   */
+  private static final MethodHandle START_VIRTUAL_THREAD = lookup();
+
+  private VirtualThreads() {}
+
+  /**
+   * Returns true if tasks are really started on virtual threads.
+   *
+   * @return true if the runtime provides virtual threads.
+   */
+  static boolean isSupported()
+  {
+    return START_VIRTUAL_THREAD != null;
+  }
+
+  /**
+   * Starts a task on a new virtual thread, or on a new regular
+   * thread if virtual threads are not supported.
+   *
+   * @param task the task to run.
+   * @return the started thread.
+   */
+  static Thread start(Runnable task)
+  {
+    if (START_VIRTUAL_THREAD == null)
+    {
+      Thread thread = new Thread(task);
+      thread.start();
+      return thread;
+    }
+
+    try
+    {
+      return (Thread)START_VIRTUAL_THREAD.invokeExact(task);
+    }
+    catch (RuntimeException | Error ex)
+    {
+      throw ex;
+    }
+    catch (Throwable ex)
+    {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private static MethodHandle lookup()
+  {
+    try
+    {
+      return MethodHandles.publicLookup().findStatic(Thread.class,
+        "startVirtualThread",
+        MethodType.methodType(Thread.class, Runnable.class));
+    }
+    catch (NoSuchMethodException | IllegalAccessException ex)
+    {
+      return null;
+    }
+  }
+}
+// End of VirtualThreads class
@@ -0,0 +1,60 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import il.cshaifasweng.OCSFMediatorExample.server.BotPlayer;
+import il.cshaifasweng.OCSFMediatorExample.server.GameManager;
+import il.cshaifasweng.OCSFMediatorExample.server.GameRoom;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Plays many games between bots on the shared scheduler.
+ */
+public class BotPlayerTest
+{
+    private static final int GAMES = 1000;
+
+    private final GameManager games = GameManager.getInstance();
+    private final ScheduledExecutorService scheduler = games.getScheduler();
+
+    @Test
+    public void perfectBotsAlwaysDraw() throws InterruptedException
+    {
+        for (GameRoom room : play(1.0, 1.0)) {
+            assertEquals('T', room.getBoard().getWinner());
+        }
+    }
+
+    @Test
+    public void perfectBotNeverLosesToRandomBot() throws InterruptedException
+    {
+        for (GameRoom room : play(0.0, 1.0)) {
+            char winner = room.getBoard().getWinner();
+            assertNotEquals(' ', winner);
+            assertNotEquals('X', winner);
+        }
+    }
+
+    private List<GameRoom> play(double strengthX, double strengthO) throws InterruptedException
+    {
+        List<GameRoom> rooms = new ArrayList<>();
+        for (int i = 0; i < GAMES; i++) {
+            rooms.add(games.startBotGame(new BotPlayer(strengthX, 1, scheduler),
+                    new BotPlayer(strengthO, 1, scheduler)));
+        }
+
+        long deadline = System.currentTimeMillis() + 30000;
+        for (GameRoom room : rooms) {
+            while (room.isGameInProgress() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(false, room.isGameInProgress());
+        }
+        return rooms;
+    }
+}
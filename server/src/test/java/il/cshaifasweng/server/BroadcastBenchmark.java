@@ -0,0 +1,100 @@
+package il.cshaifasweng.server;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.AbstractServer;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+
+/**
+ * Compares sending an announcement to every client one by one, which
+ * encodes it once per client, with sendToAllClients, which encodes it
+ * once and queues the same bytes for everybody. Reports the time the
+ * sending thread spends per broadcast and the time until the last client
+ * has received it.
+ *
+ * Run with: java ... il.cshaifasweng.server.BroadcastBenchmark [clients] [broadcasts] [port]
+ * The open file limit (ulimit -n) must allow two sockets per client.
+ */
+public class BroadcastBenchmark {
+
+    private static class Server extends AbstractServer {
+        Server(int port) {
+            super(port);
+            setBacklog(1024);
+        }
+
+        @Override
+        protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int broadcasts = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 3300;
+
+        GameBoard board = new GameBoard();
+        board.makeMove(1, 1, 'X');
+        GameMessage announcement = new GameMessage(GameMessage.MessageType.GAME_OVER);
+        announcement.setGameBoard(board);
+        announcement.setMessage("The server will restart in 5 minutes");
+
+        System.out.printf("%-22s %-10s %16s %16s%n", "mode", "path", "send us/bcast", "deliver ms/bcast");
+        for (AbstractServer.TransportMode mode : AbstractServer.TransportMode.values()) {
+            run(mode, clients, broadcasts, port++, announcement);
+        }
+    }
+
+    private static void run(AbstractServer.TransportMode mode, int clients, int broadcasts, int port,
+                            Object msg) throws Exception {
+        Server server = new Server(port);
+        server.setTransportMode(mode);
+        server.listen();
+        while (!server.isListening()) {
+            Thread.sleep(10);
+        }
+
+        Socket[] sockets = new Socket[clients];
+        ObjectInputStream[] inputs = new ObjectInputStream[clients];
+        for (int i = 0; i < clients; i++) {
+            sockets[i] = new Socket("localhost", port);
+            new ObjectOutputStream(sockets[i].getOutputStream()).flush();
+            inputs[i] = new ObjectInputStream(sockets[i].getInputStream());
+        }
+        while (server.getNumberOfClients() < clients) {
+            Thread.sleep(10);
+        }
+
+        for (String path : new String[]{"loop", "broadcast"}) {
+            long sendNanos = 0;
+            long deliverNanos = 0;
+            for (int b = 0; b < broadcasts; b++) {
+                long start = System.nanoTime();
+                if (path.equals("loop")) {
+                    for (Thread client : server.getClientConnections()) {
+                        ((ConnectionToClient) client).sendToClient(msg);
+                    }
+                } else {
+                    server.sendToAllClients(msg);
+                }
+                sendNanos += System.nanoTime() - start;
+
+                for (ObjectInputStream input : inputs) {
+                    input.readObject();
+                }
+                deliverNanos += System.nanoTime() - start;
+            }
+            System.out.printf("%-22s %-10s %16.1f %16.2f%n", mode, path,
+                    sendNanos / 1000.0 / broadcasts, deliverNanos / 1_000_000.0 / broadcasts);
+        }
+
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        server.close();
+    }
+}
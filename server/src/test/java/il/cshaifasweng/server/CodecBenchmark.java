@@ -0,0 +1,129 @@
+package il.cshaifasweng.server;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageCodec;
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageDecoder;
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the message codecs on the messages one player receives during
+ * full games, sent the way GameRoom sends them: the full board when the
+ * game starts, then one delta per move, with the board and the delta
+ * message changed in place between sends. Reports the bytes of the first game of a
+ * connection, the bytes per game once the connection is warm, and the time
+ * to encode and decode one game.
+ *
+ * Run with: java ... il.cshaifasweng.server.CodecBenchmark [games]
+ */
+public class CodecBenchmark {
+
+    /** A tie, so that every cell gets played. */
+    private static final int[][] MOVES = {
+            {1, 1}, {0, 0}, {0, 1}, {2, 1}, {1, 0}, {1, 2}, {0, 2}, {2, 0}, {2, 2}
+    };
+
+    public static void main(String[] args) throws Exception {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+
+        System.out.printf("%-12s %16s %16s %14s %14s%n",
+                "codec", "first game B", "bytes/game", "encode us", "decode us");
+        for (MessageCodec codec : new MessageCodec[]{MessageCodec.JAVA, MessageCodec.JAVA_CACHED, MessageCodec.BINARY}) {
+            run(codec, games / 10, false); // Warm up
+            run(codec, games, true);
+        }
+    }
+
+    private static void run(MessageCodec codec, int games, boolean print) throws Exception {
+        MessageEncoder encoder = codec.newEncoder();
+        MessageDecoder decoder = codec.newDecoder();
+        List<byte[]> frames = new ArrayList<>();
+
+        long firstGameBytes = 0;
+        long bytes = 0;
+        long encodeNanos = 0;
+        long decodeNanos = 0;
+        Object last = null;
+
+        for (int game = 0; game < games; game++) {
+            frames.clear();
+            long start = System.nanoTime();
+            playGame(encoder, frames);
+            encodeNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (byte[] frame : frames) {
+                if (decoder.decode(frame, 0, frame.length) != frame.length) {
+                    throw new IllegalStateException(codec.name() + " did not decode a whole frame");
+                }
+                last = decoder.getMessage();
+            }
+            decodeNanos += System.nanoTime() - start;
+
+            long gameBytes = 0;
+            for (byte[] frame : frames) {
+                gameBytes += frame.length;
+            }
+            if (game == 0) {
+                firstGameBytes = gameBytes;
+            }
+            bytes += gameBytes;
+        }
+
+        GameBoard finalBoard = ((GameMessage) last).getGameBoard();
+        if (finalBoard == null || finalBoard.getMoveCount() != MOVES.length) {
+            throw new IllegalStateException(codec.name() + " decoded a stale board");
+        }
+        if (print) {
+            System.out.printf("%-12s %16d %16.1f %14.2f %14.2f%n", codec.name(), firstGameBytes,
+                    (double) bytes / games, encodeNanos / 1000.0 / games, decodeNanos / 1000.0 / games);
+        }
+    }
+
+    /**
+     * Encodes what player X receives during one game.
+     */
+    private static void playGame(MessageEncoder encoder, List<byte[]> frames) throws Exception {
+        GameBoard board = new GameBoard();
+        board.setCurrentPlayer('X');
+
+        GameMessage assigned = new GameMessage(GameMessage.MessageType.PLAYER_ASSIGNED);
+        assigned.setPlayerSymbol('X');
+        assigned.setMessage("You have been assigned as player X");
+        frames.add(encoder.encode(assigned));
+
+        GameMessage start = new GameMessage(GameMessage.MessageType.BOARD_UPDATE);
+        start.setGameBoard(board);
+        start.setPlayerSymbol('X');
+        start.setMessage("Your turn");
+        frames.add(encoder.encode(start));
+
+        int sequence = 0;
+        for (int[] move : MOVES) {
+            char player = board.getCurrentPlayer();
+            board.makeMove(move[0], move[1], player);
+            board.setCurrentPlayer(player == 'X' ? 'O' : 'X');
+            sequence++;
+            if (board.isGameOver()) {
+                break;
+            }
+
+            GameMessage delta = new GameMessage(GameMessage.MessageType.BOARD_DELTA);
+            delta.setRow(move[0]);
+            delta.setCol(move[1]);
+            delta.setCellSymbol(player);
+            delta.setPlayerSymbol(board.getCurrentPlayer());
+            delta.setSequence(sequence);
+            frames.add(encoder.encode(delta));
+        }
+
+        GameMessage over = new GameMessage(GameMessage.MessageType.GAME_OVER);
+        over.setGameBoard(board);
+        over.setMessage("Game over! It's a tie!");
+        over.setSequence(sequence);
+        frames.add(encoder.encode(over));
+    }
+}
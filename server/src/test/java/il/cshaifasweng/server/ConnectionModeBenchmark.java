@@ -0,0 +1,95 @@
+package il.cshaifasweng.server;
+
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.AbstractServer;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+
+/**
+ * Compares the server transport modes with many mostly idle clients.
+ * For each mode it opens the given number of connections to an echo
+ * server, sends one message on each and reports the connect time, the
+ * echo round trip, the live thread count and the heap in use.
+ *
+ * Run with: java ... il.cshaifasweng.server.ConnectionModeBenchmark [clients] [port]
+ * The open file limit (ulimit -n) must allow two sockets per client.
+ */
+public class ConnectionModeBenchmark {
+
+    private static class EchoServer extends AbstractServer {
+        EchoServer(int port) {
+            super(port);
+            setBacklog(1024);
+        }
+
+        @Override
+        protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+            try {
+                client.sendToClient(msg);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 3100;
+
+        System.out.println("Virtual threads supported: " + AbstractServer.isVirtualThreadSupported());
+        System.out.printf("%-22s %8s %12s %12s %10s %10s%n",
+                "mode", "clients", "connect ms", "echo us/op", "threads", "heap MB");
+
+        for (AbstractServer.TransportMode mode : AbstractServer.TransportMode.values()) {
+            run(mode, clients, port++);
+        }
+    }
+
+    private static void run(AbstractServer.TransportMode mode, int clients, int port) throws Exception {
+        EchoServer server = new EchoServer(port);
+        server.setTransportMode(mode);
+        server.listen();
+        while (!server.isListening()) {
+            Thread.sleep(10);
+        }
+
+        int baseThreads = Thread.activeCount();
+        Socket[] sockets = new Socket[clients];
+        ObjectOutputStream[] outputs = new ObjectOutputStream[clients];
+        ObjectInputStream[] inputs = new ObjectInputStream[clients];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            sockets[i] = new Socket("localhost", port);
+            sockets[i].setTcpNoDelay(true);
+            outputs[i] = new ObjectOutputStream(sockets[i].getOutputStream());
+            inputs[i] = new ObjectInputStream(sockets[i].getInputStream());
+        }
+        long connectNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < clients; i++) {
+            outputs[i].reset();
+            outputs[i].writeObject("ping");
+            inputs[i].readObject();
+        }
+        long echoNanos = System.nanoTime() - start;
+
+        System.gc();
+        long heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+        System.out.printf("%-22s %8d %12d %12.1f %10d %10d%n", mode, server.getNumberOfClients(),
+                connectNanos / 1_000_000, echoNanos / 1000.0 / clients,
+                Math.max(threads, Thread.activeCount() - baseThreads), heap >> 20);
+
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        server.close();
+    }
+}
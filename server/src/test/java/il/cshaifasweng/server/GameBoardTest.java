@@ -0,0 +1,125 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import org.junit.Test;
+
+/**
+ * Unit tests for the bitboard GameBoard.
+ */
+public class GameBoardTest
+{
+    @Test
+    public void detectsEveryLine()
+    {
+        for (int line : GameBoard.WIN_LINES) {
+            GameBoard board = new GameBoard();
+            int moves = 0;
+            for (int cell = 0; cell < GameBoard.CELLS; cell++) {
+                if ((line & (1 << cell)) != 0) {
+                    assertFalse(board.isGameOver());
+                    assertTrue(board.makeMove(cell / 3, cell % 3, 'O'));
+                    moves++;
+                }
+            }
+            assertEquals(3, moves);
+            assertTrue(board.isGameOver());
+            assertEquals('O', board.getWinner());
+        }
+    }
+
+    @Test
+    public void detectsTieWhenFull()
+    {
+        GameBoard board = new GameBoard();
+        // X O X / X O O / O X X
+        char[] cells = {'X', 'O', 'X', 'X', 'O', 'O', 'O', 'X', 'X'};
+        for (int cell = 0; cell < cells.length; cell++) {
+            assertTrue(board.makeMove(cell / 3, cell % 3, cells[cell]));
+        }
+        assertTrue(board.isGameOver());
+        assertEquals('T', board.getWinner());
+    }
+
+    @Test
+    public void rejectsInvalidMoves()
+    {
+        GameBoard board = new GameBoard();
+        assertTrue(board.makeMove(1, 1, 'X'));
+        assertFalse(board.makeMove(1, 1, 'O'));
+        assertFalse(board.makeMove(3, 0, 'O'));
+        assertFalse(board.makeMove(0, -1, 'O'));
+        assertEquals(1, board.getMoveCount());
+    }
+
+    @Test
+    public void compatibilityViewMatchesMasks()
+    {
+        GameBoard board = new GameBoard();
+        board.makeMove(0, 0, 'X');
+        board.makeMove(2, 1, 'O');
+        char[][] expected = {{'X', ' ', ' '}, {' ', ' ', ' '}, {' ', 'O', ' '}};
+        assertArrayEquals(expected, board.getBoard());
+
+        board.getBoard()[1][1] = 'X';
+        assertEquals(' ', board.getCell(1, 1));
+    }
+
+    @Test
+    public void detectsFiveInARowInEveryDirection()
+    {
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int[] direction : directions) {
+            GameBoard board = new GameBoard(15, 5);
+            // The winning stone is played last, in the middle of the line
+            int[] order = {0, 1, 3, 4, 2};
+            for (int i = 0; i < order.length; i++) {
+                assertFalse(board.isGameOver());
+                int row = 7 + direction[0] * order[i];
+                int col = 7 + direction[1] * order[i];
+                assertTrue(board.makeMove(row, col, 'X'));
+                if (i < order.length - 1) {
+                    assertTrue(board.makeMove(0, i, 'O'));
+                }
+            }
+            assertTrue(board.isGameOver());
+            assertEquals('X', board.getWinner());
+        }
+    }
+
+    @Test
+    public void linesDoNotWrapAcrossRows()
+    {
+        // The end of one row and the start of the next are adjacent bits
+        GameBoard board = new GameBoard(15, 5);
+        int[][] stones = {{0, 12}, {0, 13}, {0, 14}, {1, 0}, {1, 1}};
+        for (int[] stone : stones) {
+            assertTrue(board.makeMove(stone[0], stone[1], 'O'));
+        }
+        assertFalse(board.isGameOver());
+
+        GameBoard copy = new GameBoard(15, 5, board.getXBits(), board.getOBits());
+        assertFalse(copy.isGameOver());
+        assertEquals(5, copy.getMoveCount());
+    }
+
+    @Test
+    public void undoRestoresTheGame()
+    {
+        GameBoard board = new GameBoard(19, 5);
+        for (int col = 0; col < 4; col++) {
+            board.makeMove(18, col, 'O');
+        }
+        assertTrue(board.makeMove(18, 4, 'O'));
+        assertEquals('O', board.getWinner());
+        board.undoMove(18, 4);
+        assertFalse(board.isGameOver());
+        assertEquals(4, board.getMoveCount());
+        assertTrue(board.makeMove(18, 4, 'X'));
+        assertFalse(board.isGameOver());
+    }
+}
@@ -0,0 +1,152 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import il.cshaifasweng.OCSFMediatorExample.server.BotPlayer;
+import il.cshaifasweng.OCSFMediatorExample.server.GameManager;
+import il.cshaifasweng.OCSFMediatorExample.server.GameRoom;
+import il.cshaifasweng.OCSFMediatorExample.server.journal.GameJournal;
+import il.cshaifasweng.OCSFMediatorExample.server.journal.JournalEvent;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * The game journal: appending, reading back, segments and recovery.
+ */
+public class GameJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<JournalEvent> replay(Path directory) throws Exception {
+        List<JournalEvent> events = new ArrayList<>();
+        GameJournal.replay(directory, events::add);
+        return events;
+    }
+
+    @Test
+    public void readsBackTheEventsAndContinuesAfterThem() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        GameJournal journal = new GameJournal(directory);
+        journal.gameStarted(7, 5, 4);
+        journal.moveMade(7, 1, 2, 3, 'X');
+        // Visible before any commit, through the page cache
+        assertEquals(2, replay(directory).size());
+        journal.close();
+
+        journal = new GameJournal(directory);
+        assertEquals(2, journal.getEventCount());
+        journal.gameOver(7, 1, 'X');
+        journal.playerLeft(7, 1, 'O');
+        journal.close();
+
+        List<JournalEvent> events = replay(directory);
+        assertEquals(4, events.size());
+        assertEquals(JournalEvent.Type.GAME_START, events.get(0).getType());
+        assertEquals(5, events.get(0).getBoardSize());
+        assertEquals(4, events.get(0).getWinLength());
+        JournalEvent move = events.get(1);
+        assertEquals(JournalEvent.Type.MOVE, move.getType());
+        assertEquals(7, move.getRoom());
+        assertEquals(1, move.getSequence());
+        assertEquals(2, move.getRow());
+        assertEquals(3, move.getCol());
+        assertEquals('X', move.getSymbol());
+        assertEquals(JournalEvent.Type.GAME_OVER, events.get(2).getType());
+        assertEquals('X', events.get(2).getSymbol());
+        assertEquals(JournalEvent.Type.PLAYER_LEFT, events.get(3).getType());
+        assertEquals('O', events.get(3).getSymbol());
+    }
+
+    @Test
+    public void rollsSegmentsAndStopsAtATornRecord() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        GameJournal journal = new GameJournal(directory, 4 * GameJournal.RECORD_SIZE, 1);
+        for (int i = 1; i <= 10; i++) {
+            journal.moveMade(1, i, 0, 0, 'X');
+        }
+        journal.close();
+
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.sorted().collect(Collectors.toList());
+        }
+        assertEquals(3, segments.size());
+
+        // A crash in the middle of the tenth record
+        try (RandomAccessFile last = new RandomAccessFile(segments.get(2).toFile(), "rw")) {
+            last.seek(2 * GameJournal.RECORD_SIZE - 1);
+            int crcByte = last.read();
+            last.seek(2 * GameJournal.RECORD_SIZE - 1);
+            last.write(crcByte ^ 0xff);
+        }
+        journal = new GameJournal(directory, 4 * GameJournal.RECORD_SIZE, 1);
+        assertEquals(9, journal.getEventCount());
+        journal.moveMade(1, 100, 0, 0, 'O');
+        journal.close();
+
+        List<JournalEvent> events = replay(directory);
+        assertEquals(10, events.size());
+        assertEquals(9, events.get(8).getSequence());
+        assertEquals(100, events.get(9).getSequence());
+    }
+
+    @Test
+    public void awaitingAnEventCommitsItEarly() throws Exception {
+        GameJournal journal = new GameJournal(folder.getRoot().toPath(), GameJournal.DEFAULT_SEGMENT_SIZE, 60_000);
+        try {
+            long position = journal.gameStarted(1, 3, 3);
+            long start = System.nanoTime();
+            journal.awaitDurable(position);
+            assertTrue(journal.getDurablePosition() >= position);
+            assertTrue(System.nanoTime() - start < 30_000_000_000L);
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void journalsTheGamesOfTheRooms() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        GameManager games = GameManager.getInstance();
+        GameJournal journal = new GameJournal(directory);
+        GameRoom room;
+        games.setJournal(journal);
+        try {
+            room = games.startBotGame(new BotPlayer(1.0, 1, games.getScheduler()),
+                    new BotPlayer(1.0, 1, games.getScheduler()));
+            long deadline = System.currentTimeMillis() + 30000;
+            while (room.isGameInProgress() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            games.setJournal(null);
+            journal.close();
+        }
+
+        List<JournalEvent> events = replay(directory).stream()
+                .filter(event -> event.getRoom() == room.getId())
+                .collect(Collectors.toList());
+        // Perfect bots tie after nine moves
+        assertEquals(11, events.size());
+        assertEquals(JournalEvent.Type.GAME_START, events.get(0).getType());
+        for (int i = 1; i <= 9; i++) {
+            assertEquals(JournalEvent.Type.MOVE, events.get(i).getType());
+            assertEquals(i, events.get(i).getSequence());
+            assertEquals(i % 2 == 1 ? 'X' : 'O', events.get(i).getSymbol());
+        }
+        assertEquals(JournalEvent.Type.GAME_OVER, events.get(10).getType());
+        assertEquals('T', events.get(10).getSymbol());
+    }
+}
@@ -0,0 +1,124 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.log.AsyncAppender;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.Level;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.LogAppender;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.LogManager;
+import il.cshaifasweng.OCSFMediatorExample.entities.log.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * The loggers and the asynchronous appender they write through.
+ */
+public class LoggingTest {
+
+    private LogAppender previous;
+
+    @After
+    public void restoreAppender() {
+        if (previous != null) {
+            LogManager.setAppender(previous).close();
+        }
+    }
+
+    private ByteArrayOutputStream capture(boolean json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        previous = LogManager.setAppender(new AsyncAppender(out, 64, json));
+        return out;
+    }
+
+    @Test
+    public void keepsTheEventsAtOrAboveTheLevel() {
+        ByteArrayOutputStream out = capture(false);
+        Logger log = LogManager.getLogger("LoggingTest.levels");
+        log.setLevel(Level.INFO);
+
+        log.debug("Room {}: valid move", 1);
+        log.info("Room {}: game over. Winner: {}", 2, 'X');
+        log.warn("Room {} is {} of {} {}", 3, "one", "four", "arguments");
+        log.info("Unfilled {} and {}", "one");
+        LogManager.flush();
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split(System.lineSeparator());
+        assertEquals(3, lines.length);
+        assertTrue(lines[0], lines[0].contains(" INFO  ["));
+        assertTrue(lines[0], lines[0].endsWith("LoggingTest.levels - Room 2: game over. Winner: X"));
+        assertTrue(lines[1], lines[1].endsWith("WARN  [" + Thread.currentThread().getName()
+                + "] LoggingTest.levels - Room 3 is one of four arguments"));
+        assertTrue(lines[2], lines[2].endsWith("- Unfilled one and {}"));
+        assertFalse(log.isDebugEnabled());
+    }
+
+    @Test
+    public void writesOneJsonObjectPerEvent() {
+        ByteArrayOutputStream out = capture(true);
+        Logger log = LogManager.getLogger("LoggingTest.json");
+        log.setLevel(Level.DEBUG);
+
+        log.debug("Said \"{}\"", "hi\nthere");
+        log.error("Failed", new IOException("broken pipe"));
+        log.warn("Room {} failed", 3, new IOException("reset"));
+        LogManager.flush();
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split(System.lineSeparator());
+        assertEquals(3, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("{\"time\":\""));
+        assertTrue(lines[0], lines[0].endsWith(",\"level\":\"DEBUG\",\"thread\":\""
+                + Thread.currentThread().getName()
+                + "\",\"logger\":\"LoggingTest.json\",\"message\":\"Said \\\"hi\\nthere\\\"\"}"));
+        assertTrue(lines[1], lines[1].contains("\"message\":\"Failed\",\"error\":\"java.io.IOException: broken pipe"));
+        assertTrue(lines[2], lines[2].contains("\"message\":\"Room 3 failed\",\"error\":\"java.io.IOException: reset"));
+    }
+
+    @Test
+    public void dropsTheEventsThatDoNotFitWithoutWaiting() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ByteArrayOutputStream written = new ByteArrayOutputStream();
+        OutputStream stuck = new OutputStream() {
+            @Override
+            public void write(int b) {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                written.write(bytes, offset, length);
+            }
+        };
+        AsyncAppender appender = new AsyncAppender(stuck, 4, false);
+        try {
+            // The writer thread blocks writing its first batch, the ring holds four more
+            long start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                appender.append("LoggingTest.drops", Level.INFO, "Event {}", 1, i, null, null, null, null);
+            }
+            assertTrue(System.nanoTime() - start < 1_000_000_000L);
+            assertTrue(String.valueOf(appender.getDroppedCount()), appender.getDroppedCount() >= 90);
+
+            release.countDown();
+            appender.flush();
+        } finally {
+            appender.close();
+        }
+        String text = written.toString(StandardCharsets.UTF_8);
+        assertTrue(text, text.contains("Event 0"));
+        assertTrue(text, text.contains(" log events were dropped"));
+    }
+}
@@ -0,0 +1,243 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import il.cshaifasweng.OCSFMediatorExample.server.GameManager;
+import il.cshaifasweng.OCSFMediatorExample.server.Matchmaker;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.AbstractServer;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Pairing players, with players leaving at any point of it.
+ */
+public class MatchmakerTest {
+
+    private static class Server extends AbstractServer {
+        final BlockingQueue<ConnectionToClient> connected = new LinkedBlockingQueue<>();
+
+        Server(int port) {
+            super(port);
+        }
+
+        @Override
+        protected void clientConnected(ConnectionToClient client) {
+            connected.add(client);
+        }
+
+        @Override
+        protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+        }
+    }
+
+    /**
+     * Records the callbacks, optionally cancelling a player while it is paired.
+     */
+    private static class Recorder implements Matchmaker.Listener {
+        final List<Matchmaker.Ticket> waiting = new ArrayList<>();
+        final List<Matchmaker.Ticket[]> matched = new ArrayList<>();
+        final List<Matchmaker.Ticket> left = new ArrayList<>();
+        Matchmaker matchmaker;
+        ConnectionToClient leavingWhenMatched;
+
+        @Override
+        public void waiting(Matchmaker.Ticket ticket) {
+            waiting.add(ticket);
+        }
+
+        @Override
+        public void matched(Matchmaker.Ticket playerX, Matchmaker.Ticket playerO) {
+            matched.add(new Matchmaker.Ticket[] {playerX, playerO});
+            if (leavingWhenMatched != null) {
+                // The player disconnects before its room is registered
+                assertFalse(matchmaker.cancel(leavingWhenMatched));
+            }
+        }
+
+        @Override
+        public void left(Matchmaker.Ticket ticket) {
+            left.add(ticket);
+        }
+    }
+
+    private Server server;
+    private final List<Socket> sockets = new ArrayList<>();
+
+    @Before
+    public void start() throws Exception {
+        server = new Server(3260);
+        server.listen();
+        while (!server.isListening()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @After
+    public void stop() throws Exception {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        server.close();
+    }
+
+    private ConnectionToClient connect() throws Exception {
+        Socket socket = new Socket("localhost", server.getPort());
+        sockets.add(socket);
+        new ObjectOutputStream(socket.getOutputStream()).flush();
+        ConnectionToClient client = server.connected.poll(5, TimeUnit.SECONDS);
+        assertTrue(client != null);
+        return client;
+    }
+
+    @Test
+    public void pairsTwoPlayersKeepingTheSymbolOfTheFirst() throws Exception {
+        Recorder recorder = new Recorder();
+        Matchmaker matchmaker = new Matchmaker(recorder);
+        ConnectionToClient first = connect();
+        ConnectionToClient second = connect();
+
+        matchmaker.join(first, 'O');
+        assertTrue(matchmaker.isWaiting(first));
+        assertEquals(1, matchmaker.getQueueDepth());
+        matchmaker.join(second, (char) 0);
+
+        assertEquals(1, recorder.waiting.size());
+        assertEquals(1, recorder.matched.size());
+        assertSame(second, recorder.matched.get(0)[0].getClient());
+        assertSame(first, recorder.matched.get(0)[1].getClient());
+        assertFalse(matchmaker.isWaiting(first));
+        assertEquals(0, matchmaker.getQueueDepth());
+        assertEquals(1, matchmaker.getMatchCount());
+        assertTrue(recorder.left.isEmpty());
+    }
+
+    @Test
+    public void cancelledPlayerIsNotPaired() throws Exception {
+        Recorder recorder = new Recorder();
+        Matchmaker matchmaker = new Matchmaker(recorder);
+        ConnectionToClient first = connect();
+        ConnectionToClient second = connect();
+
+        matchmaker.join(first, (char) 0);
+        assertTrue(matchmaker.cancel(first));
+        assertFalse(matchmaker.cancel(first));
+        matchmaker.join(second, (char) 0);
+
+        assertTrue(recorder.matched.isEmpty());
+        assertTrue(matchmaker.isWaiting(second));
+        assertEquals(1, matchmaker.getQueueDepth());
+        assertEquals(1, matchmaker.getCancellationCount());
+    }
+
+    @Test
+    public void playerLeavingOnceClaimedIsHandedBack() throws Exception {
+        Recorder recorder = new Recorder();
+        Matchmaker matchmaker = new Matchmaker(recorder);
+        recorder.matchmaker = matchmaker;
+        ConnectionToClient first = connect();
+        ConnectionToClient second = connect();
+        recorder.leavingWhenMatched = first;
+
+        matchmaker.join(first, (char) 0);
+        matchmaker.join(second, (char) 0);
+
+        assertEquals(1, recorder.matched.size());
+        assertEquals(1, recorder.left.size());
+        assertSame(first, recorder.left.get(0).getClient());
+        assertEquals(0, matchmaker.getQueueDepth());
+        // Once seated a player is no longer the matchmaker's
+        assertFalse(matchmaker.cancel(second));
+    }
+
+    @Test
+    public void clientHasOneTicketAtMost() throws Exception {
+        Recorder recorder = new Recorder();
+        Matchmaker matchmaker = new Matchmaker(recorder);
+        ConnectionToClient client = connect();
+
+        Matchmaker.Ticket first = matchmaker.join(client, (char) 0);
+        // Joining again, e.g. requeued as its opponent left, is not pairing it with itself
+        assertSame(first, matchmaker.join(client, (char) 0));
+        assertTrue(recorder.matched.isEmpty());
+        assertEquals(1, matchmaker.getQueueDepth());
+        assertTrue(matchmaker.isWaiting(client));
+    }
+
+    @Test
+    public void disconnectedClientIsNotQueued() throws Exception {
+        Recorder recorder = new Recorder();
+        Matchmaker matchmaker = new Matchmaker(recorder);
+        ConnectionToClient client = connect();
+        client.close();
+
+        matchmaker.join(client, (char) 0);
+        assertFalse(matchmaker.isWaiting(client));
+        assertEquals(0, matchmaker.getQueueDepth());
+    }
+
+    @Test
+    public void pairedAndCancelledPlayersLeaveNoTimeoutBehind() throws Exception {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+        try {
+            Matchmaker matchmaker = new Matchmaker(new Recorder(), scheduler);
+            matchmaker.setWaitTimeoutMillis(60_000);
+            ConnectionToClient first = connect();
+            ConnectionToClient second = connect();
+
+            matchmaker.join(first, (char) 0);
+            assertEquals(1, scheduler.getQueue().size());
+            matchmaker.join(second, (char) 0);
+            assertEquals(0, scheduler.getQueue().size());
+
+            matchmaker.join(first, (char) 0);
+            assertEquals(1, scheduler.getQueue().size());
+            assertTrue(matchmaker.cancel(first));
+            assertEquals(0, scheduler.getQueue().size());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void queuesAreSeparatePerBoard() throws Exception {
+        GameManager games = GameManager.getInstance();
+        ConnectionToClient small = connect();
+        ConnectionToClient large = connect();
+        ConnectionToClient largeToo = connect();
+        Matchmaker smallQueue = games.getMatchmaker();
+        Matchmaker largeQueue = games.getMatchmaker(5, 4);
+        long largeMatches = largeQueue.getMatchCount();
+        try {
+            games.handleJoinGame(small, 3, 3);
+            games.handleJoinGame(large, 5, 4);
+            assertTrue(smallQueue.isWaiting(small));
+            assertTrue(largeQueue.isWaiting(large));
+
+            games.handleJoinGame(largeToo, 5, 4);
+            assertEquals(largeMatches + 1, largeQueue.getMatchCount());
+            assertFalse(largeQueue.isWaiting(large));
+            assertTrue(smallQueue.isWaiting(small));
+        } finally {
+            games.handleClientDisconnected(small);
+            games.handleClientDisconnected(large);
+            games.handleClientDisconnected(largeToo);
+        }
+        assertFalse(smallQueue.isWaiting(small));
+    }
+}
@@ -0,0 +1,188 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.entities.Warning;
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageCodec;
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageDecoder;
+import il.cshaifasweng.OCSFMediatorExample.entities.codec.MessageEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.time.LocalTime;
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class MessageCodecTest {
+
+    private static Object roundTrip(MessageCodec codec, Object msg) throws Exception {
+        byte[] frame = codec.newEncoder().encode(msg);
+        MessageDecoder decoder = codec.newDecoder();
+        assertEquals(frame.length, decoder.decode(frame, 0, frame.length));
+        return decoder.getMessage();
+    }
+
+    @Test
+    public void binaryCodecKeepsGameMessageFields() throws Exception {
+        GameBoard board = new GameBoard();
+        board.makeMove(0, 0, 'X');
+        board.makeMove(2, 1, 'O');
+        board.setCurrentPlayer('X');
+        GameMessage msg = new GameMessage(GameMessage.MessageType.BOARD_UPDATE);
+        msg.setGameBoard(board);
+        msg.setPlayerSymbol('X');
+        msg.setRow(2);
+        msg.setCol(-1);
+        msg.setMessage("Your turn ת");
+
+        GameMessage decoded = (GameMessage) roundTrip(MessageCodec.BINARY, msg);
+
+        assertEquals(GameMessage.MessageType.BOARD_UPDATE, decoded.getType());
+        assertEquals('X', decoded.getPlayerSymbol());
+        assertEquals(2, decoded.getRow());
+        assertEquals(-1, decoded.getCol());
+        assertEquals("Your turn ת", decoded.getMessage());
+        assertEquals(board.getXMask(), decoded.getGameBoard().getXMask());
+        assertEquals(board.getOMask(), decoded.getGameBoard().getOMask());
+        assertEquals('X', decoded.getGameBoard().getCurrentPlayer());
+    }
+
+    @Test
+    public void binaryCodecKeepsDeltaFields() throws Exception {
+        GameMessage delta = new GameMessage(GameMessage.MessageType.BOARD_DELTA);
+        delta.setRow(0);
+        delta.setCol(2);
+        delta.setCellSymbol('O');
+        delta.setPlayerSymbol('X');
+        delta.setSequence(4);
+
+        byte[] frame = MessageCodec.BINARY.newEncoder().encode(delta);
+        GameMessage decoded = (GameMessage) roundTrip(MessageCodec.BINARY, delta);
+
+        assertTrue(frame.length <= 8);
+        assertEquals(GameMessage.MessageType.BOARD_DELTA, decoded.getType());
+        assertEquals(0, decoded.getRow());
+        assertEquals(2, decoded.getCol());
+        assertEquals('O', decoded.getCellSymbol());
+        assertEquals('X', decoded.getPlayerSymbol());
+        assertEquals(4, decoded.getSequence());
+        assertNull(decoded.getGameBoard());
+    }
+
+    @Test
+    public void codecsKeepLargeBoardsAndDimensions() throws Exception {
+        GameBoard board = new GameBoard(19, 5);
+        board.makeMove(0, 0, 'X');
+        board.makeMove(9, 9, 'O');
+        board.makeMove(18, 18, 'X');
+        board.setCurrentPlayer('O');
+        GameMessage msg = new GameMessage(GameMessage.MessageType.BOARD_UPDATE);
+        msg.setGameBoard(board);
+        msg.setBoardSize(19);
+        msg.setWinLength(5);
+
+        for (MessageCodec codec : new MessageCodec[]{MessageCodec.JAVA, MessageCodec.JAVA_CACHED, MessageCodec.BINARY}) {
+            GameMessage decoded = (GameMessage) roundTrip(codec, msg);
+            GameBoard decodedBoard = decoded.getGameBoard();
+            assertEquals(19, decoded.getBoardSize());
+            assertEquals(5, decoded.getWinLength());
+            assertEquals(19, decodedBoard.getSize());
+            assertEquals(5, decodedBoard.getWinLength());
+            assertEquals(3, decodedBoard.getMoveCount());
+            assertEquals('X', decodedBoard.getCell(18, 18));
+            assertEquals('O', decodedBoard.getCell(9, 9));
+            assertEquals('O', decodedBoard.getCurrentPlayer());
+        }
+        assertTrue(MessageCodec.BINARY.newEncoder().encode(msg).length <= (19 * 19 + 3) / 4 + 12); // 2 bits per cell
+    }
+
+    @Test
+    public void binaryCodecHandlesOtherMessages() throws Exception {
+        LocalTime time = LocalTime.of(12, 30, 5);
+        Warning warning = (Warning) roundTrip(MessageCodec.BINARY, new Warning("#warning", time));
+        assertEquals("#warning", warning.getMessage());
+        assertEquals(time, warning.getTime());
+
+        assertEquals("add client", roundTrip(MessageCodec.BINARY, "add client"));
+        assertNull(roundTrip(MessageCodec.BINARY, null));
+
+        ArrayList<Integer> list = new ArrayList<>();
+        list.add(7);
+        assertEquals(list, roundTrip(MessageCodec.BINARY, list)); // Java serialization fallback
+    }
+
+    @Test
+    public void cachedCodecSendsChangedMessagesWithFreshState() throws Exception {
+        MessageEncoder encoder = MessageCodec.JAVA_CACHED.newEncoder();
+        MessageDecoder decoder = MessageCodec.JAVA_CACHED.newDecoder();
+        GameBoard board = new GameBoard();
+        GameMessage msg = new GameMessage(GameMessage.MessageType.BOARD_UPDATE);
+        msg.setGameBoard(board);
+
+        byte[] first = null;
+        for (int cell = 0; cell < 600; cell++) { // Goes through several resets
+            board.reset();
+            board.makeMove(cell % 9 / 3, cell % 9 % 3, 'X');
+            msg.setMessage("update " + cell % 3);
+            byte[] frame = encoder.encode(msg);
+            if (first == null) {
+                first = frame;
+            } else if (cell < 9) {
+                assertTrue(frame.length < first.length); // Descriptors are not sent again
+            }
+
+            assertEquals(frame.length, decoder.decode(frame, 0, frame.length));
+            GameMessage decoded = (GameMessage) decoder.getMessage();
+            assertEquals(1 << (cell % 9), decoded.getGameBoard().getXMask());
+            assertEquals("update " + cell % 3, decoded.getMessage());
+        }
+
+        LocalTime time = LocalTime.of(8, 0);
+        byte[] frame = encoder.encode(new Warning("#warning", time));
+        assertEquals(frame.length, decoder.decode(frame, 0, frame.length));
+        assertEquals(time, ((Warning) decoder.getMessage()).getTime());
+    }
+
+    @Test
+    public void decodersWaitForCompleteFrames() throws Exception {
+        for (MessageCodec codec : new MessageCodec[]{MessageCodec.JAVA, MessageCodec.JAVA_CACHED, MessageCodec.BINARY}) {
+            GameMessage msg = new GameMessage(GameMessage.MessageType.JOIN_GAME);
+            byte[] frame = codec.newEncoder().encode(msg);
+            MessageDecoder decoder = codec.newDecoder();
+
+            assertEquals(0, decoder.decode(frame, 0, frame.length - 1));
+            assertEquals(frame.length, decoder.decode(frame, 0, frame.length));
+            assertEquals(GameMessage.MessageType.JOIN_GAME, ((GameMessage) decoder.getMessage()).getType());
+        }
+    }
+
+    @Test
+    public void streamReadMatchesBufferDecode() throws Exception {
+        for (MessageCodec codec : new MessageCodec[]{MessageCodec.JAVA, MessageCodec.JAVA_CACHED, MessageCodec.BINARY}) {
+            MessageEncoder encoder = codec.newEncoder();
+            byte[] first = encoder.encode("first");
+            byte[] second = encoder.encode(new GameMessage(GameMessage.MessageType.RESTART_GAME));
+            byte[] stream = new byte[first.length + second.length];
+            System.arraycopy(first, 0, stream, 0, first.length);
+            System.arraycopy(second, 0, stream, first.length, second.length);
+
+            MessageDecoder decoder = codec.newDecoder();
+            ByteArrayInputStream in = new ByteArrayInputStream(stream);
+            assertEquals("first", decoder.read(in));
+            assertEquals(GameMessage.MessageType.RESTART_GAME, ((GameMessage) decoder.read(in)).getType());
+        }
+    }
+
+    @Test
+    public void headersIdentifyCodecs() throws Exception {
+        assertSame(MessageCodec.JAVA, MessageCodec.forHeader(MessageCodec.JAVA.header()));
+        assertSame(MessageCodec.JAVA_CACHED, MessageCodec.forHeader(MessageCodec.JAVA_CACHED.header()));
+        assertSame(MessageCodec.BINARY, MessageCodec.forHeader(MessageCodec.BINARY.header()));
+        assertSame(MessageCodec.BINARY, MessageCodec.forName("binary"));
+    }
+}
@@ -0,0 +1,84 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import il.cshaifasweng.OCSFMediatorExample.server.ai.MonteCarloSearch;
+import il.cshaifasweng.OCSFMediatorExample.server.ai.PerfectPlaySolver;
+import il.cshaifasweng.OCSFMediatorExample.server.ai.SearchBoard;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for the Monte Carlo tree search, with two threads.
+ */
+public class MonteCarloSearchTest
+{
+    private final MonteCarloSearch search = new MonteCarloSearch(2);
+
+    @After
+    public void shutdown()
+    {
+        search.shutdown();
+    }
+
+    @Test
+    public void neverLosesToPerfectPlayOnTheClassicBoard()
+    {
+        PerfectPlaySolver solver = PerfectPlaySolver.getInstance();
+        Random random = new Random(1);
+        for (int game = 0; game < 20; game++) {
+            search.clear();
+            char searchPlays = game % 2 == 0 ? 'X' : 'O';
+            GameBoard board = new GameBoard();
+            char player = 'X';
+            while (!board.isGameOver()) {
+                board.setCurrentPlayer(player);
+                int cell = player == searchPlays
+                        ? search.search(board, 3000, 10000).getMove()
+                        : solver.getBestMove(board, random);
+                assertTrue(board.makeMove(cell / 3, cell % 3, player));
+                player = player == 'X' ? 'O' : 'X';
+            }
+            assertEquals('T', board.getWinner());
+        }
+    }
+
+    @Test
+    public void blocksAFourAndReusesItsTree()
+    {
+        // X has four in row 7, open at column 4 only, O to move must block
+        SearchBoard board = new SearchBoard(15, 5);
+        for (int col = 5; col < 9; col++) {
+            board.play(7 * 15 + col);
+            board.play(col == 8 ? 7 * 15 + 9 : 12 * 15 + col * 2 - 8);
+        }
+        board.play(0);
+        MonteCarloSearch.Result result = search.search(board, 2000, 10000);
+        assertEquals(7 * 15 + 4, result.getMove());
+        assertEquals(0, result.getReusedVisits());
+
+        // The playouts through the block are kept to search the reply
+        board.play(result.getMove());
+        result = search.search(board, 2000, 10000);
+        assertTrue(result.getReusedVisits() > 0);
+        assertEquals(2000, result.getPlayouts());
+    }
+
+    @Test
+    public void staysWithinItsBudgetOnTheLargestBoard()
+    {
+        SearchBoard board = new SearchBoard(GameBoard.MAX_SIZE, 5);
+        for (int move = 0; move < 10 && !board.isGameOver(); move++) {
+            MonteCarloSearch.Result result = search.search(board, Long.MAX_VALUE, 50);
+            assertNotEquals(-1, result.getMove());
+            assertTrue("took " + result.getElapsedNanos() / 1000000 + " ms",
+                    result.getElapsedNanos() < 250 * 1000000L);
+            board.play(result.getMove());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.AbstractServer;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * The event loops of the NIO transport survive the hooks of the server.
+ */
+public class NioTransportTest {
+
+    private static class Server extends AbstractServer {
+        final BlockingQueue<Throwable> exceptions = new LinkedBlockingQueue<>();
+
+        Server(int port) {
+            super(port);
+            setTransportMode(TransportMode.NIO);
+            setEventLoopThreads(1);
+        }
+
+        @Override
+        protected void clientConnected(ConnectionToClient client) {
+            throw new IllegalStateException("connected");
+        }
+
+        @Override
+        protected void clientDisconnected(ConnectionToClient client) {
+            throw new IllegalStateException("disconnected");
+        }
+
+        @Override
+        protected void clientException(ConnectionToClient client, Throwable exception) {
+            exceptions.add(exception);
+        }
+
+        @Override
+        protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+            try {
+                client.sendToClient(msg);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private static void echo(Socket socket, String message) throws Exception {
+        ObjectOutputStream output = new ObjectOutputStream(socket.getOutputStream());
+        ObjectInputStream input = new ObjectInputStream(socket.getInputStream());
+        output.writeObject(message);
+        output.flush();
+        assertEquals(message, input.readObject());
+    }
+
+    @Test
+    public void throwingHooksDoNotStopTheLoop() throws Exception {
+        Server server = new Server(3270);
+        server.listen();
+        while (!server.isListening()) {
+            Thread.sleep(10);
+        }
+        try {
+            // The connections share the one loop
+            for (int i = 0; i < 3; i++) {
+                try (Socket socket = new Socket("localhost", server.getPort())) {
+                    socket.setSoTimeout(5000);
+                    echo(socket, "client " + i);
+                    assertEquals("connected", server.exceptions.poll(5, TimeUnit.SECONDS).getMessage());
+                }
+                // After the end of stream reported by the loop
+                Throwable disconnected;
+                do {
+                    disconnected = server.exceptions.poll(5, TimeUnit.SECONDS);
+                    assertTrue(disconnected != null);
+                } while (disconnected instanceof IOException);
+                assertEquals("disconnected", disconnected.getMessage());
+            }
+        } finally {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package il.cshaifasweng.server;
+
+import il.cshaifasweng.OCSFMediatorExample.server.ai.ParallelSearch;
+import il.cshaifasweng.OCSFMediatorExample.server.ai.SearchBoard;
+import il.cshaifasweng.OCSFMediatorExample.server.ai.SearchEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Searches the same positions to the same depth with 1, 2, 4, 8 and 16
+ * threads, and reports the nodes per second and the speedup over one thread.
+ * The positions are the 3x3 board from the start, searched to the end, and
+ * 15x15 Gomoku middle games, played by the engine itself at a fixed depth so
+ * that they are the same from run to run. Each thread count gets a new
+ * search, with an empty table, and one warm-up round.
+ *
+ * Run with: java ... il.cshaifasweng.server.ParallelSearchBenchmark [depth] [positions]
+ */
+public class ParallelSearchBenchmark {
+    private static final int[] THREADS = {1, 2, 4, 8, 16};
+    private static final long NO_LIMIT = 3_600_000;
+
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+        List<SearchBoard> positions = new ArrayList<>();
+        positions.add(new SearchBoard(3, 3));
+        SearchBoard game = new SearchBoard(15, 5);
+        SearchEngine engine = new SearchEngine();
+        while (positions.size() <= count && !game.isGameOver()) {
+            game.play(engine.search(game, 2, NO_LIMIT).getMove());
+            if (game.getMoveCount() % 6 == 0) {
+                positions.add(game.copy());
+            }
+        }
+
+        System.out.printf("%d positions to depth %d, %d cores%n",
+                positions.size(), depth, Runtime.getRuntime().availableProcessors());
+        System.out.printf("%-8s %12s %14s %14s %10s%n", "threads", "ms", "nodes", "knodes/s", "speedup");
+        double baseline = 0;
+        for (int threads : THREADS) {
+            ParallelSearch search = new ParallelSearch(threads);
+            run(search, positions, depth); // Warm up
+            search.shutdown();
+
+            search = new ParallelSearch(threads);
+            long start = System.nanoTime();
+            long nodes = run(search, positions, depth);
+            double millis = (System.nanoTime() - start) / 1e6;
+            search.shutdown();
+
+            if (threads == 1) {
+                baseline = millis;
+            }
+            System.out.printf("%-8d %12.1f %14d %14.0f %10.2f%n",
+                    threads, millis, nodes, nodes / millis, baseline / millis);
+        }
+    }
+
+    private static long run(ParallelSearch search, List<SearchBoard> positions, int depth) {
+        long nodes = 0;
+        for (SearchBoard position : positions) {
+            nodes += search.search(position, depth, NO_LIMIT).getNodes();
+        }
+        return nodes;
+    }
+}
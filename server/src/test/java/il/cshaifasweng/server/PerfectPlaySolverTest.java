@@ -0,0 +1,57 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import il.cshaifasweng.OCSFMediatorExample.server.ai.PerfectPlaySolver;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Unit tests for the precomputed perfect-play table.
+ */
+public class PerfectPlaySolverTest
+{
+    private final PerfectPlaySolver solver = PerfectPlaySolver.getInstance();
+
+    @Test
+    public void coversEveryReachablePosition()
+    {
+        assertEquals(5478, solver.getPositionCount());
+        assertEquals(PerfectPlaySolver.Result.DRAW, solver.getResult(new GameBoard()));
+        assertFalse(solver.isReachable(GameBoard.fromMasks(0b000_000_111, 0)));
+    }
+
+    @Test
+    public void takesTheWinAndBlocks()
+    {
+        // X X _ / O O _ / _ _ _, X to move wins at once
+        GameBoard board = GameBoard.fromMasks(0b000_000_011, 0b000_011_000);
+        assertEquals(2, solver.getBestMove(board));
+        assertEquals(PerfectPlaySolver.Result.X_WINS, solver.getResult(board));
+
+        // X X _ / O _ _ / _ _ _, O to move must block
+        board = GameBoard.fromMasks(0b000_000_011, 0b000_001_000);
+        assertEquals(1 << 2, solver.getBestMoves(board));
+    }
+
+    @Test
+    public void perfectPlayAlwaysDraws()
+    {
+        Random random = new Random(1);
+        for (int game = 0; game < 100; game++) {
+            GameBoard board = new GameBoard();
+            char player = 'X';
+            while (!board.isGameOver()) {
+                int cell = solver.getBestMove(board, random);
+                assertTrue(board.makeMove(cell / 3, cell % 3, player));
+                player = player == 'X' ? 'O' : 'X';
+            }
+            assertEquals('T', board.getWinner());
+            assertEquals(-1, solver.getBestMove(board));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameBoard;
+import il.cshaifasweng.OCSFMediatorExample.server.ai.ParallelSearch;
+import il.cshaifasweng.OCSFMediatorExample.server.ai.PerfectPlaySolver;
+import il.cshaifasweng.OCSFMediatorExample.server.ai.SearchBoard;
+import il.cshaifasweng.OCSFMediatorExample.server.ai.SearchEngine;
+import org.junit.Test;
+
+import java.util.function.BiFunction;
+
+/**
+ * Unit tests for the alpha-beta search engine, alone and in parallel.
+ */
+public class SearchEngineTest
+{
+    private final SearchEngine engine = new SearchEngine();
+
+    @Test
+    public void agreesWithTheSolverOnTheClassicBoard()
+    {
+        assertAgreesWithSolver(engine::search);
+    }
+
+    @Test
+    public void parallelSearchAgreesWithTheSolverOnTheClassicBoard()
+    {
+        ParallelSearch search = new ParallelSearch(4);
+        try {
+            assertAgreesWithSolver(search::search);
+        } finally {
+            search.shutdown();
+        }
+    }
+
+    private static void assertAgreesWithSolver(BiFunction<GameBoard, Long, SearchEngine.Result> search)
+    {
+        PerfectPlaySolver solver = PerfectPlaySolver.getInstance();
+        int positions = 0;
+        for (int xMask = 0; xMask <= GameBoard.FULL_MASK; xMask++) {
+            for (int oMask = 0; oMask <= GameBoard.FULL_MASK; oMask++) {
+                GameBoard board = GameBoard.fromMasks(xMask, oMask);
+                if ((xMask & oMask) != 0 || !solver.isReachable(board) || board.isGameOver()) {
+                    continue;
+                }
+                positions++;
+                SearchEngine.Result result = search.apply(board, 10000L);
+                int score = solver.getScore(board);
+                assertEquals(score > 0, result.isWin());
+                assertEquals(score < 0, result.isLoss());
+                // The engine wins as fast and loses as slowly as the table
+                assertTrue((solver.getBestMoves(board) & (1 << result.getMove())) != 0);
+            }
+        }
+        assertEquals(4520, positions);
+    }
+
+    @Test
+    public void takesTheWinAndBlocksAFourOnALargeBoard()
+    {
+        // X has four in row 7, O three in row 8: X wins at once
+        SearchBoard board = new SearchBoard(15, 5);
+        for (int col = 5; col < 8; col++) {
+            board.play(7 * 15 + col);
+            board.play(8 * 15 + col);
+        }
+        board.play(7 * 15 + 8);
+        board.play(0);
+        SearchEngine.Result result = engine.search(board, 1000);
+        assertTrue(result.isWin());
+        assertTrue(result.getMove() == 7 * 15 + 4 || result.getMove() == 7 * 15 + 9);
+
+        // O to move must block one end, and loses to the other
+        board.play(14 * 15 + 14);
+        result = engine.search(board, 1000);
+        assertTrue(result.isLoss());
+        assertTrue(result.getMove() == 7 * 15 + 4 || result.getMove() == 7 * 15 + 9);
+        assertEquals(9, board.getMoveCount());
+    }
+
+    @Test
+    public void staysWithinItsBudgetOnALargeBoard()
+    {
+        SearchBoard board = new SearchBoard(15, 5);
+        for (int move = 0; move < 20 && !board.isGameOver(); move++) {
+            SearchEngine.Result result = engine.search(board, 50);
+            assertTrue(result.getMove() >= 0);
+            assertTrue("took " + result.getElapsedNanos() / 1000000 + " ms",
+                    result.getElapsedNanos() < 250 * 1000000L);
+            board.play(result.getMove());
+        }
+    }
+}
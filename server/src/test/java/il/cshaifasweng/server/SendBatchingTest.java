@@ -0,0 +1,71 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.AbstractServer;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+
+import org.junit.Test;
+
+/**
+ * The messages sent while handling one message leave in a single write.
+ */
+public class SendBatchingTest {
+
+    private static final int REPLIES = 5;
+
+    private static class Server extends AbstractServer {
+        Server(int port) {
+            super(port);
+        }
+
+        @Override
+        protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+            try {
+                for (int i = 0; i < REPLIES; i++) {
+                    client.sendToClient(msg + " " + i);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Test
+    public void repliesOfOneHandlerAreWrittenTogether() throws Exception {
+        for (AbstractServer.TransportMode mode : AbstractServer.TransportMode.values()) {
+            Server server = new Server(3230 + mode.ordinal());
+            server.setTransportMode(mode);
+            server.listen();
+            while (!server.isListening()) {
+                Thread.sleep(10);
+            }
+
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                ObjectOutputStream output = new ObjectOutputStream(socket.getOutputStream());
+                ObjectInputStream input = new ObjectInputStream(socket.getInputStream());
+                for (int round = 0; round < 10; round++) {
+                    output.reset();
+                    output.writeObject("round " + round);
+                    output.flush();
+                    for (int i = 0; i < REPLIES; i++) {
+                        assertEquals("round " + round + " " + i, input.readObject());
+                    }
+                }
+
+                // One write per round, plus the codec header in NIO mode
+                assertTrue(mode + ": " + server.getFlushCount() + " writes",
+                        server.getFlushCount() <= 11);
+                assertTrue(server.getMessagesPerFlush() > REPLIES - 1);
+            } finally {
+                server.close();
+            }
+        }
+    }
+}
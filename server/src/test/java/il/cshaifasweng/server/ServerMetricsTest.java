@@ -0,0 +1,87 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.server.SimpleServer;
+import il.cshaifasweng.OCSFMediatorExample.server.metrics.Histogram;
+import il.cshaifasweng.OCSFMediatorExample.server.metrics.ServerMetrics;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.AbstractServer;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+
+import org.junit.Test;
+
+/**
+ * The handling times and the traffic counted by the server metrics.
+ */
+public class ServerMetricsTest {
+
+    @Test
+    public void percentilesAreWithinTheirBucket() {
+        Histogram histogram = new Histogram();
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            histogram.record(nanos);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(100_000, snapshot.getMax());
+        assertEquals(50_000.5, snapshot.getMean(), 0.01);
+        assertWithin(50_000, snapshot.getPercentile(50));
+        assertWithin(99_000, snapshot.getPercentile(99));
+        assertWithin(99_900, snapshot.getPercentile(99.9));
+        assertEquals(100_000, snapshot.getPercentile(100));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(expected + " but was " + actual, Math.abs(actual - expected) <= expected * 0.016);
+    }
+
+    @Test
+    public void countsTheTrafficAndHandlingOfEachConnection() throws Exception {
+        for (AbstractServer.TransportMode mode : AbstractServer.TransportMode.values()) {
+            SimpleServer server = new SimpleServer(3240 + mode.ordinal());
+            server.setTransportMode(mode);
+            server.listen();
+            while (!server.isListening()) {
+                Thread.sleep(10);
+            }
+
+            try (Socket socket = new Socket("localhost", server.getPort())) {
+                ObjectOutputStream output = new ObjectOutputStream(socket.getOutputStream());
+                ObjectInputStream input = new ObjectInputStream(socket.getInputStream());
+                // Not in a game, the server has nothing to answer
+                output.writeObject(new GameMessage(GameMessage.MessageType.BOARD_SYNC));
+                output.writeObject("#metrics");
+                output.flush();
+                String text = (String) input.readObject();
+                assertTrue(text, text.contains("BOARD_SYNC"));
+
+                ServerMetrics.Snapshot snapshot = server.getMetricsSnapshot();
+                assertEquals(mode.name(), 1, snapshot.getOpenConnections());
+                assertEquals(2, snapshot.getMessagesReceived());
+                assertTrue(snapshot.getBytesReceived() > 0);
+                assertEquals(1, snapshot.getMessagesSent());
+                assertTrue(snapshot.getBytesSent() > text.length());
+                assertEquals(1, snapshot.getHandling(GameMessage.MessageType.BOARD_SYNC).getCount());
+                assertTrue(snapshot.getOtherHandling().getCount() >= 1);
+            }
+
+            // The traffic of a closed connection is kept
+            long deadline = System.currentTimeMillis() + 5000;
+            ServerMetrics.Snapshot snapshot = server.getMetricsSnapshot();
+            while (snapshot.getClosedConnections() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+                snapshot = server.getMetricsSnapshot();
+            }
+            server.close();
+            assertEquals(mode.name(), 0, snapshot.getOpenConnections());
+            assertEquals(1, snapshot.getClosedConnections());
+            assertEquals(2, snapshot.getMessagesReceived());
+            assertEquals(1, snapshot.getMessagesSent());
+        }
+    }
+}
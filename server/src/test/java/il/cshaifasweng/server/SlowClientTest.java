@@ -0,0 +1,255 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import il.cshaifasweng.OCSFMediatorExample.entities.GameMessage;
+import il.cshaifasweng.OCSFMediatorExample.server.SimpleServer;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.AbstractServer;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * A client that stops reading must not block the threads sending to it.
+ */
+public class SlowClientTest {
+
+    private static final String PAYLOAD = new String(new char[16 * 1024]).replace('\0', 'x');
+
+    private static class Server extends AbstractServer {
+        final CountDownLatch connected = new CountDownLatch(1);
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        volatile ConnectionToClient client;
+
+        Server(int port) {
+            super(port);
+            setOutboundQueueCapacity(16);
+        }
+
+        @Override
+        protected void clientConnected(ConnectionToClient client) {
+            this.client = client;
+            connected.countDown();
+        }
+
+        @Override
+        protected void clientDisconnected(ConnectionToClient client) {
+            disconnected.countDown();
+        }
+
+        @Override
+        protected boolean isDroppable(Object msg) {
+            return true;
+        }
+
+        @Override
+        protected void handleMessageFromClient(Object msg, ConnectionToClient client) {
+        }
+    }
+
+    private static Server start(AbstractServer.TransportMode mode, AbstractServer.OverflowPolicy policy, int port)
+            throws Exception {
+        Server server = new Server(port);
+        server.setTransportMode(mode);
+        server.setOverflowPolicy(policy);
+        server.listen();
+        while (!server.isListening()) {
+            Thread.sleep(10);
+        }
+        return server;
+    }
+
+    /**
+     * Connects with the Java codec and never reads.
+     */
+    private static Socket connectSlowClient(Server server) throws Exception {
+        Socket socket = new Socket();
+        socket.setReceiveBufferSize(4096);
+        socket.connect(new java.net.InetSocketAddress("localhost", server.getPort()));
+        new ObjectOutputStream(socket.getOutputStream()).flush();
+        assertTrue(server.connected.await(5, TimeUnit.SECONDS));
+        return socket;
+    }
+
+    @Test
+    public void droppingKeepsSendingWithoutBlocking() throws Exception {
+        for (AbstractServer.TransportMode mode : AbstractServer.TransportMode.values()) {
+            Server server = start(mode, AbstractServer.OverflowPolicy.DROP_OLDEST, 3210 + mode.ordinal());
+            try (Socket socket = connectSlowClient(server)) {
+                long start = System.nanoTime();
+                for (int i = 0; i < 2000; i++) {
+                    server.client.sendToClient(PAYLOAD); // 32 MB in total, far more than the socket buffers
+                }
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                assertTrue(mode + " blocked for " + millis + " ms", millis < 3000);
+                assertTrue(server.disconnected.getCount() == 1);
+            } finally {
+                server.close();
+            }
+        }
+    }
+
+    @Test
+    public void slowClientIsDisconnected() throws Exception {
+        for (AbstractServer.TransportMode mode : AbstractServer.TransportMode.values()) {
+            Server server = start(mode, AbstractServer.OverflowPolicy.DISCONNECT, 3220 + mode.ordinal());
+            try (Socket socket = connectSlowClient(server)) {
+                try {
+                    for (int i = 0; i < 2000; i++) {
+                        server.client.sendToClient(PAYLOAD);
+                    }
+                    fail(mode + ": the slow client was not disconnected");
+                } catch (IOException expected) {
+                }
+                assertTrue(server.disconnected.await(5, TimeUnit.SECONDS));
+            } finally {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * A game server whose filler strings may be dropped like deltas, to
+     * fill the queue of a client.
+     */
+    private static class FillableServer extends SimpleServer {
+        FillableServer(int port) {
+            super(port);
+        }
+
+        @Override
+        protected boolean isDroppable(Object msg) {
+            return msg instanceof String || super.isDroppable(msg);
+        }
+    }
+
+    private static class Player {
+        final Socket socket;
+        final ObjectOutputStream output;
+        final ObjectInputStream input;
+        char symbol;
+
+        Player(int port) throws IOException {
+            socket = new Socket();
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new java.net.InetSocketAddress("localhost", port));
+            socket.setSoTimeout(10000);
+            output = new ObjectOutputStream(socket.getOutputStream());
+            output.flush();
+            input = new ObjectInputStream(socket.getInputStream());
+        }
+
+        void send(GameMessage message) throws IOException {
+            output.writeObject(message);
+            output.flush();
+        }
+
+        void move(int row, int col) throws IOException {
+            GameMessage move = new GameMessage(GameMessage.MessageType.MOVE);
+            move.setRow(row);
+            move.setCol(col);
+            move.setPlayerSymbol(symbol);
+            send(move);
+        }
+
+        /**
+         * Reads the game messages until one of a type and sequence, or
+         * fails with a timeout.
+         */
+        GameMessage await(GameMessage.MessageType type, int sequence) throws Exception {
+            while (true) {
+                Object msg = input.readObject();
+                if (msg instanceof GameMessage) {
+                    GameMessage game = (GameMessage) msg;
+                    if (game.getType() == GameMessage.MessageType.PLAYER_ASSIGNED) {
+                        symbol = game.getPlayerSymbol();
+                    } else if (game.getType() == type && game.getSequence() == sequence) {
+                        return game;
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void boardOfARestartedGameIsNeverDropped() throws Exception {
+        FillableServer server = new FillableServer(3250);
+        server.setOutboundQueueCapacity(16);
+        server.setOverflowPolicy(AbstractServer.OverflowPolicy.DROP_OLDEST);
+        server.listen();
+        while (!server.isListening()) {
+            Thread.sleep(10);
+        }
+        try {
+            // A board of its own, so the players are matched with each other
+            Player first = new Player(server.getPort());
+            Player second = new Player(server.getPort());
+            for (Player player : new Player[]{first, second}) {
+                GameMessage join = new GameMessage(GameMessage.MessageType.JOIN_GAME);
+                join.setBoardSize(7);
+                join.setWinLength(3);
+                player.send(join);
+            }
+            first.await(GameMessage.MessageType.BOARD_UPDATE, 0);
+            second.await(GameMessage.MessageType.BOARD_UPDATE, 0);
+            Player x = first.symbol == 'X' ? first : second;
+            Player o = first.symbol == 'X' ? second : first;
+
+            // X wins in five moves, both players following each one
+            int[][] moves = {{0, 0}, {1, 0}, {0, 1}, {1, 1}, {0, 2}};
+            for (int i = 0; i < moves.length; i++) {
+                (i % 2 == 0 ? x : o).move(moves[i][0], moves[i][1]);
+                GameMessage.MessageType type = i == moves.length - 1
+                        ? GameMessage.MessageType.GAME_OVER : GameMessage.MessageType.BOARD_DELTA;
+                x.await(type, i + 1);
+                o.await(type, i + 1);
+            }
+
+            // The players stop reading: their socket buffers and then their queues fill up
+            ConnectionToClient[] connections = server.getConnections().toArray(new ConnectionToClient[0]);
+            long[] sent = new long[connections.length];
+            for (int round = 0; round < 20; round++) {
+                for (ConnectionToClient connection : connections) {
+                    for (int i = 0; i < 100; i++) {
+                        connection.sendToClient(PAYLOAD);
+                    }
+                }
+                Thread.sleep(20); // Lets the writers fill the socket buffers
+            }
+            for (int c = 0; c < connections.length; c++) {
+                sent[c] = connections[c].getMessagesSent();
+            }
+            x.send(new GameMessage(GameMessage.MessageType.RESTART_GAME));
+            x.move(3, 3);
+            // Wait for the board of the new game and the delta of its first move
+            long deadline = System.currentTimeMillis() + 5000;
+            for (int c = 0; c < connections.length; c++) {
+                while (connections[c].getMessagesSent() < sent[c] + 2 && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                }
+            }
+            // Newer messages push the board of the new game to the head of the queues
+            for (ConnectionToClient connection : connections) {
+                for (int i = 0; i < 100; i++) {
+                    connection.sendToClient(PAYLOAD);
+                }
+            }
+
+            GameMessage board = x.await(GameMessage.MessageType.BOARD_UPDATE, 0);
+            assertEquals(' ', board.getGameBoard().getCell(3, 3));
+            x.socket.close();
+            o.socket.close();
+        } finally {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package il.cshaifasweng.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import il.cshaifasweng.OCSFMediatorExample.server.SimpleServer;
+import il.cshaifasweng.OCSFMediatorExample.server.Subscriptions;
+import il.cshaifasweng.OCSFMediatorExample.server.ocsf.ConnectionToClient;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The topics of the server: the lobby and the spectators of the rooms.
+ */
+public class SubscriptionsTest {
+
+    private static class Client implements AutoCloseable {
+        final Socket socket;
+        final ObjectOutputStream output;
+        final ObjectInputStream input;
+
+        Client(int port) throws IOException {
+            socket = new Socket("localhost", port);
+            socket.setSoTimeout(5000);
+            output = new ObjectOutputStream(socket.getOutputStream());
+            output.flush();
+            input = new ObjectInputStream(socket.getInputStream());
+        }
+
+        void send(String message) throws IOException {
+            output.writeObject(message);
+            output.flush();
+        }
+
+        Object read() throws Exception {
+            return input.readObject();
+        }
+
+        /**
+         * Joins the lobby and waits for the server to confirm it.
+         */
+        void joinLobby() throws Exception {
+            send("add client");
+            assertEquals("client added successfully", read());
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private SimpleServer server;
+    private Subscriptions subscriptions;
+
+    @Before
+    public void start() throws Exception {
+        server = new SimpleServer(3280);
+        server.listen();
+        while (!server.isListening()) {
+            Thread.sleep(10);
+        }
+        subscriptions = server.getSubscriptions();
+    }
+
+    @After
+    public void stop() throws Exception {
+        server.close();
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void publishesToTheSubscribersOnly() throws Exception {
+        try (Client first = new Client(server.getPort()); Client second = new Client(server.getPort())) {
+            first.joinLobby();
+            second.joinLobby();
+            assertEquals(2, subscriptions.getSubscriberCount(Subscriptions.LOBBY));
+
+            server.sendToAllClients("hello");
+            assertEquals("hello", first.read());
+            assertEquals("hello", second.read());
+
+            second.send("remove client");
+            awaitTrue(() -> subscriptions.getSubscriberCount(Subscriptions.LOBBY) == 1);
+            server.sendToAllClients("again");
+            assertEquals("again", first.read());
+            // The first message the second client gets is the answer to its own
+            second.send("#metrics");
+            assertNotEquals("again", second.read());
+        }
+    }
+
+    @Test
+    public void disconnectedClientLeavesItsTopics() throws Exception {
+        Client client = new Client(server.getPort());
+        client.joinLobby();
+        assertEquals(1, subscriptions.getTopicCount());
+
+        client.close();
+        awaitTrue(() -> subscriptions.getTopicCount() == 0);
+        assertEquals(0, subscriptions.getSubscriberCount(Subscriptions.LOBBY));
+    }
+
+    @Test
+    public void unknownTopicsAreRefused() throws Exception {
+        try (Client client = new Client(server.getPort())) {
+            client.send("subscribe anything");
+            client.send("subscribe " + Subscriptions.spectatorsTopic(Integer.MAX_VALUE));
+            client.joinLobby(); // Handled after the others
+            assertEquals(1, subscriptions.getTopicCount());
+            assertEquals(1, subscriptions.getSubscriberCount(Subscriptions.LOBBY));
+        }
+    }
+
+    @Test
+    public void removedTopicLosesItsSubscribersOnly() throws Exception {
+        try (Client client = new Client(server.getPort())) {
+            client.joinLobby();
+            ConnectionToClient connection = server.getConnections().iterator().next();
+            String topic = Subscriptions.spectatorsTopic(1);
+            assertTrue(subscriptions.subscribe(topic, connection));
+
+            subscriptions.removeTopic(topic);
+            assertEquals(0, subscriptions.getSubscriberCount(topic));
+            assertFalse(subscriptions.unsubscribe(topic, connection));
+            assertTrue(subscriptions.isSubscribed(Subscriptions.LOBBY, connection));
+            assertEquals(1, subscriptions.getTopicCount());
+        }
+    }
+
+    @Test
+    public void spectatorsTopicNamesItsRoom() {
+        assertEquals(7, Subscriptions.spectatedRoom(Subscriptions.spectatorsTopic(7)));
+        assertEquals(-1, Subscriptions.spectatedRoom("room/seven/spectators"));
+        assertEquals(-1, Subscriptions.spectatedRoom("room/spectators"));
+        assertEquals(-1, Subscriptions.spectatedRoom(Subscriptions.LOBBY));
+    }
+}